@@ -0,0 +1,54 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExpenseCategoryManager#determineCategory(String, double)} на наборе описаний
+ * при разном числе ключевых слов в категории.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategorizationBenchmark {
+    private static final int DESCRIPTIONS = 1000;
+
+    @Param({"5", "100", "1000"})
+    private int keywordsPerCategory;
+
+    private ExpenseCategoryManager categoryManager;
+    private List<String> descriptions;
+
+    @Setup
+    public void setUp() throws IOException {
+        categoryManager = new ExpenseCategoryManager(ExpenseData.writeCategoriesFile(keywordsPerCategory).toString());
+        descriptions = ExpenseData.descriptions(DESCRIPTIONS, ExpenseData.SEED);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DESCRIPTIONS)
+    public void determineCategory(Blackhole blackhole) {
+        for (String description : descriptions) {
+            blackhole.consume(categoryManager.determineCategory(description, 100));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.expensemanager.benchmarks;
+
+import com.google.gson.Gson;
+import org.example.expensemanager.business.model.Expense;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Генератор синтетических данных для бенчмарков. При одинаковом зерне данные
+ * одинаковы, поэтому результаты разных запусков сравнимы.
+ */
+final class ExpenseData {
+    static final long SEED = 42;
+
+    private static final String[] CATEGORIES = {
+            "Еда", "Транспорт", "Жильё", "Связь", "Здоровье", "Одежда",
+            "Развлечения", "Образование", "Подарки", "Путешествия"
+    };
+    private static final String[] WORDS = {
+            "продукты", "кафе", "такси", "метро", "аренда", "интернет", "аптека", "куртка",
+            "кино", "курсы", "цветы", "билеты", "бензин", "ресторан", "телефон", "врач",
+            "обувь", "концерт", "книги", "отель", "рынок", "доставка", "парковка", "спортзал"
+    };
+    /** Период, по которому распределяются даты: последние два года. */
+    private static final int SPAN_MINUTES = 2 * 365 * 24 * 60;
+
+    private ExpenseData() {
+    }
+
+    static List<Expense> generate(int count, long seed) {
+        Random random = new Random(seed);
+        LocalDateTime start = LocalDateTime.now().withSecond(0).withNano(0).minusMinutes(SPAN_MINUTES);
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expenses.add(randomExpense(random, start.plusMinutes(random.nextInt(SPAN_MINUTES))));
+        }
+        return expenses;
+    }
+
+    /**
+     * Данные для миллионов строк: описания и даты берутся из общих наборов (пары слов,
+     * начала часов), поэтому в памяти остаются только сами расходы.
+     */
+    static List<Expense> generateCompact(int count, long seed) {
+        Random random = new Random(seed);
+        String[] descriptions = new String[WORDS.length * WORDS.length];
+        for (int i = 0; i < descriptions.length; i++) {
+            descriptions[i] = WORDS[i / WORDS.length] + " " + WORDS[i % WORDS.length];
+        }
+        LocalDateTime start = LocalDateTime.now().withMinute(0).withSecond(0).withNano(0).minusMinutes(SPAN_MINUTES);
+        LocalDateTime[] hours = new LocalDateTime[SPAN_MINUTES / 60];
+        for (int i = 0; i < hours.length; i++) {
+            hours[i] = start.plusHours(i);
+        }
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double amount = (random.nextInt(9_999_00) + 1) / 100.0;
+            expenses.add(new Expense(amount, descriptions[random.nextInt(descriptions.length)],
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], hours[random.nextInt(hours.length)]));
+        }
+        return expenses;
+    }
+
+    static Expense randomExpense(Random random, LocalDateTime dateTime) {
+        double amount = (random.nextInt(9_999_00) + 1) / 100.0;
+        String description = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                + " #" + random.nextInt(10_000);
+        return new Expense(amount, description, CATEGORIES[random.nextInt(CATEGORIES.length)], dateTime);
+    }
+
+    static List<String> descriptions(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(randomExpense(random, null).getDescription());
+        }
+        return result;
+    }
+
+    /**
+     * Словарь категорий: каждая категория получает {@code keywordsPerCategory} слов,
+     * часть из которых встречается в сгенерированных описаниях.
+     */
+    static Map<String, List<String>> categoryKeywords(int keywordsPerCategory) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            List<String> keywords = new ArrayList<>();
+            for (int k = 0; k < keywordsPerCategory; k++) {
+                int word = c + k * CATEGORIES.length;
+                keywords.add(word < WORDS.length ? WORDS[word] : "слово" + c + "_" + k);
+            }
+            result.put(CATEGORIES[c], keywords);
+        }
+        return result;
+    }
+
+    static Path writeCategoriesFile(int keywordsPerCategory) throws IOException {
+        Path file = Files.createTempFile("categories", ".json");
+        file.toFile().deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            new Gson().toJson(categoryKeywords(keywordsPerCategory), writer);
+        }
+        return file;
+    }
+}
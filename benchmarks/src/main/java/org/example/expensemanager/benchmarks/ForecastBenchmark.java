@@ -0,0 +1,53 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.BudgetForecast;
+import org.example.expensemanager.business.MonthlyAggregates;
+import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Прогноз {@link BudgetForecast}: по готовым агрегатам (как в приложении) и с полным
+ * пересчётом агрегатов из хранилища.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForecastBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int size;
+
+    private ExpenseMemoryDao dao;
+    private MonthlyAggregates aggregates;
+
+    @Setup
+    public void setUp() {
+        dao = new ExpenseMemoryDao();
+        dao.addExpenses(ExpenseData.generate(size, ExpenseData.SEED));
+        aggregates = MonthlyAggregates.of(dao);
+    }
+
+    @Benchmark
+    public double predictFromAggregates() {
+        return new BudgetForecast(aggregates).predictNextMonthExpenses();
+    }
+
+    @Benchmark
+    public double predictWithRebuild() {
+        return new BudgetForecast(dao).predictNextMonthExpenses();
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.example.expensemanager.data.daoimpl.ExpensePostgresDao;
+import org.example.expensemanager.data.daoimpl.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExpensePostgresDao} поверх встроенной H2 в режиме совместимости с PostgreSQL.
+ * Сетевые задержки настоящего сервера сюда не входят: измеряется работа DAO, пула
+ * и драйвера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcDaoBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    private ExpensePostgresDao dao;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        String url = "jdbc:h2:mem:bench" + size + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+        dao = new ExpensePostgresDao(new JdbcConnectionPool(url, "sa", "", 2));
+        dao.addExpenses(ExpenseData.generate(size, ExpenseData.SEED));
+        random = new Random(ExpenseData.SEED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dao.close();
+    }
+
+    @Benchmark
+    public long addAndDelete() {
+        Expense expense = ExpenseData.randomExpense(random, LocalDateTime.now());
+        dao.addExpense(expense);
+        dao.deleteExpense(expense.getId());
+        return expense.getId();
+    }
+
+    @Benchmark
+    public Expense update() {
+        Expense expense = ExpenseData.randomExpense(random, LocalDateTime.now());
+        expense.setId(randomId());
+        dao.updateExpense(expense);
+        return expense;
+    }
+
+    @Benchmark
+    public Optional<Expense> findById() {
+        return dao.findExpenseById(randomId());
+    }
+
+    @Benchmark
+    public List<Expense> latestPage() {
+        return dao.findExpenses(new ExpenseQuery().sortBy(ExpenseQuery.SortOrder.DATE_DESC).limit(50));
+    }
+
+    @Benchmark
+    public List<Expense> getAll() {
+        return dao.getAllExpenses();
+    }
+
+    /** Ид существующей строки: база создаётся заново, последовательность начинается с 1. */
+    private long randomId() {
+        return 1 + random.nextInt(size);
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.daoimpl.ExpenseJournalDao;
+import org.example.expensemanager.data.daoimpl.ExpenseJsonDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * CRUD-операции JSON-хранилищ: {@link ExpenseJsonDao}, переписывающего файл целиком,
+ * и {@link ExpenseJournalDao} с журналом изменений. Миллион строк не включён:
+ * одна запись в {@code ExpenseJsonDao} при таком объёме занимает секунды.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDaoBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    @Param({"json", "journal"})
+    private String backend;
+
+    private Path directory;
+    private ExpenseDao dao;
+    private Random random;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("expense-bench");
+        String file = directory.resolve("expenses.json").toString();
+        dao = backend.equals("journal") ? new ExpenseJournalDao(file) : new ExpenseJsonDao(file);
+        dao.addExpenses(ExpenseData.generate(size, ExpenseData.SEED));
+        random = new Random(ExpenseData.SEED);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (dao instanceof AutoCloseable) {
+            ((AutoCloseable) dao).close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public long addAndDelete() {
+        Expense expense = ExpenseData.randomExpense(random, LocalDateTime.now());
+        dao.addExpense(expense);
+        dao.deleteExpense(expense.getId());
+        return expense.getId();
+    }
+
+    @Benchmark
+    public Expense update() {
+        Expense expense = ExpenseData.randomExpense(random, LocalDateTime.now());
+        expense.setId(1 + random.nextInt(size));
+        dao.updateExpense(expense);
+        return expense;
+    }
+
+    @Benchmark
+    public List<Expense> getAll() {
+        return dao.getAllExpenses();
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRUD-операции {@link ExpenseMemoryDao}. Добавление измеряется вместе с удалением,
+ * чтобы размер хранилища не менялся во время замера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryDaoBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int size;
+
+    private ExpenseMemoryDao dao;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        dao = new ExpenseMemoryDao();
+        dao.addExpenses(ExpenseData.generate(size, ExpenseData.SEED));
+        random = new Random(ExpenseData.SEED);
+    }
+
+    @Benchmark
+    public long addAndDelete() {
+        Expense expense = ExpenseData.randomExpense(random, LocalDateTime.now());
+        dao.addExpense(expense);
+        dao.deleteExpense(expense.getId());
+        return expense.getId();
+    }
+
+    @Benchmark
+    public Expense update() {
+        Expense expense = ExpenseData.randomExpense(random, LocalDateTime.now());
+        expense.setId(randomId());
+        dao.updateExpense(expense);
+        return expense;
+    }
+
+    @Benchmark
+    public Optional<Expense> findById() {
+        return dao.findExpenseById(randomId());
+    }
+
+    @Benchmark
+    public List<Expense> getAll() {
+        return dao.getAllExpenses();
+    }
+
+    /** Ид существующей строки: ид выдаются подряд, начиная с 1. */
+    private long randomId() {
+        return 1 + random.nextInt(size);
+    }
+}
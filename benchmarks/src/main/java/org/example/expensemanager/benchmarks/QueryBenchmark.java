@@ -0,0 +1,69 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запрос таблицы расходов (поиск по тексту и сортировка, как в контроллере):
+ * {@link ExpenseQuery#apply(Iterable)} над списком и выборка в {@link ExpenseMemoryDao}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int size;
+
+    @Param({"", "такси"})
+    private String text;
+
+    @Param({"DATE_DESC", "AMOUNT_ASC"})
+    private ExpenseQuery.SortOrder sortOrder;
+
+    private List<Expense> expenses;
+    private ExpenseMemoryDao dao;
+
+    @Setup
+    public void setUp() {
+        dao = new ExpenseMemoryDao();
+        dao.addExpenses(ExpenseData.generate(size, ExpenseData.SEED));
+        expenses = dao.getAllExpenses();
+    }
+
+    @Benchmark
+    public List<Expense> applyToList() {
+        return query().apply(expenses);
+    }
+
+    @Benchmark
+    public List<Expense> memoryDaoFind() {
+        return dao.findExpenses(query());
+    }
+
+    @Benchmark
+    public List<Expense> memoryDaoFirstPage() {
+        return dao.findExpenses(query().limit(50));
+    }
+
+    private ExpenseQuery query() {
+        return new ExpenseQuery().text(text).sortBy(sortOrder);
+    }
+}
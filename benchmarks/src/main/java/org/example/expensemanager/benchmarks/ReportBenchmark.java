@@ -0,0 +1,60 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.SpendingReport;
+import org.example.expensemanager.business.SpendingReportEngine;
+import org.example.expensemanager.business.model.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение {@link SpendingReport} при разном числе потоков. Ускорение видно, только
+ * если у машины не меньше ядер, чем {@code parallelism}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReportBenchmark {
+    @Param({"1000000", "10000000"})
+    private int size;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private List<Expense> expenses;
+    private ForkJoinPool pool;
+    private SpendingReportEngine engine;
+
+    @Setup
+    public void setUp() {
+        expenses = ExpenseData.generateCompact(size, ExpenseData.SEED);
+        pool = new ForkJoinPool(parallelism);
+        engine = new SpendingReportEngine(pool, SpendingReportEngine.DEFAULT_TOP);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public SpendingReport build() {
+        return engine.build(expenses);
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.expensemanager.benchmarks;
+
+import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
+import org.example.expensemanager.service.ExpenseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ExpenseService#add(Expense)} с проверкой дубликатов и категоризацией поверх
+ * хранилища в памяти, а также пакетное {@link ExpenseService#addAll(List)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int size;
+
+    private ExpenseService service;
+    private Random random;
+    private LocalDateTime now;
+
+    @Setup
+    public void setUp() throws IOException {
+        ExpenseCategoryManager categoryManager =
+                new ExpenseCategoryManager(ExpenseData.writeCategoriesFile(5).toString());
+        service = new ExpenseService(new ExpenseMemoryDao(), categoryManager);
+        service.addAll(ExpenseData.generate(size, ExpenseData.SEED));
+        random = new Random(ExpenseData.SEED + 1);
+        now = LocalDateTime.now();
+    }
+
+    @Benchmark
+    public long addAndDelete() {
+        Expense expense = ExpenseData.randomExpense(random, now);
+        service.add(expense);
+        service.delete(expense.getId());
+        return expense.getId();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int addAllAndDelete() {
+        List<Expense> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(ExpenseData.randomExpense(random, now.minusMinutes(i)));
+        }
+        List<Expense> duplicates = service.addAll(batch);
+        List<Long> ids = new ArrayList<>(BATCH_SIZE);
+        for (Expense expense : batch) {
+            if (!duplicates.contains(expense)) {
+                ids.add(expense.getId());
+            }
+        }
+        service.deleteAll(ids);
+        return ids.size();
+    }
+}
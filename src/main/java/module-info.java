@@ -4,6 +4,7 @@ module org.example.expensemanager {
     requires com.google.gson;
     requires java.sql;
     requires java.dotenv;
+    requires java.management;
 
     opens org.example.expensemanager.ui to javafx.fxml, com.google.gson;
     opens org.example.expensemanager.data to com.google.gson, javafx.fxml;
@@ -11,6 +12,8 @@ module org.example.expensemanager {
     opens org.example.expensemanager.business to com.google.gson, javafx.fxml;
     opens org.example.expensemanager.data.daoimpl to com.google.gson, javafx.fxml;
     opens org.example.expensemanager.business.model to com.google.gson, javafx.fxml;
+    opens org.example.expensemanager.metrics to com.google.gson, javafx.fxml;
+    opens org.example.expensemanager.importer to com.google.gson, javafx.fxml;
 
     exports org.example.expensemanager.ui;
     exports org.example.expensemanager.data;
@@ -18,4 +21,6 @@ module org.example.expensemanager {
     exports org.example.expensemanager.business;
     exports org.example.expensemanager.data.daoimpl;
     exports org.example.expensemanager.business.model;
+    exports org.example.expensemanager.metrics;
+    exports org.example.expensemanager.importer;
 }
\ No newline at end of file
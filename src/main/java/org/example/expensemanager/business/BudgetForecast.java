@@ -1,28 +1,38 @@
 package org.example.expensemanager.business;
 
-import org.example.expensemanager.business.model.Expense;
 import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
 
 import java.time.LocalDate;
 import java.time.Month;
-import java.time.temporal.ChronoUnit;
+import java.time.YearMonth;
 
 public class BudgetForecast {
-    private final ExpenseDao expenseDao;
+    private static final int AVERAGE_MONTHS = 3;
 
+    private final MonthlyAggregates aggregates;
+
+    /**
+     * Прогноз прямо по хранилищу: читаются только расходы за месяцы, входящие в среднее,
+     * поэтому хранилище с индексом по дате не проходит всю историю.
+     */
     public BudgetForecast(ExpenseDao expenseDao) {
-        this.expenseDao = expenseDao;
+        this(new MonthlyAggregates(expenseDao.findExpenses(new ExpenseQuery()
+                .from(YearMonth.now().minusMonths(AVERAGE_MONTHS).atDay(1).atStartOfDay())
+                .to(YearMonth.now().atDay(1).atStartOfDay()))));
+    }
+
+    public BudgetForecast(MonthlyAggregates aggregates) {
+        this.aggregates = aggregates;
     }
 
+    /**
+     * Средние расходы в месяц за три последних полных месяца. Текущий месяц не входит:
+     * в его начале сумма заведомо неполная и занижала бы среднее.
+     */
     public double calculateMonthlyAverage() {
-        LocalDate now = LocalDate.now();
-        LocalDate threeMonthsAgo = now.minus(3, ChronoUnit.MONTHS);
-
-        return expenseDao.getAllExpenses().stream()
-                .filter(e -> !e.getDateTime().toLocalDate().isBefore(threeMonthsAgo))
-                .mapToDouble(Expense::getAmount)
-                .average()
-                .orElse(0);
+        YearMonth current = YearMonth.now();
+        return aggregates.averageMonthlyTotal(current.minusMonths(AVERAGE_MONTHS), current.minusMonths(1));
     }
 
     public double predictNextMonthExpenses() {
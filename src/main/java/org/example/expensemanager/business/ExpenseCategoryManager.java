@@ -10,11 +10,13 @@ import java.util.*;
 public class ExpenseCategoryManager {
     private final String filePath;
     private final Map<String, List<String>> categoryKeywords;
+    private final KeywordMatcher keywordMatcher;
 
     public ExpenseCategoryManager(String filePath) {
         this.filePath = filePath;
         this.categoryKeywords = new LinkedHashMap<>();
         loadCategoriesFromJson();
+        this.keywordMatcher = new KeywordMatcher(categoryKeywords);
     }
 
     private void loadCategoriesFromJson() {
@@ -30,14 +32,9 @@ public class ExpenseCategoryManager {
     }
 
     public String determineCategory(String description, double amount) {
-        String descLower = description.toLowerCase();
-
-        for (Map.Entry<String, List<String>> entry : categoryKeywords.entrySet()) {
-            for (String keyword : entry.getValue()) {
-                if (descLower.contains(keyword.toLowerCase())) {
-                    return entry.getKey();
-                }
-            }
+        String matched = keywordMatcher.findFirstCategory(description.toLowerCase());
+        if (matched != null) {
+            return matched;
         }
 
         if (amount > 5000) {
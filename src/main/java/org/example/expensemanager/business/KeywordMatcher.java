@@ -0,0 +1,141 @@
+package org.example.expensemanager.business;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Автомат Ахо–Корасик по ключевым словам категорий.
+ * <p>
+ * Собирается один раз из упорядоченного отображения «категория → ключевые слова» и за
+ * один проход по тексту находит категорию с наименьшим порядковым номером, хотя бы одно
+ * ключевое слово которой входит в текст. Это то же самое, что перебор категорий по
+ * порядку с {@link String#contains(CharSequence)} для каждого слова.
+ * Ключевые слова переводятся в нижний регистр при сборке; текст должен передаваться
+ * уже в нижнем регистре.
+ */
+public class KeywordMatcher {
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final List<String> categories;
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    private final int[] output;
+
+    public KeywordMatcher(Map<String, List<String>> categoryKeywords) {
+        this.categories = new ArrayList<>(categoryKeywords.keySet());
+
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        outputs.add(NO_MATCH);
+
+        int categoryIndex = 0;
+        for (List<String> keywords : categoryKeywords.values()) {
+            if (keywords != null) {
+                for (String keyword : keywords) {
+                    if (keyword == null) {
+                        continue;
+                    }
+                    int state = 0;
+                    for (char c : keyword.toLowerCase().toCharArray()) {
+                        Integer next = trie.get(state).get(c);
+                        if (next == null) {
+                            next = trie.size();
+                            trie.add(new TreeMap<>());
+                            outputs.add(NO_MATCH);
+                            trie.get(state).put(c, next);
+                        }
+                        state = next;
+                    }
+                    outputs.set(state, Math.min(outputs.get(state), categoryIndex));
+                }
+            }
+            categoryIndex++;
+        }
+
+        int size = trie.size();
+        this.edgeChars = new char[size][];
+        this.edgeTargets = new int[size][];
+        this.fail = new int[size];
+        this.output = new int[size];
+        for (int state = 0; state < size; state++) {
+            TreeMap<Character, Integer> edges = trie.get(state);
+            edgeChars[state] = new char[edges.size()];
+            edgeTargets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[state][i] = edge.getKey();
+                edgeTargets[state][i] = edge.getValue();
+                i++;
+            }
+            output[state] = outputs.get(state);
+        }
+
+        buildFailureLinks();
+    }
+
+    /**
+     * Возвращает первую по порядку категорию, ключевое слово которой входит в текст,
+     * или {@code null}, если таких нет.
+     */
+    public String findFirstCategory(String lowerCaseText) {
+        int best = output[0];
+        int state = 0;
+        for (int i = 0; i < lowerCaseText.length() && best != 0; i++) {
+            state = step(state, lowerCaseText.charAt(i));
+            if (output[state] < best) {
+                best = output[state];
+            }
+        }
+        return best == NO_MATCH ? null : categories.get(best);
+    }
+
+    private void buildFailureLinks() {
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            fail[child] = 0;
+            output[child] = Math.min(output[child], output[0]);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int f = fail[state];
+                int target;
+                while ((target = edge(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = target >= 0 ? target : 0;
+                // Наследуем лучший выход по суффиксной ссылке
+                output[child] = Math.min(output[child], output[fail[child]]);
+                queue.add(child);
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int next = edge(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int edge(int state, char c) {
+        int i = Arrays.binarySearch(edgeChars[state], c);
+        return i >= 0 ? edgeTargets[state][i] : -1;
+    }
+}
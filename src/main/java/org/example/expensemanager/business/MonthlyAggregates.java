@@ -0,0 +1,166 @@
+package org.example.expensemanager.business;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Материализованные суммы расходов по месяцам и по категориям внутри месяца.
+ * <p>
+ * Суммы хранятся в копейках ({@code long}), чтобы многократные добавления и удаления
+ * не накапливали ошибку округления. Для каждого расхода запоминается его вклад,
+ * поэтому обновление и удаление по id выполняются за O(1).
+ */
+public class MonthlyAggregates {
+    private final Map<YearMonth, Totals> byMonth = new TreeMap<>();
+    private final Map<YearMonth, Map<String, Totals>> byMonthAndCategory = new HashMap<>();
+    private final Map<Long, Contribution> contributions = new HashMap<>();
+
+    public MonthlyAggregates() {
+    }
+
+    public MonthlyAggregates(Iterable<Expense> expenses) {
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    public static MonthlyAggregates of(ExpenseDao dao) {
+        return new MonthlyAggregates(dao.getAllExpenses());
+    }
+
+    public synchronized void rebuild(ExpenseDao dao) {
+        byMonth.clear();
+        byMonthAndCategory.clear();
+        contributions.clear();
+        for (Expense expense : dao.getAllExpenses()) {
+            add(expense);
+        }
+    }
+
+    public synchronized void add(Expense expense) {
+        if (expense.getDateTime() == null) {
+            return;
+        }
+        Contribution contribution = new Contribution(YearMonth.from(expense.getDateTime()),
+                expense.getCategory(), toCents(expense.getAmount()));
+        Contribution previous = contributions.put(expense.getId(), contribution);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        apply(contribution, 1);
+    }
+
+    public synchronized void update(Expense expense) {
+        remove(expense.getId());
+        add(expense);
+    }
+
+    public synchronized void remove(long id) {
+        Contribution previous = contributions.remove(id);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    public synchronized double getMonthTotal(YearMonth month) {
+        Totals totals = byMonth.get(month);
+        return totals == null ? 0 : totals.getSum();
+    }
+
+    public synchronized long getMonthCount(YearMonth month) {
+        Totals totals = byMonth.get(month);
+        return totals == null ? 0 : totals.getCount();
+    }
+
+    /**
+     * Суммы по категориям за месяц в порядке убывания суммы.
+     */
+    public synchronized Map<String, Double> getCategoryTotals(YearMonth month) {
+        Map<String, Totals> categories = byMonthAndCategory.getOrDefault(month, Map.of());
+        Map<String, Double> result = new LinkedHashMap<>();
+        categories.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().cents, a.getValue().cents))
+                .forEach(e -> result.put(e.getKey(), e.getValue().getSum()));
+        return result;
+    }
+
+    /**
+     * Средняя сумма расходов за месяц по месяцам {@code from..to} включительно,
+     * включая месяцы без расходов.
+     */
+    public synchronized double averageMonthlyTotal(YearMonth from, YearMonth to) {
+        long months = 0;
+        long cents = 0;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            Totals totals = byMonth.get(month);
+            if (totals != null) {
+                cents += totals.cents;
+            }
+            months++;
+        }
+        return months == 0 ? 0 : cents / 100.0 / months;
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        Totals month = byMonth.computeIfAbsent(contribution.month, m -> new Totals());
+        month.add(contribution.cents, sign);
+        if (month.count == 0) {
+            byMonth.remove(contribution.month);
+        }
+
+        String category = contribution.category == null ? "" : contribution.category;
+        Map<String, Totals> categories = byMonthAndCategory.computeIfAbsent(contribution.month, m -> new HashMap<>());
+        Totals categoryTotals = categories.computeIfAbsent(category, c -> new Totals());
+        categoryTotals.add(contribution.cents, sign);
+        if (categoryTotals.count == 0) {
+            categories.remove(category);
+            if (categories.isEmpty()) {
+                byMonthAndCategory.remove(contribution.month);
+            }
+        }
+    }
+
+    static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /** Сумма и количество расходов. */
+    public static class Totals {
+        private long cents;
+        private long count;
+
+        void add(long cents, int sign) {
+            this.cents += sign * cents;
+            this.count += sign;
+        }
+
+        void merge(Totals other) {
+            this.cents += other.cents;
+            this.count += other.count;
+        }
+
+        long getCents() { return cents; }
+
+        public double getSum() { return cents / 100.0; }
+
+        public long getCount() { return count; }
+    }
+
+    private static final class Contribution {
+        private final YearMonth month;
+        private final String category;
+        private final long cents;
+
+        private Contribution(YearMonth month, String category, long cents) {
+            this.month = month;
+            this.category = category;
+            this.cents = cents;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.expensemanager.business;
+
+import org.example.expensemanager.business.MonthlyAggregates.Totals;
+import org.example.expensemanager.business.SpendingReport.DescriptionTotals;
+import org.example.expensemanager.business.SpendingReport.Period;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.business.model.ExpenseStatus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Частичные итоги по части расходов. Части считаются независимо и затем сливаются
+ * ({@link #merge}); результат не зависит от того, как расходы разбиты на части.
+ * <p>
+ * Месяц хранится числом {@code год * 12 + месяц - 1}, неделя — номером дня
+ * понедельника от 1970-01-01, чтобы не создавать объектов дат на каждую строку.
+ * Описания приводятся к общему виду только при построении отчёта, по одному разу на
+ * каждое различное описание, а не на каждую строку.
+ * Года и итоги по категориям выводятся из месяцев при построении отчёта; расходы без
+ * даты учитываются в категориях отдельно.
+ */
+final class ReportAccumulator {
+    /** По сумме, при равной сумме — по описанию, чтобы отбор не зависел от разбиения. */
+    private static final Comparator<DescriptionTotals> BY_SUM = Comparator
+            .comparingDouble(DescriptionTotals::getSum)
+            .thenComparing(DescriptionTotals::getDescription, Comparator.reverseOrder());
+
+    private final Totals total = new Totals();
+    private final Map<Integer, Map<String, Totals>> months = new HashMap<>();
+    private final Map<Long, Map<String, Totals>> weeks = new HashMap<>();
+    private final Map<String, Totals> undated = new HashMap<>();
+    private final Map<String, Totals> descriptions = new HashMap<>();
+    private final Totals[] statuses = new Totals[ExpenseStatus.values().length];
+
+    void add(Expense expense) {
+        long cents = MonthlyAggregates.toCents(expense.getAmount());
+        total.add(cents, 1);
+        String category = expense.getCategory() == null ? "" : expense.getCategory();
+        if (expense.getDateTime() != null) {
+            LocalDate date = expense.getDateTime().toLocalDate();
+            int month = date.getYear() * 12 + date.getMonthValue() - 1;
+            long day = date.toEpochDay();
+            // 1970-01-01 — четверг
+            long monday = day - Math.floorMod(day + 3, 7);
+            cell(months.computeIfAbsent(month, m -> new HashMap<>()), category).add(cents, 1);
+            cell(weeks.computeIfAbsent(monday, w -> new HashMap<>()), category).add(cents, 1);
+        } else {
+            cell(undated, category).add(cents, 1);
+        }
+        if (expense.getDescription() != null) {
+            cell(descriptions, expense.getDescription()).add(cents, 1);
+        }
+        if (expense.getStatus() != null) {
+            int status = expense.getStatus().ordinal();
+            if (statuses[status] == null) {
+                statuses[status] = new Totals();
+            }
+            statuses[status].add(cents, 1);
+        }
+    }
+
+    /** Добавляет итоги другой части; {@code other} после этого использовать нельзя. */
+    ReportAccumulator merge(ReportAccumulator other) {
+        total.merge(other.total);
+        mergePeriods(months, other.months);
+        mergePeriods(weeks, other.weeks);
+        mergeCells(undated, other.undated);
+        mergeCells(descriptions, other.descriptions);
+        for (int i = 0; i < statuses.length; i++) {
+            if (other.statuses[i] != null) {
+                if (statuses[i] == null) {
+                    statuses[i] = other.statuses[i];
+                } else {
+                    statuses[i].merge(other.statuses[i]);
+                }
+            }
+        }
+        return this;
+    }
+
+    SpendingReport toReport(int top) {
+        Map<String, Totals> byCategory = new HashMap<>(undated);
+        SortedMap<LocalDate, Map<String, Totals>> byMonth = new TreeMap<>();
+        SortedMap<LocalDate, Map<String, Totals>> byYear = new TreeMap<>();
+        for (Map.Entry<Integer, Map<String, Totals>> entry : months.entrySet()) {
+            int month = entry.getKey();
+            LocalDate start = LocalDate.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, 1);
+            byMonth.put(start, sortedBySum(entry.getValue()));
+            Map<String, Totals> year = byYear.computeIfAbsent(start.withDayOfYear(1), y -> new HashMap<>());
+            for (Map.Entry<String, Totals> cell : entry.getValue().entrySet()) {
+                cell(year, cell.getKey()).merge(cell.getValue());
+                cell(byCategory, cell.getKey()).merge(cell.getValue());
+            }
+        }
+        byYear.replaceAll((year, categories) -> sortedBySum(categories));
+        SortedMap<LocalDate, Map<String, Totals>> byWeek = new TreeMap<>();
+        for (Map.Entry<Long, Map<String, Totals>> entry : weeks.entrySet()) {
+            byWeek.put(LocalDate.ofEpochDay(entry.getKey()), sortedBySum(entry.getValue()));
+        }
+
+        Map<Period, SortedMap<LocalDate, Map<String, Totals>>> byPeriod = new EnumMap<>(Period.class);
+        byPeriod.put(Period.WEEK, byWeek);
+        byPeriod.put(Period.MONTH, byMonth);
+        byPeriod.put(Period.YEAR, byYear);
+
+        Map<ExpenseStatus, Totals> byStatus = new EnumMap<>(ExpenseStatus.class);
+        for (ExpenseStatus status : ExpenseStatus.values()) {
+            if (statuses[status.ordinal()] != null) {
+                byStatus.put(status, statuses[status.ordinal()]);
+            }
+        }
+        return new SpendingReport(total, sortedBySum(byCategory), byPeriod, byStatus, topDescriptions(top));
+    }
+
+    private List<DescriptionTotals> topDescriptions(int top) {
+        if (top <= 0) {
+            return List.of();
+        }
+        Map<String, Totals> normalized = new HashMap<>();
+        for (Map.Entry<String, Totals> entry : descriptions.entrySet()) {
+            cell(normalized, entry.getKey().strip().toLowerCase(Locale.ROOT)).merge(entry.getValue());
+        }
+        PriorityQueue<DescriptionTotals> heap = new PriorityQueue<>(top + 1, BY_SUM);
+        for (Map.Entry<String, Totals> entry : normalized.entrySet()) {
+            DescriptionTotals candidate = new DescriptionTotals(entry.getKey(), entry.getValue());
+            if (heap.size() < top) {
+                heap.add(candidate);
+            } else if (BY_SUM.compare(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+        List<DescriptionTotals> result = new ArrayList<>(heap);
+        result.sort(BY_SUM.reversed());
+        return result;
+    }
+
+    private static <K> void mergePeriods(Map<K, Map<String, Totals>> into, Map<K, Map<String, Totals>> from) {
+        for (Map.Entry<K, Map<String, Totals>> entry : from.entrySet()) {
+            Map<String, Totals> existing = into.putIfAbsent(entry.getKey(), entry.getValue());
+            if (existing != null) {
+                mergeCells(existing, entry.getValue());
+            }
+        }
+    }
+
+    private static void mergeCells(Map<String, Totals> into, Map<String, Totals> from) {
+        for (Map.Entry<String, Totals> entry : from.entrySet()) {
+            Totals existing = into.putIfAbsent(entry.getKey(), entry.getValue());
+            if (existing != null) {
+                existing.merge(entry.getValue());
+            }
+        }
+    }
+
+    private static Totals cell(Map<String, Totals> cells, String key) {
+        Totals totals = cells.get(key);
+        if (totals == null) {
+            totals = new Totals();
+            cells.put(key, totals);
+        }
+        return totals;
+    }
+
+    private static Map<String, Totals> sortedBySum(Map<String, Totals> cells) {
+        List<Map.Entry<String, Totals>> entries = new ArrayList<>(cells.entrySet());
+        entries.sort((a, b) -> {
+            int bySum = Long.compare(b.getValue().getCents(), a.getValue().getCents());
+            return bySum != 0 ? bySum : a.getKey().compareTo(b.getKey());
+        });
+        Map<String, Totals> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Totals> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
+}
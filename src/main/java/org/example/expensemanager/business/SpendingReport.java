@@ -0,0 +1,85 @@
+package org.example.expensemanager.business;
+
+import org.example.expensemanager.business.MonthlyAggregates.Totals;
+import org.example.expensemanager.business.model.ExpenseStatus;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Сводка расходов за всю историю: по категориям, по неделям, месяцам и годам в разрезе
+ * категорий, по статусам и самые затратные описания. Строится
+ * {@link SpendingReportEngine}; после построения не меняется.
+ */
+public class SpendingReport {
+    /** Длина периода; период обозначается датой своего первого дня. */
+    public enum Period {
+        /** Неделя с понедельника. */
+        WEEK,
+        MONTH,
+        YEAR
+    }
+
+    private final Totals total;
+    private final Map<String, Totals> byCategory;
+    private final Map<Period, SortedMap<LocalDate, Map<String, Totals>>> byPeriod;
+    private final Map<ExpenseStatus, Totals> byStatus;
+    private final List<DescriptionTotals> topDescriptions;
+
+    SpendingReport(Totals total, Map<String, Totals> byCategory,
+                   Map<Period, SortedMap<LocalDate, Map<String, Totals>>> byPeriod,
+                   Map<ExpenseStatus, Totals> byStatus, List<DescriptionTotals> topDescriptions) {
+        this.total = total;
+        this.byCategory = Collections.unmodifiableMap(byCategory);
+        this.byPeriod = new EnumMap<>(byPeriod);
+        this.byStatus = Collections.unmodifiableMap(byStatus);
+        this.topDescriptions = List.copyOf(topDescriptions);
+    }
+
+    public Totals getTotal() { return total; }
+
+    /** Категории по убыванию суммы; расходы без категории — под пустой строкой. */
+    public Map<String, Totals> getByCategory() { return byCategory; }
+
+    /**
+     * Периоды по возрастанию, для каждого — суммы по категориям. Периоды без расходов
+     * не включаются.
+     */
+    public SortedMap<LocalDate, Map<String, Totals>> getByPeriod(Period period) {
+        return Collections.unmodifiableSortedMap(byPeriod.get(period));
+    }
+
+    public Map<ExpenseStatus, Totals> getByStatus() { return byStatus; }
+
+    /**
+     * Описания с наибольшей суммой по убыванию. Описания сравниваются без учёта регистра
+     * и пробелов по краям и возвращаются в нижнем регистре.
+     */
+    public List<DescriptionTotals> getTopDescriptions() { return topDescriptions; }
+
+    /** Сумма и количество расходов с одним описанием. */
+    public static class DescriptionTotals {
+        private final String description;
+        private final Totals totals;
+
+        DescriptionTotals(String description, Totals totals) {
+            this.description = description;
+            this.totals = totals;
+        }
+
+        public String getDescription() { return description; }
+
+        public double getSum() { return totals.getSum(); }
+
+        public long getCount() { return totals.getCount(); }
+
+        @Override
+        public String toString() {
+            return description + ": " + getSum() + " (" + getCount() + ")";
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.expensemanager.business;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Строит {@link SpendingReport} параллельно: список расходов делится пополам, пока
+ * части не станут меньше порога, каждая часть считается в свой
+ * {@link ReportAccumulator}, а итоги сливаются при возврате из рекурсии.
+ * <p>
+ * Порог выбирается так, чтобы на каждый поток пула приходилось несколько частей
+ * (свободные потоки забирают их у занятых), но не меньше {@link #MIN_PARTITION} строк:
+ * на маленьких частях слияние дороже самого подсчёта.
+ */
+public class SpendingReportEngine {
+    public static final int DEFAULT_TOP = 10;
+    static final int MIN_PARTITION = 8_192;
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int top;
+
+    public SpendingReportEngine() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TOP);
+    }
+
+    /**
+     * @param pool пул, в котором считаются части
+     * @param top  сколько самых затратных описаний включить в отчёт
+     */
+    public SpendingReportEngine(ForkJoinPool pool, int top) {
+        this.pool = pool;
+        this.top = top;
+    }
+
+    public SpendingReport build(ExpenseDao dao) {
+        return build(dao.getAllExpenses());
+    }
+
+    public SpendingReport build(List<Expense> expenses) {
+        List<Expense> rows = expenses instanceof RandomAccess ? expenses : new ArrayList<>(expenses);
+        int threshold = Math.max(MIN_PARTITION, rows.size() / (pool.getParallelism() * PARTITIONS_PER_THREAD) + 1);
+        ReportAccumulator result = rows.size() <= threshold
+                ? Partition.accumulate(rows, 0, rows.size())
+                : pool.invoke(new Partition(rows, 0, rows.size(), threshold));
+        return result.toReport(top);
+    }
+
+    // Задача живёт только внутри пула и не сериализуется
+    @SuppressWarnings("serial")
+    private static final class Partition extends RecursiveTask<ReportAccumulator> {
+        private final List<Expense> rows;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        Partition(List<Expense> rows, int from, int to, int threshold) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected ReportAccumulator compute() {
+            if (to - from <= threshold) {
+                return accumulate(rows, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            Partition left = new Partition(rows, from, middle, threshold);
+            left.fork();
+            ReportAccumulator right = new Partition(rows, middle, to, threshold).compute();
+            return left.join().merge(right);
+        }
+
+        static ReportAccumulator accumulate(List<Expense> rows, int from, int to) {
+            ReportAccumulator accumulator = new ReportAccumulator();
+            for (int i = from; i < to; i++) {
+                accumulator.add(rows.get(i));
+            }
+            return accumulator;
+        }
+    }
+}
@@ -61,6 +61,16 @@ public class Expense {
         this.updateStatus();
     }
 
+    /**
+     * Конструктор копирования.
+     *
+     * @param other расход, значения которого копируются (включая идентификатор)
+     */
+    public Expense(Expense other) {
+        this(other.amount, other.description, other.category, other.dateTime);
+        this.id = other.id;
+    }
+
     /**
      * Обновляет статус расхода на основе текущей суммы.
      * Вызывается автоматически при изменении {@link #amount}.
@@ -0,0 +1,413 @@
+package org.example.expensemanager.data;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Кэш чтения поверх медленного хранилища (PostgreSQL, файлы).
+ * <p>
+ * Два кэша с вытеснением давно не использованных записей:
+ * <ul>
+ *     <li>расходы по id — не больше {@code maxExpenses} записей;</li>
+ *     <li>результаты {@link #findExpenses}, {@link #countExpenses} и {@link #getAllExpenses}
+ *     по параметрам запроса — не больше {@code maxQueries} запросов и {@code maxRows}
+ *     строк в сумме; результат больше {@code maxRows} не кэшируется.</li>
+ * </ul>
+ * Запись через этот DAO сбрасывает кэш запросов: любой запрос мог измениться.
+ * Добавленные расходы кладутся в кэш по id, а обновлённые и удалённые из него
+ * вытесняются и перечитываются при следующем обращении: хранилище могло записать
+ * строку иначе, чем её передали, или не найти её вовсе. Изменения, сделанные в обход (другим процессом в той же базе),
+ * видны после истечения {@code maxAgeMillis}; 0 — записи не устаревают.
+ * <p>
+ * Кэш хранит копии и отдаёт копии, поэтому изменение полученного расхода не портит
+ * кэш. Чтение, начатое до записи и закончившееся после неё, в кэш не попадает.
+ */
+public class CachingExpenseDao implements ExpenseDao, AutoCloseable {
+    public static final int DEFAULT_MAX_EXPENSES = 10_000;
+    public static final int DEFAULT_MAX_QUERIES = 256;
+    public static final int DEFAULT_MAX_ROWS = 100_000;
+
+    private static final System.Logger LOG = System.getLogger(CachingExpenseDao.class.getName());
+
+    private final ExpenseDao delegate;
+    private final int maxExpenses;
+    private final int maxQueries;
+    private final long maxRows;
+    private final long maxAgeNanos;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Long, Cached> byId = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<QueryKey, Cached> queries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRows;
+    // Растёт при каждой записи; чтение кладёт результат, только если записи не было
+    private long version;
+
+    private long idHits;
+    private long idMisses;
+    private long queryHits;
+    private long queryMisses;
+    private long evictions;
+    private long invalidations;
+
+    public CachingExpenseDao(ExpenseDao delegate) {
+        this(delegate, DEFAULT_MAX_EXPENSES, DEFAULT_MAX_QUERIES, DEFAULT_MAX_ROWS, 0);
+    }
+
+    public CachingExpenseDao(ExpenseDao delegate, int maxExpenses, int maxQueries, long maxRows, long maxAgeMillis) {
+        if (maxExpenses < 0 || maxQueries < 0 || maxRows < 0 || maxAgeMillis < 0) {
+            throw new IllegalArgumentException("Размеры кэша и срок жизни не могут быть отрицательными");
+        }
+        this.delegate = delegate;
+        this.maxExpenses = maxExpenses;
+        this.maxQueries = maxQueries;
+        this.maxRows = maxRows;
+        this.maxAgeNanos = maxAgeMillis * 1_000_000;
+    }
+
+    @Override
+    public Optional<Expense> findExpenseById(long id) {
+        long seen;
+        synchronized (lock) {
+            Cached cached = fresh(byId, id);
+            if (cached != null) {
+                idHits++;
+                return Optional.of(new Expense((Expense) cached.value));
+            }
+            idMisses++;
+            seen = version;
+        }
+        Optional<Expense> loaded = delegate.findExpenseById(id);
+        if (loaded.isPresent()) {
+            synchronized (lock) {
+                if (version == seen) {
+                    putExpense(loaded.get());
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<Expense> getAllExpenses() {
+        return cachedList(new QueryKey(QueryKind.ALL, null), delegate::getAllExpenses);
+    }
+
+    @Override
+    public List<Expense> findExpenses(ExpenseQuery query) {
+        return cachedList(new QueryKey(QueryKind.FIND, query), () -> delegate.findExpenses(query));
+    }
+
+    @Override
+    public long countExpenses(ExpenseQuery query) {
+        QueryKey key = new QueryKey(QueryKind.COUNT, query);
+        long seen;
+        synchronized (lock) {
+            Cached cached = fresh(queries, key);
+            if (cached != null) {
+                queryHits++;
+                return (Long) cached.value;
+            }
+            queryMisses++;
+            seen = version;
+        }
+        long count = delegate.countExpenses(query);
+        synchronized (lock) {
+            if (version == seen) {
+                putQuery(key, count, 0);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void addExpense(Expense expense) {
+        delegate.addExpense(expense);
+        written(List.of(expense), List.of());
+    }
+
+    @Override
+    public void updateExpense(Expense expense) {
+        delegate.updateExpense(expense);
+        written(List.of(), List.of(expense.getId()));
+    }
+
+    @Override
+    public void deleteExpense(long id) {
+        delegate.deleteExpense(id);
+        written(List.of(), List.of(id));
+    }
+
+    @Override
+    public void addExpenses(List<Expense> expenses) {
+        delegate.addExpenses(expenses);
+        written(expenses, List.of());
+    }
+
+    @Override
+    public void updateExpenses(List<Expense> expenses) {
+        delegate.updateExpenses(expenses);
+        List<Long> ids = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        written(List.of(), ids);
+    }
+
+    @Override
+    public void deleteExpenses(Collection<Long> ids) {
+        delegate.deleteExpenses(ids);
+        written(List.of(), ids);
+    }
+
+    @Override
+    public int preferredBatchSize() {
+        return delegate.preferredBatchSize();
+    }
+
+    @Override
+    public int maxConcurrentOperations() {
+        return delegate.maxConcurrentOperations();
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return delegate.isInProcess();
+    }
+
+    /** Сбрасывает оба кэша, например после изменения данных в обход этого DAO. */
+    public void invalidateAll() {
+        synchronized (lock) {
+            version++;
+            invalidations++;
+            byId.clear();
+            queries.clear();
+            cachedRows = 0;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(idHits, idMisses, queryHits, queryMisses, evictions, invalidations,
+                    byId.size(), queries.size(), cachedRows);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        LOG.log(System.Logger.Level.INFO, "Кэш хранилища: " + getStats());
+        invalidateAll();
+        if (delegate instanceof AutoCloseable) {
+            ((AutoCloseable) delegate).close();
+        }
+    }
+
+    private List<Expense> cachedList(QueryKey key, Supplier<List<Expense>> loader) {
+        long seen;
+        synchronized (lock) {
+            Cached cached = fresh(queries, key);
+            if (cached != null) {
+                queryHits++;
+                return copies((List<?>) cached.value);
+            }
+            queryMisses++;
+            seen = version;
+        }
+        List<Expense> loaded = loader.get();
+        if (loaded.size() <= maxRows) {
+            List<Expense> snapshot = copies(loaded);
+            synchronized (lock) {
+                if (version == seen) {
+                    putQuery(key, snapshot, snapshot.size());
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /** Сбрасывает кэш запросов, кладёт добавленные расходы и вытесняет изменённые id. */
+    private void written(List<Expense> added, Collection<Long> changed) {
+        synchronized (lock) {
+            version++;
+            if (!queries.isEmpty()) {
+                invalidations++;
+                queries.clear();
+                cachedRows = 0;
+            }
+            for (long id : changed) {
+                byId.remove(id);
+            }
+            for (Expense expense : added) {
+                putExpense(expense);
+            }
+        }
+    }
+
+    /** Запись, если она есть и не устарела; устаревшая удаляется. */
+    private <K> Cached fresh(LinkedHashMap<K, Cached> cache, K key) {
+        Cached cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (maxAgeNanos > 0 && System.nanoTime() - cached.loadedAt > maxAgeNanos) {
+            cache.remove(key);
+            cachedRows -= cached.rows;
+            return null;
+        }
+        return cached;
+    }
+
+    private void putExpense(Expense expense) {
+        if (maxExpenses == 0) {
+            return;
+        }
+        byId.put(expense.getId(), new Cached(new Expense(expense), 0));
+        if (byId.size() > maxExpenses) {
+            Iterator<Cached> eldest = byId.values().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void putQuery(QueryKey key, Object value, int rows) {
+        if (maxQueries == 0) {
+            return;
+        }
+        Cached previous = queries.put(key, new Cached(value, rows));
+        if (previous != null) {
+            cachedRows -= previous.rows;
+        }
+        cachedRows += rows;
+        Iterator<Cached> eldest = queries.values().iterator();
+        while (queries.size() > maxQueries || cachedRows > maxRows) {
+            cachedRows -= eldest.next().rows;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static List<Expense> copies(List<?> expenses) {
+        List<Expense> result = new ArrayList<>(expenses.size());
+        for (Object expense : expenses) {
+            result.add(new Expense((Expense) expense));
+        }
+        return result;
+    }
+
+    private enum QueryKind {
+        ALL,
+        FIND,
+        COUNT
+    }
+
+    /** Ключ запроса: собственная копия условий, включая курсор. */
+    private static final class QueryKey {
+        private final QueryKind kind;
+        private final ExpenseQuery query;
+
+        QueryKey(QueryKind kind, ExpenseQuery query) {
+            this.kind = kind;
+            if (query == null) {
+                this.query = null;
+            } else {
+                this.query = query.copy();
+                if (query.getAfter() != null) {
+                    this.query.after(new Expense(query.getAfter()));
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof QueryKey)) return false;
+            QueryKey key = (QueryKey) o;
+            return kind == key.kind && Objects.equals(query, key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind.hashCode() + Objects.hashCode(query);
+        }
+    }
+
+    private static final class Cached {
+        final Object value;
+        final int rows;
+        final long loadedAt = System.nanoTime();
+
+        Cached(Object value, int rows) {
+            this.value = value;
+            this.rows = rows;
+        }
+    }
+
+    /** Снимок показателей кэша. */
+    public static final class Stats {
+        private final long idHits;
+        private final long idMisses;
+        private final long queryHits;
+        private final long queryMisses;
+        private final long evictions;
+        private final long invalidations;
+        private final int cachedExpenses;
+        private final int cachedQueries;
+        private final long cachedRows;
+
+        Stats(long idHits, long idMisses, long queryHits, long queryMisses, long evictions, long invalidations,
+              int cachedExpenses, int cachedQueries, long cachedRows) {
+            this.idHits = idHits;
+            this.idMisses = idMisses;
+            this.queryHits = queryHits;
+            this.queryMisses = queryMisses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.cachedExpenses = cachedExpenses;
+            this.cachedQueries = cachedQueries;
+            this.cachedRows = cachedRows;
+        }
+
+        public long getIdHits() { return idHits; }
+
+        public long getIdMisses() { return idMisses; }
+
+        public long getQueryHits() { return queryHits; }
+
+        public long getQueryMisses() { return queryMisses; }
+
+        public long getEvictions() { return evictions; }
+
+        /** Сколько раз кэш запросов сбрасывался из-за записи. */
+        public long getInvalidations() { return invalidations; }
+
+        public int getCachedExpenses() { return cachedExpenses; }
+
+        public int getCachedQueries() { return cachedQueries; }
+
+        public long getCachedRows() { return cachedRows; }
+
+        /** Доля попаданий по обоим кэшам или 0, если обращений не было. */
+        public double getHitRate() {
+            long total = idHits + idMisses + queryHits + queryMisses;
+            return total == 0 ? 0 : (double) (idHits + queryHits) / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "по id %d/%d, запросы %d/%d (попадания/промахи), доля попаданий %.1f%%, вытеснено %d, "
+                            + "сбросов %d, в кэше %d расходов и %d запросов (%d строк)",
+                    idHits, idMisses, queryHits, queryMisses, getHitRate() * 100, evictions, invalidations,
+                    cachedExpenses, cachedQueries, cachedRows);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.expensemanager.data;
+
+import org.example.expensemanager.business.model.Expense;
+
+/**
+ * Изменение одного расхода в хранилище. Для добавления и обновления хранится копия
+ * расхода в том виде, в каком он записан; для удаления известен только id.
+ */
+public final class ExpenseChange {
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    private final Type type;
+    private final long id;
+    private final Expense expense;
+
+    private ExpenseChange(Type type, long id, Expense expense) {
+        this.type = type;
+        this.id = id;
+        this.expense = expense;
+    }
+
+    public static ExpenseChange added(Expense expense) {
+        return new ExpenseChange(Type.ADDED, expense.getId(), new Expense(expense));
+    }
+
+    public static ExpenseChange updated(Expense expense) {
+        return new ExpenseChange(Type.UPDATED, expense.getId(), new Expense(expense));
+    }
+
+    public static ExpenseChange removed(long id) {
+        return new ExpenseChange(Type.REMOVED, id, null);
+    }
+
+    public Type getType() { return type; }
+
+    public long getId() { return id; }
+
+    /** Расход после изменения; {@code null} для удаления. */
+    public Expense getExpense() { return expense; }
+
+    @Override
+    public String toString() {
+        return type + " #" + id;
+    }
+}
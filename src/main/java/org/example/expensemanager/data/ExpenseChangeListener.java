@@ -0,0 +1,12 @@
+package org.example.expensemanager.data;
+
+import java.util.List;
+
+/**
+ * Подписчик на изменения хранилища. Вызывается в потоке, выполнившем запись, сразу
+ * после неё; пакетная операция приходит одним вызовом.
+ */
+@FunctionalInterface
+public interface ExpenseChangeListener {
+    void expensesChanged(List<ExpenseChange> changes);
+}
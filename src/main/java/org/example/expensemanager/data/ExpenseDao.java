@@ -2,11 +2,96 @@ package org.example.expensemanager.data;
 
 import org.example.expensemanager.business.model.Expense;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ExpenseDao {
     void addExpense(Expense expense);
     void updateExpense(Expense expense);
     void deleteExpense(long id);
     List<Expense> getAllExpenses();
-}
\ No newline at end of file
+
+    /**
+     * Расход по id. Реализации с индексом по id переопределяют метод; по умолчанию
+     * просматривается полный список.
+     */
+    default Optional<Expense> findExpenseById(long id) {
+        for (Expense expense : getAllExpenses()) {
+            if (expense.getId() == id) {
+                return Optional.of(expense);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Выборка по условиям запроса. Реализации выполняют её средствами хранилища;
+     * по умолчанию запрос применяется к полному списку.
+     */
+    default List<Expense> findExpenses(ExpenseQuery query) {
+        return query.apply(getAllExpenses());
+    }
+
+    /**
+     * Число расходов, удовлетворяющих условиям запроса; смещение и лимит не учитываются.
+     */
+    default long countExpenses(ExpenseQuery query) {
+        long count = 0;
+        for (Expense expense : getAllExpenses()) {
+            if (query.matches(expense)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Добавляет пачку расходов. Реализации переопределяют метод, чтобы записать пачку
+     * за один проход по хранилищу; по умолчанию расходы добавляются по одному.
+     */
+    default void addExpenses(List<Expense> expenses) {
+        for (Expense expense : expenses) {
+            addExpense(expense);
+        }
+    }
+
+    default void updateExpenses(List<Expense> expenses) {
+        for (Expense expense : expenses) {
+            updateExpense(expense);
+        }
+    }
+
+    default void deleteExpenses(Collection<Long> ids) {
+        for (long id : ids) {
+            deleteExpense(id);
+        }
+    }
+
+    /**
+     * Сколько расходов выгодно передавать в {@link #addExpenses(List)} за один вызов при
+     * массовой загрузке. Хранилища, которые при каждом вызове переписывают файл целиком,
+     * возвращают {@link Integer#MAX_VALUE}: тогда загрузку лучше записать одним вызовом.
+     */
+    default int preferredBatchSize() {
+        return 2000;
+    }
+
+    /**
+     * Сколько операций хранилище может безопасно выполнять одновременно. По умолчанию
+     * одна: файловые хранилища рассчитаны на последовательный доступ.
+     */
+    default int maxConcurrentOperations() {
+        return 1;
+    }
+
+    /**
+     * Все данные принадлежат этому процессу: изменения проходят только через этот DAO,
+     * а полный список читается без обращения к серверу. Только для таких хранилищ
+     * сервис держит собственные индексы в памяти; запросы к базе данных выполняются
+     * её средствами.
+     */
+    default boolean isInProcess() {
+        return false;
+    }
+}
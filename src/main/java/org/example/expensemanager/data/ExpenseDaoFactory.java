@@ -1,17 +1,32 @@
 package org.example.expensemanager.data;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.example.expensemanager.data.daoimpl.ExpenseBinaryDao;
+import org.example.expensemanager.data.daoimpl.ExpenseJournalDao;
 import org.example.expensemanager.data.daoimpl.ExpenseJsonDao;
 import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
 import org.example.expensemanager.data.daoimpl.ExpensePostgresDao;
+import org.example.expensemanager.data.daoimpl.ExpenseSegmentedJsonDao;
+import org.example.expensemanager.data.daoimpl.JdbcConnectionPool;
+import org.example.expensemanager.data.daoimpl.WriteBehindExpenseDao;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 
 public class ExpenseDaoFactory {
-    private final Dotenv dotenv;
+    private Dotenv dotenv;
 
-    public ExpenseDaoFactory() {
-        this.dotenv = Dotenv.configure()
-                .filename("config.env")
-                .load();
+    /**
+     * Настройки читаются при создании первого хранилища, которому они нужны.
+     */
+    private synchronized Dotenv dotenv() {
+        if (dotenv == null) {
+            dotenv = Dotenv.configure()
+                    .filename("config.env")
+                    .load();
+        }
+        return dotenv;
     }
 
     public ExpenseDao createMemoryDao() {
@@ -20,22 +35,92 @@ public class ExpenseDaoFactory {
 
     public ExpenseDao createPostgresDao() {
         try {
-            String url = dotenv.get("DB_URL");
-            String user = dotenv.get("DB_USER");
-            String password = dotenv.get("DB_PASSWORD");
+            String url = dotenv().get("DB_URL");
+            String user = dotenv().get("DB_USER");
+            String password = dotenv().get("DB_PASSWORD");
 
             if (url == null || user == null || password == null) {
                 throw new RuntimeException("В env-файле отсутствует конфигурация БД");
             }
 
-            return new ExpensePostgresDao(url, user, password);
+            int poolSize = Integer.parseInt(dotenv().get("DB_POOL_SIZE", "1"));
+            long validationInterval = Long.parseLong(dotenv().get("DB_POOL_VALIDATION_MS",
+                    String.valueOf(JdbcConnectionPool.DEFAULT_VALIDATION_INTERVAL_MILLIS)));
+            ExpensePostgresDao dao = new ExpensePostgresDao(
+                    new JdbcConnectionPool(url, user, password, poolSize, validationInterval));
+            if (Boolean.parseBoolean(dotenv().get("DB_WRITE_BEHIND", "false"))) {
+                int maxBatch = Integer.parseInt(dotenv().get("DB_WRITE_BEHIND_BATCH",
+                        String.valueOf(WriteBehindExpenseDao.DEFAULT_MAX_BATCH)));
+                long delay = Long.parseLong(dotenv().get("DB_WRITE_BEHIND_DELAY_MS",
+                        String.valueOf(WriteBehindExpenseDao.DEFAULT_DELAY_MILLIS)));
+                return cached("DB", new WriteBehindExpenseDao(dao, maxBatch, delay));
+            }
+            return cached("DB", dao);
         } catch (Exception e) {
             throw new RuntimeException("Не удалось создать PostgreSQL DAO: " + e.getMessage(), e);
         }
     }
 
     public ExpenseDao createJsonDao() {
-        String filePath = dotenv.get("JSON_FILE_PATH", "expenses.json");
-        return new ExpenseJsonDao(filePath);
+        String filePath = dotenv().get("JSON_FILE_PATH", "expenses.json");
+        boolean prettyPrinting = Boolean.parseBoolean(dotenv().get("JSON_PRETTY", "true"));
+        boolean journal = Boolean.parseBoolean(dotenv().get("JSON_JOURNAL", "false"));
+        boolean segmented = Boolean.parseBoolean(dotenv().get("JSON_SEGMENTED", "false"));
+        if (journal && segmented) {
+            // Форматы хранят данные в разных местах; молча выбрать один значит показать не те расходы
+            throw new RuntimeException("В env-файле заданы одновременно JSON_JOURNAL=true и JSON_SEGMENTED=true; "
+                    + "включите один формат JSON-хранилища");
+        }
+        if (journal) {
+            long threshold = Long.parseLong(dotenv().get("JSON_JOURNAL_COMPACT_BYTES",
+                    String.valueOf(ExpenseJournalDao.DEFAULT_COMPACTION_THRESHOLD)));
+            return cached("JSON", new ExpenseJournalDao(filePath, threshold, prettyPrinting));
+        }
+        if (segmented) {
+            return cached("JSON", createSegmentedJsonDao(filePath, prettyPrinting));
+        }
+        return cached("JSON", new ExpenseJsonDao(filePath, prettyPrinting));
+    }
+
+    /**
+     * Хранилище по месяцам в каталоге {@code JSON_SEGMENT_DIR} (по умолчанию — имя
+     * {@code JSON_FILE_PATH} без {@code .json}). При первом открытии каталога расходы
+     * переносятся из прежнего файла, если он есть; сам файл остаётся нетронутым. Перенос
+     * отмечается в манифесте каталога и не повторяется, даже если все расходы удалены.
+     */
+    private ExpenseSegmentedJsonDao createSegmentedJsonDao(String filePath, boolean prettyPrinting) {
+        String directory = dotenv().get("JSON_SEGMENT_DIR",
+                filePath.endsWith(".json") ? filePath.substring(0, filePath.length() - 5) : filePath + "-segments");
+        boolean compress = Boolean.parseBoolean(dotenv().get("JSON_SEGMENT_GZIP", "false"));
+        ExpenseSegmentedJsonDao dao = new ExpenseSegmentedJsonDao(directory, compress, prettyPrinting);
+        if (!dao.isImported()) {
+            dao.importExpenses(Files.isRegularFile(Paths.get(filePath))
+                    ? new ExpenseJsonDao(filePath, prettyPrinting).getAllExpenses()
+                    : List.of());
+        }
+        return dao;
+    }
+
+    public ExpenseDao createBinaryDao() {
+        return cached("BINARY", new ExpenseBinaryDao(dotenv().get("BINARY_FILE_PATH", "expenses.bin")));
+    }
+
+    /**
+     * Оборачивает хранилище кэшем чтения, если для него задано {@code <prefix>_CACHE=true}.
+     * Размеры и срок жизни записей — {@code <prefix>_CACHE_EXPENSES}, {@code _QUERIES},
+     * {@code _ROWS} и {@code _TTL_MS}.
+     */
+    private ExpenseDao cached(String prefix, ExpenseDao dao) {
+        if (!Boolean.parseBoolean(dotenv().get(prefix + "_CACHE", "false"))) {
+            return dao;
+        }
+        int maxExpenses = Integer.parseInt(dotenv().get(prefix + "_CACHE_EXPENSES",
+                String.valueOf(CachingExpenseDao.DEFAULT_MAX_EXPENSES)));
+        int maxQueries = Integer.parseInt(dotenv().get(prefix + "_CACHE_QUERIES",
+                String.valueOf(CachingExpenseDao.DEFAULT_MAX_QUERIES)));
+        long maxRows = Long.parseLong(dotenv().get(prefix + "_CACHE_ROWS",
+                String.valueOf(CachingExpenseDao.DEFAULT_MAX_ROWS)));
+        long ttl = Long.parseLong(dotenv().get(prefix + "_CACHE_TTL_MS", "0"));
+        return new CachingExpenseDao(dao, maxExpenses, maxQueries, maxRows, ttl);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,173 @@
+package org.example.expensemanager.data;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.expensemanager.business.model.Expense;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый кодек {@link Expense} поверх {@link JsonReader}/{@link JsonWriter} без рефлексии.
+ * <p>
+ * Формат совместим с тем, что раньше писал Gson: массив объектов с полями
+ * {@code id, amount, description, category, dateTime, status}. Статус при чтении
+ * не доверяется файлу и пересчитывается по сумме. Неизвестные поля пропускаются.
+ */
+public class ExpenseJsonCodec {
+    private final boolean prettyPrinting;
+
+    public ExpenseJsonCodec(boolean prettyPrinting) {
+        this.prettyPrinting = prettyPrinting;
+    }
+
+    public void writeAll(Writer writer, Iterable<Expense> expenses) throws IOException {
+        JsonWriter out = newWriter(writer);
+        out.beginArray();
+        for (Expense expense : expenses) {
+            writeExpense(out, expense);
+        }
+        out.endArray();
+        out.flush();
+    }
+
+    public List<Expense> readAll(Reader reader) throws IOException {
+        List<Expense> expenses = new ArrayList<>();
+        forEach(reader, expenses::add);
+        return expenses;
+    }
+
+    /**
+     * Читает массив расходов, передавая каждую запись обработчику, не удерживая весь список.
+     */
+    public void forEach(Reader reader, Consumer<Expense> visitor) throws IOException {
+        try (ExpenseIterator iterator = iterator(reader)) {
+            while (iterator.hasNext()) {
+                visitor.accept(iterator.next());
+            }
+        }
+    }
+
+    /**
+     * Открывает курсор по массиву расходов. Закрытие курсора закрывает и {@code reader}.
+     */
+    public ExpenseIterator iterator(Reader reader) throws IOException {
+        return new ExpenseIterator(new JsonReader(reader));
+    }
+
+    public JsonWriter newWriter(Writer writer) {
+        JsonWriter out = new JsonWriter(writer);
+        if (prettyPrinting) {
+            out.setIndent("  ");
+        }
+        return out;
+    }
+
+    public void writeExpense(JsonWriter out, Expense expense) throws IOException {
+        out.beginObject();
+        out.name("id").value(expense.getId());
+        out.name("amount").value(expense.getAmount());
+        if (expense.getDescription() != null) {
+            out.name("description").value(expense.getDescription());
+        }
+        if (expense.getCategory() != null) {
+            out.name("category").value(expense.getCategory());
+        }
+        if (expense.getDateTime() != null) {
+            out.name("dateTime").value(LocalDateTimeAdapter.format(expense.getDateTime()));
+        }
+        if (expense.getStatus() != null) {
+            out.name("status").value(expense.getStatus().name());
+        }
+        out.endObject();
+    }
+
+    public Expense readExpense(JsonReader in) throws IOException {
+        Expense expense = new Expense();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id" -> expense.setId(in.nextLong());
+                case "amount" -> expense.setAmount(in.nextDouble());
+                case "description" -> expense.setDescription(in.nextString());
+                case "category" -> expense.setCategory(in.nextString());
+                case "dateTime" -> expense.setDateTime(LocalDateTimeAdapter.parse(in.nextString()));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (expense.getStatus() == null) {
+            expense.updateStatus();
+        }
+        return expense;
+    }
+
+    /**
+     * Курсор по JSON-массиву расходов.
+     */
+    public class ExpenseIterator implements Iterator<Expense>, Closeable {
+        private final JsonReader in;
+        private boolean started;
+        private boolean finished;
+
+        private ExpenseIterator(JsonReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                if (finished) {
+                    return false;
+                }
+                if (!started) {
+                    started = true;
+                    if (in.peek() == JsonToken.END_DOCUMENT) {
+                        finished = true;
+                        return false;
+                    }
+                    in.beginArray();
+                }
+                if (in.hasNext()) {
+                    return true;
+                }
+                in.endArray();
+                finished = true;
+                return false;
+            } catch (IOException e) {
+                throw new JsonParseException("Ошибка чтения JSON", e);
+            }
+        }
+
+        @Override
+        public Expense next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return readExpense(in);
+            } catch (IOException e) {
+                throw new JsonParseException("Ошибка чтения JSON", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.expensemanager.data;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Параметры выборки расходов: период, категория, поиск по тексту, диапазон сумм,
+ * сортировка и страница. Все условия необязательны; незаданные не ограничивают выборку.
+ * <p>
+ * Поиск по тексту повторяет фильтр таблицы: подстрока без учёта регистра в описании,
+ * категории или строковом представлении суммы.
+ * <p>
+ * Для постраничного чтения есть два способа: смещение ({@link #offset(int)}) и курсор
+ * ({@link #after(Expense)}) — выборка строк, идущих в порядке сортировки строго после
+ * последней строки предыдущей страницы. Курсор не требует пропускать уже прочитанные
+ * строки, поэтому стоимость страницы не растёт с её номером.
+ */
+public class ExpenseQuery {
+
+    /** Порядок сортировки; при равенстве ключа порядок определяется id. */
+    public enum SortOrder {
+        NONE,
+        DATE_DESC,
+        DATE_ASC,
+        AMOUNT_ASC,
+        AMOUNT_DESC
+    }
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String category;
+    private String text;
+    private Double minAmount;
+    private Double maxAmount;
+    private SortOrder sortOrder = SortOrder.NONE;
+    private int offset;
+    private int limit = -1;
+    private Expense after;
+    private Comparator<Expense> cursorComparator;
+
+    /** Начало периода (включительно). */
+    public ExpenseQuery from(LocalDateTime from) {
+        this.from = from;
+        return this;
+    }
+
+    /** Конец периода (не включительно). */
+    public ExpenseQuery to(LocalDateTime to) {
+        this.to = to;
+        return this;
+    }
+
+    public ExpenseQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    /** Подстрока для поиска; пустая строка равносильна отсутствию фильтра. */
+    public ExpenseQuery text(String text) {
+        this.text = text == null || text.isEmpty() ? null : text.toLowerCase();
+        return this;
+    }
+
+    public ExpenseQuery minAmount(Double minAmount) {
+        this.minAmount = minAmount;
+        return this;
+    }
+
+    public ExpenseQuery maxAmount(Double maxAmount) {
+        this.maxAmount = maxAmount;
+        return this;
+    }
+
+    public ExpenseQuery sortBy(SortOrder sortOrder) {
+        this.sortOrder = sortOrder == null ? SortOrder.NONE : sortOrder;
+        this.cursorComparator = null;
+        return this;
+    }
+
+    public ExpenseQuery offset(int offset) {
+        this.offset = Math.max(0, offset);
+        return this;
+    }
+
+    /** Максимальное число строк; отрицательное значение снимает ограничение. */
+    public ExpenseQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Курсор: только строки, идущие в порядке сортировки строго после {@code cursor}.
+     * Без сортировки ({@link SortOrder#NONE}) курсор не применяется.
+     */
+    public ExpenseQuery after(Expense cursor) {
+        this.after = cursor;
+        return this;
+    }
+
+    /** Копия условий запроса, которую можно менять независимо от исходного. */
+    public ExpenseQuery copy() {
+        ExpenseQuery copy = new ExpenseQuery();
+        copy.from = from;
+        copy.to = to;
+        copy.category = category;
+        copy.text = text;
+        copy.minAmount = minAmount;
+        copy.maxAmount = maxAmount;
+        copy.sortOrder = sortOrder;
+        copy.offset = offset;
+        copy.limit = limit;
+        copy.after = after;
+        return copy;
+    }
+
+    public LocalDateTime getFrom() { return from; }
+
+    public LocalDateTime getTo() { return to; }
+
+    public String getCategory() { return category; }
+
+    /** Текст поиска в нижнем регистре или {@code null}. */
+    public String getText() { return text; }
+
+    public Double getMinAmount() { return minAmount; }
+
+    public Double getMaxAmount() { return maxAmount; }
+
+    public SortOrder getSortOrder() { return sortOrder; }
+
+    public int getOffset() { return offset; }
+
+    public int getLimit() { return limit; }
+
+    public boolean hasLimit() { return limit >= 0; }
+
+    /** Курсор или {@code null}; для {@link SortOrder#NONE} всегда {@code null}. */
+    public Expense getAfter() { return sortOrder == SortOrder.NONE ? null : after; }
+
+    public boolean matches(Expense e) {
+        if (from != null && (e.getDateTime() == null || e.getDateTime().isBefore(from))) {
+            return false;
+        }
+        if (to != null && (e.getDateTime() == null || !e.getDateTime().isBefore(to))) {
+            return false;
+        }
+        if (category != null && !category.equals(e.getCategory())) {
+            return false;
+        }
+        if (minAmount != null && e.getAmount() < minAmount) {
+            return false;
+        }
+        if (maxAmount != null && e.getAmount() > maxAmount) {
+            return false;
+        }
+        if (getAfter() != null) {
+            if (cursorComparator == null) {
+                cursorComparator = comparator();
+            }
+            if (cursorComparator.compare(e, after) <= 0) {
+                return false;
+            }
+        }
+        return text == null || matchesText(e);
+    }
+
+    private boolean matchesText(Expense e) {
+        return (e.getDescription() != null && e.getDescription().toLowerCase().contains(text))
+                || (e.getCategory() != null && e.getCategory().toLowerCase().contains(text))
+                || String.valueOf(e.getAmount()).contains(text);
+    }
+
+    /**
+     * Компаратор для выбранного порядка или {@code null} для {@link SortOrder#NONE}.
+     */
+    public Comparator<Expense> comparator() {
+        Comparator<Expense> byId = Comparator.comparingLong(Expense::getId);
+        return switch (sortOrder) {
+            case DATE_DESC -> Comparator.comparing(Expense::getDateTime).thenComparing(byId).reversed();
+            case DATE_ASC -> Comparator.comparing(Expense::getDateTime).thenComparing(byId);
+            case AMOUNT_ASC -> Comparator.comparingDouble(Expense::getAmount).thenComparing(byId);
+            case AMOUNT_DESC -> Comparator.comparingDouble(Expense::getAmount).thenComparing(byId).reversed();
+            case NONE -> null;
+        };
+    }
+
+    /**
+     * Выполняет запрос над коллекцией в памяти: фильтрация, сортировка, страница.
+     */
+    public List<Expense> apply(Iterable<Expense> expenses) {
+        boolean unsorted = sortOrder == SortOrder.NONE;
+        List<Expense> matched = new ArrayList<>();
+        int skipped = 0;
+        for (Expense e : expenses) {
+            if (unsorted && hasLimit() && matched.size() >= limit) {
+                break;
+            }
+            if (!matches(e)) {
+                continue;
+            }
+            if (unsorted && skipped < offset) {
+                skipped++;
+                continue;
+            }
+            matched.add(e);
+        }
+        if (unsorted) {
+            return matched;
+        }
+        return sortAndPage(matched);
+    }
+
+    /**
+     * Сортирует отфильтрованные строки и вырезает страницу. Если страница заметно меньше
+     * выборки, полная сортировка не нужна: первые {@code offset + limit} строк
+     * отбираются кучей за O(n log k).
+     */
+    public List<Expense> sortAndPage(List<Expense> matched) {
+        Comparator<Expense> comparator = comparator();
+        if (comparator == null) {
+            return page(matched);
+        }
+        long wanted = hasLimit() ? (long) offset + limit : Long.MAX_VALUE;
+        if (wanted >= matched.size() / 4) {
+            matched.sort(comparator);
+            return page(matched);
+        }
+        int k = (int) wanted;
+        if (k == 0) {
+            return new ArrayList<>();
+        }
+        // Куча с наибольшим из отобранных на вершине
+        PriorityQueue<Expense> top = new PriorityQueue<>(k, comparator.reversed());
+        for (Expense e : matched) {
+            if (top.size() < k) {
+                top.add(e);
+            } else if (comparator.compare(e, top.peek()) < 0) {
+                top.poll();
+                top.add(e);
+            }
+        }
+        List<Expense> sorted = new ArrayList<>(top);
+        sorted.sort(comparator);
+        return page(sorted);
+    }
+
+    /**
+     * Вырезает страницу из уже отфильтрованного и отсортированного списка.
+     */
+    public List<Expense> page(List<Expense> sorted) {
+        int fromIndex = Math.min(offset, sorted.size());
+        int toIndex = hasLimit() ? (int) Math.min((long) fromIndex + limit, sorted.size()) : sorted.size();
+        if (fromIndex == 0 && toIndex == sorted.size()) {
+            return sorted;
+        }
+        return new ArrayList<>(sorted.subList(fromIndex, toIndex));
+    }
+
+    /**
+     * Запросы равны, если выбирают одни и те же строки. Курсор сравнивается по полям,
+     * участвующим в сортировке: id, дате и сумме.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ExpenseQuery)) return false;
+        ExpenseQuery query = (ExpenseQuery) o;
+        return offset == query.offset
+                && limit == query.limit
+                && sortOrder == query.sortOrder
+                && Objects.equals(from, query.from)
+                && Objects.equals(to, query.to)
+                && Objects.equals(category, query.category)
+                && Objects.equals(text, query.text)
+                && Objects.equals(minAmount, query.minAmount)
+                && Objects.equals(maxAmount, query.maxAmount)
+                && sameCursor(getAfter(), query.getAfter());
+    }
+
+    @Override
+    public int hashCode() {
+        Expense cursor = getAfter();
+        return Objects.hash(from, to, category, text, minAmount, maxAmount, sortOrder, offset, limit,
+                cursor == null ? null : cursor.getId());
+    }
+
+    private static boolean sameCursor(Expense a, Expense b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getId() == b.getId()
+                && Double.compare(a.getAmount(), b.getAmount()) == 0
+                && Objects.equals(a.getDateTime(), b.getDateTime());
+    }
+}
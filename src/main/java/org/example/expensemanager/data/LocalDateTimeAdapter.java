@@ -8,19 +8,84 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
-    private final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
     @Override
     public void write(JsonWriter out, LocalDateTime value) throws IOException {
         if (value == null) {
             out.nullValue();
         } else {
-            out.value(value.format(formatter));
+            out.value(format(value));
         }
     }
 
     @Override
     public LocalDateTime read(JsonReader in) throws IOException {
-        return LocalDateTime.parse(in.nextString(), formatter);
+        return parse(in.nextString());
+    }
+
+    /**
+     * Форматирует дату в ISO_LOCAL_DATE_TIME. Типичный случай (год из четырёх цифр,
+     * без долей секунды) собирается напрямую в char[], минуя {@link DateTimeFormatter}.
+     */
+    public static String format(LocalDateTime value) {
+        int year = value.getYear();
+        if (year < 0 || year > 9999 || value.getNano() != 0) {
+            return value.format(FORMATTER);
+        }
+        char[] buf = new char[19];
+        putDigits(buf, 0, year, 4);
+        buf[4] = '-';
+        putDigits(buf, 5, value.getMonthValue(), 2);
+        buf[7] = '-';
+        putDigits(buf, 8, value.getDayOfMonth(), 2);
+        buf[10] = 'T';
+        putDigits(buf, 11, value.getHour(), 2);
+        buf[13] = ':';
+        putDigits(buf, 14, value.getMinute(), 2);
+        buf[16] = ':';
+        putDigits(buf, 17, value.getSecond(), 2);
+        return new String(buf);
+    }
+
+    /**
+     * Разбирает дату в формате ISO_LOCAL_DATE_TIME. Строки вида {@code yyyy-MM-ddTHH:mm[:ss]}
+     * разбираются вручную, всё остальное передаётся {@link DateTimeFormatter}.
+     */
+    public static LocalDateTime parse(String text) {
+        int length = text.length();
+        if ((length == 16 || length == 19)
+                && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == 'T'
+                && text.charAt(13) == ':' && (length == 16 || text.charAt(16) == ':')) {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 2);
+            int day = digits(text, 8, 2);
+            int hour = digits(text, 11, 2);
+            int minute = digits(text, 14, 2);
+            int second = length == 19 ? digits(text, 17, 2) : 0;
+            if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second);
+            }
+        }
+        return LocalDateTime.parse(text, FORMATTER);
+    }
+
+    private static void putDigits(char[] buf, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int digits(String text, int offset, int width) {
+        int value = 0;
+        for (int i = offset; i < offset + width; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 }
@@ -0,0 +1,151 @@
+package org.example.expensemanager.data;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Хранилище, сообщающее подписчикам о каждом изменении.
+ * <p>
+ * События рассылаются после успешной записи в потоке, который её выполнил, поэтому
+ * подписчики видят изменения в том же порядке, в каком они попали в хранилище.
+ * Ошибка подписчика пишется в журнал и не влияет ни на запись, ни на остальных
+ * подписчиков.
+ * <p>
+ * Хранилища отклоняют обновление отсутствующего id исключением, поэтому событие
+ * {@code UPDATED} означает подтверждённое изменение. {@code REMOVED} означает лишь, что
+ * строки с таким id больше нет: удаление отсутствующего id не ошибка, и подписчики
+ * пропускают незнакомые id. Записи в хранилище мимо этой обёртки событий не дают.
+ */
+public class ObservableExpenseDao implements ExpenseDao, AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(ObservableExpenseDao.class.getName());
+
+    private final ExpenseDao delegate;
+    private final List<ExpenseChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ObservableExpenseDao(ExpenseDao delegate) {
+        this.delegate = delegate;
+    }
+
+    /** Возвращает само хранилище, если оно уже рассылает события, иначе оборачивает его. */
+    public static ObservableExpenseDao of(ExpenseDao dao) {
+        return dao instanceof ObservableExpenseDao ? (ObservableExpenseDao) dao : new ObservableExpenseDao(dao);
+    }
+
+    public void addChangeListener(ExpenseChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ExpenseChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void addExpense(Expense expense) {
+        delegate.addExpense(expense);
+        publish(List.of(ExpenseChange.added(expense)));
+    }
+
+    @Override
+    public void updateExpense(Expense expense) {
+        delegate.updateExpense(expense);
+        publish(List.of(ExpenseChange.updated(expense)));
+    }
+
+    @Override
+    public void deleteExpense(long id) {
+        delegate.deleteExpense(id);
+        publish(List.of(ExpenseChange.removed(id)));
+    }
+
+    @Override
+    public void addExpenses(List<Expense> expenses) {
+        delegate.addExpenses(expenses);
+        List<ExpenseChange> changes = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            changes.add(ExpenseChange.added(expense));
+        }
+        publish(changes);
+    }
+
+    @Override
+    public void updateExpenses(List<Expense> expenses) {
+        delegate.updateExpenses(expenses);
+        List<ExpenseChange> changes = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            changes.add(ExpenseChange.updated(expense));
+        }
+        publish(changes);
+    }
+
+    @Override
+    public void deleteExpenses(Collection<Long> ids) {
+        delegate.deleteExpenses(ids);
+        List<ExpenseChange> changes = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            changes.add(ExpenseChange.removed(id));
+        }
+        publish(changes);
+    }
+
+    @Override
+    public List<Expense> getAllExpenses() {
+        return delegate.getAllExpenses();
+    }
+
+    @Override
+    public Optional<Expense> findExpenseById(long id) {
+        return delegate.findExpenseById(id);
+    }
+
+    @Override
+    public List<Expense> findExpenses(ExpenseQuery query) {
+        return delegate.findExpenses(query);
+    }
+
+    @Override
+    public long countExpenses(ExpenseQuery query) {
+        return delegate.countExpenses(query);
+    }
+
+    @Override
+    public int preferredBatchSize() {
+        return delegate.preferredBatchSize();
+    }
+
+    @Override
+    public int maxConcurrentOperations() {
+        return delegate.maxConcurrentOperations();
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return delegate.isInProcess();
+    }
+
+    @Override
+    public void close() throws Exception {
+        listeners.clear();
+        if (delegate instanceof AutoCloseable) {
+            ((AutoCloseable) delegate).close();
+        }
+    }
+
+    private void publish(List<ExpenseChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<ExpenseChange> view = changes.size() == 1 ? changes : List.copyOf(changes);
+        for (ExpenseChangeListener listener : listeners) {
+            try {
+                listener.expensesChanged(view);
+            } catch (RuntimeException e) {
+                LOG.log(System.Logger.Level.WARNING, "Ошибка обработчика изменений хранилища", e);
+            }
+        }
+    }
+}
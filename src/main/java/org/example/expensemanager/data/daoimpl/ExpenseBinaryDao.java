@@ -0,0 +1,614 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище в двоичном файле, отображённом в память.
+ * <p>
+ * Файл состоит из заголовка, области записей фиксированной длины и кучи строк:
+ * <pre>
+ * заголовок (64 байта): сигнатура, версия, ёмкость области записей, число занятых
+ *                       записей, число живых записей, следующий id, конец кучи,
+ *                       объём мусора в куче
+ * запись    (40 байт):  id, сумма в копейках, секунды эпохи (UTC), ссылка на категорию,
+ *                       ссылка на описание, флаги
+ * куча:                 строки в виде «длина в байтах + UTF-8»
+ * </pre>
+ * Ссылки на строки — смещения от начала кучи, {@code -1} означает {@code null}.
+ * Категории в куче не повторяются, поэтому фильтр по категории сравнивает ссылки.
+ * <p>
+ * Открытие читает только заголовок; индекс по id строится при первом обращении к нему.
+ * Изменение перезаписывает запись на месте, удаление помечает её флагом. Когда удалённых
+ * записей или мусора в куче становится больше, чем живых данных, файл переписывается
+ * без них во временный файл и атомарно подменяется; так же файл растёт, когда
+ * заканчивается место под записи.
+ * <p>
+ * Изменения попадают в файл через страничный кэш ОС и переживают падение процесса;
+ * на диск принудительно сбрасываются при свёртке и закрытии. Размер файла ограничен
+ * 2 ГБ (одно отображение).
+ */
+public class ExpenseBinaryDao implements ExpenseDao, AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(ExpenseBinaryDao.class.getName());
+
+    private static final int MAGIC = 0x45585042; // "EXPB"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_RECORD_COUNT = 16;
+    private static final int H_LIVE_COUNT = 24;
+    private static final int H_NEXT_ID = 32;
+    private static final int H_HEAP_END = 40;
+    private static final int H_HEAP_GARBAGE = 48;
+
+    private static final int RECORD_SIZE = 40;
+    private static final int R_ID = 0;
+    private static final int R_CENTS = 8;
+    private static final int R_EPOCH = 16;
+    private static final int R_CATEGORY = 24;
+    private static final int R_DESCRIPTION = 28;
+    private static final int R_FLAGS = 32;
+    private static final int FLAG_DELETED = 1;
+
+    private static final int NULL_REF = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_HEAP_SIZE = 64 * 1024;
+    /** Свёртка не запускается, пока мусора меньше этого объёма. */
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+    private static final long MIN_COMPACTION_HEAP_BYTES = 1024 * 1024;
+
+    private final Path path;
+    private final Path tempPath;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long capacity;
+    private long recordCount;
+    private long liveCount;
+    private long nextId;
+    private long heapEnd;
+    private long heapGarbage;
+
+    /** Номер записи по id; строится лениво. */
+    private LongIntHashMap slotById;
+    /** Ссылки на категории в куче; строится лениво. */
+    private Map<String, Integer> categoryRefs;
+    private boolean closed;
+
+    public ExpenseBinaryDao(String filePath) {
+        this.path = Paths.get(filePath);
+        this.tempPath = Paths.get(filePath + ".tmp");
+        try {
+            Files.deleteIfExists(tempPath);
+            if (Files.exists(path) && Files.size(path) > 0) {
+                open();
+            } else {
+                create(path, INITIAL_CAPACITY, INITIAL_HEAP_SIZE);
+                open();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка открытия двоичного файла расходов", e);
+        }
+    }
+
+    @Override
+    public synchronized void addExpense(Expense expense) {
+        ensureOpen();
+        ensureRecordCapacity(1);
+        expense.setId(nextId++);
+        int slot = (int) recordCount;
+        writeRecord(slot, expense);
+        recordCount++;
+        liveCount++;
+        writeHeader();
+        slotById().put(expense.getId(), slot);
+    }
+
+    @Override
+    public synchronized void addExpenses(List<Expense> batch) {
+        ensureOpen();
+        ensureRecordCapacity(batch.size());
+        for (Expense expense : batch) {
+            expense.setId(nextId++);
+            int slot = (int) recordCount;
+            writeRecord(slot, expense);
+            recordCount++;
+            liveCount++;
+            slotById().put(expense.getId(), slot);
+        }
+        writeHeader();
+    }
+
+    @Override
+    public synchronized void updateExpense(Expense expense) {
+        ensureOpen();
+        int slot = slotById().get(expense.getId());
+        if (slot < 0) {
+            throw new RuntimeException("Расход не найден по id: " + expense.getId());
+        }
+        rewriteRecord(slot, expense);
+        writeHeader();
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void updateExpenses(List<Expense> batch) {
+        ensureOpen();
+        for (Expense expense : batch) {
+            if (slotById().get(expense.getId()) < 0) {
+                throw new RuntimeException("Расход не найден по id: " + expense.getId());
+            }
+        }
+        for (Expense expense : batch) {
+            rewriteRecord(slotById().get(expense.getId()), expense);
+        }
+        writeHeader();
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void deleteExpense(long id) {
+        ensureOpen();
+        if (markDeleted(id)) {
+            writeHeader();
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public synchronized void deleteExpenses(Collection<Long> ids) {
+        ensureOpen();
+        boolean changed = false;
+        for (long id : ids) {
+            changed |= markDeleted(id);
+        }
+        if (changed) {
+            writeHeader();
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public synchronized Optional<Expense> findExpenseById(long id) {
+        ensureOpen();
+        int slot = slotById().get(id);
+        return slot < 0 ? Optional.empty() : Optional.of(readRecord(slot));
+    }
+
+    @Override
+    public synchronized List<Expense> getAllExpenses() {
+        ensureOpen();
+        List<Expense> expenses = new ArrayList<>((int) liveCount);
+        for (int slot = 0; slot < recordCount; slot++) {
+            if (!isDeleted(slot)) {
+                expenses.add(readRecord(slot));
+            }
+        }
+        return expenses;
+    }
+
+    /**
+     * Условия по дате, сумме и категории проверяются по полям записи в файле;
+     * строки читаются только для подходящих записей.
+     */
+    @Override
+    public synchronized List<Expense> findExpenses(ExpenseQuery query) {
+        ensureOpen();
+        List<Expense> matched = new ArrayList<>();
+        scan(query, matched::add);
+        return query.sortAndPage(matched);
+    }
+
+    @Override
+    public synchronized long countExpenses(ExpenseQuery query) {
+        ensureOpen();
+        long[] count = new long[1];
+        scan(query, expense -> count[0]++);
+        return count[0];
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return true;
+    }
+
+    private void scan(ExpenseQuery query, Consumer<Expense> visitor) {
+        int categoryRef = NULL_REF;
+        if (query.getCategory() != null) {
+            Integer ref = categoryRefs().get(query.getCategory());
+            if (ref == null) {
+                return;
+            }
+            categoryRef = ref;
+        }
+        long fromEpoch = query.getFrom() == null ? Long.MIN_VALUE : ExpenseColumnStore.toEpochSecond(query.getFrom());
+        long toEpoch = query.getTo() == null ? Long.MAX_VALUE : ExpenseColumnStore.toEpochSecond(query.getTo());
+        boolean timeBounded = query.getFrom() != null || query.getTo() != null;
+        double minAmount = query.getMinAmount() == null ? Double.NEGATIVE_INFINITY : query.getMinAmount();
+        double maxAmount = query.getMaxAmount() == null ? Double.POSITIVE_INFINITY : query.getMaxAmount();
+        boolean objectCheck = query.getText() != null || query.getAfter() != null;
+
+        for (int slot = 0; slot < recordCount; slot++) {
+            int offset = recordOffset(slot);
+            if ((buffer.getInt(offset + R_FLAGS) & FLAG_DELETED) != 0) {
+                continue;
+            }
+            long epoch = buffer.getLong(offset + R_EPOCH);
+            if (timeBounded && (epoch == ExpenseColumnStore.NO_TIME || epoch < fromEpoch || epoch >= toEpoch)) {
+                continue;
+            }
+            double amount = buffer.getLong(offset + R_CENTS) / 100.0;
+            if (amount < minAmount || amount > maxAmount) {
+                continue;
+            }
+            if (categoryRef != NULL_REF && buffer.getInt(offset + R_CATEGORY) != categoryRef) {
+                continue;
+            }
+            Expense expense = readRecord(slot);
+            if (!objectCheck || query.matches(expense)) {
+                visitor.accept(expense);
+            }
+        }
+    }
+
+    /**
+     * Переписывает файл без удалённых записей и мусора в куче, не дожидаясь порога.
+     */
+    public synchronized void compact() {
+        ensureOpen();
+        rewrite(Math.max(INITIAL_CAPACITY, liveCount * 2));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка закрытия двоичного файла расходов", e);
+        } finally {
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Двоичный файл расходов закрыт");
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (buffer.getInt(H_MAGIC) != MAGIC || buffer.getInt(H_VERSION) != VERSION) {
+            channel.close();
+            throw new IOException("Неизвестный формат файла: " + path);
+        }
+        capacity = buffer.getLong(H_CAPACITY);
+        recordCount = buffer.getLong(H_RECORD_COUNT);
+        liveCount = buffer.getLong(H_LIVE_COUNT);
+        nextId = buffer.getLong(H_NEXT_ID);
+        heapEnd = buffer.getLong(H_HEAP_END);
+        heapGarbage = buffer.getLong(H_HEAP_GARBAGE);
+        slotById = null;
+        categoryRefs = null;
+    }
+
+    /** Создаёт пустой файл с заданной ёмкостью области записей и кучи. */
+    private static void create(Path target, long capacity, long heapSize) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(H_MAGIC, MAGIC);
+            header.putInt(H_VERSION, VERSION);
+            header.putLong(H_CAPACITY, capacity);
+            header.putLong(H_NEXT_ID, 1);
+            header.putLong(H_HEAP_END, 0);
+            out.write(header, 0);
+            out.write(ByteBuffer.allocate(1), HEADER_SIZE + capacity * RECORD_SIZE + heapSize - 1);
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putLong(H_CAPACITY, capacity);
+        buffer.putLong(H_LIVE_COUNT, liveCount);
+        buffer.putLong(H_NEXT_ID, nextId);
+        buffer.putLong(H_HEAP_END, heapEnd);
+        buffer.putLong(H_HEAP_GARBAGE, heapGarbage);
+        // Число записей пишется последним: запись за его пределами после сбоя просто не видна
+        buffer.putLong(H_RECORD_COUNT, recordCount);
+    }
+
+    private int recordOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private long heapStart() {
+        return HEADER_SIZE + capacity * RECORD_SIZE;
+    }
+
+    private boolean isDeleted(int slot) {
+        return (buffer.getInt(recordOffset(slot) + R_FLAGS) & FLAG_DELETED) != 0;
+    }
+
+    private void writeRecord(int slot, Expense expense) {
+        int categoryRef = categoryRef(expense.getCategory());
+        int descriptionRef = appendString(expense.getDescription());
+        int offset = recordOffset(slot);
+        buffer.putLong(offset + R_ID, expense.getId());
+        buffer.putLong(offset + R_CENTS, ExpenseColumnStore.toCents(expense.getAmount()));
+        buffer.putLong(offset + R_EPOCH, ExpenseColumnStore.toEpochSecond(expense.getDateTime()));
+        buffer.putInt(offset + R_CATEGORY, categoryRef);
+        buffer.putInt(offset + R_DESCRIPTION, descriptionRef);
+        buffer.putInt(offset + R_FLAGS, 0);
+    }
+
+    /** Перезапись на месте; описание дописывается в кучу, только если изменилось. */
+    private void rewriteRecord(int slot, Expense expense) {
+        int offset = recordOffset(slot);
+        int descriptionRef = buffer.getInt(offset + R_DESCRIPTION);
+        String oldDescription = readString(descriptionRef);
+        if (!Objects.equals(oldDescription, expense.getDescription())) {
+            heapGarbage += stringSize(descriptionRef);
+            descriptionRef = appendString(expense.getDescription());
+        }
+        buffer.putLong(offset + R_CENTS, ExpenseColumnStore.toCents(expense.getAmount()));
+        buffer.putLong(offset + R_EPOCH, ExpenseColumnStore.toEpochSecond(expense.getDateTime()));
+        buffer.putInt(offset + R_CATEGORY, categoryRef(expense.getCategory()));
+        buffer.putInt(offset + R_DESCRIPTION, descriptionRef);
+    }
+
+    private boolean markDeleted(long id) {
+        int slot = slotById().remove(id);
+        if (slot < 0) {
+            return false;
+        }
+        int offset = recordOffset(slot);
+        buffer.putInt(offset + R_FLAGS, buffer.getInt(offset + R_FLAGS) | FLAG_DELETED);
+        heapGarbage += stringSize(buffer.getInt(offset + R_DESCRIPTION));
+        liveCount--;
+        return true;
+    }
+
+    private Expense readRecord(int slot) {
+        int offset = recordOffset(slot);
+        long epoch = buffer.getLong(offset + R_EPOCH);
+        Expense expense = new Expense(buffer.getLong(offset + R_CENTS) / 100.0,
+                readString(buffer.getInt(offset + R_DESCRIPTION)),
+                readString(buffer.getInt(offset + R_CATEGORY)),
+                epoch == ExpenseColumnStore.NO_TIME ? null : LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC));
+        expense.setId(buffer.getLong(offset + R_ID));
+        return expense;
+    }
+
+    private String readString(int ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        int position = (int) (heapStart() + ref);
+        int length = buffer.getInt(position);
+        byte[] bytes = new byte[length];
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int stringSize(int ref) {
+        return ref == NULL_REF ? 0 : Integer.BYTES + buffer.getInt((int) (heapStart() + ref));
+    }
+
+    private int appendString(String value) {
+        if (value == null) {
+            return NULL_REF;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureHeapCapacity(Integer.BYTES + bytes.length);
+        int ref = (int) heapEnd;
+        int position = (int) (heapStart() + heapEnd);
+        buffer.putInt(position, bytes.length);
+        buffer.put(position + Integer.BYTES, bytes);
+        heapEnd += Integer.BYTES + bytes.length;
+        return ref;
+    }
+
+    private int categoryRef(String category) {
+        if (category == null) {
+            return NULL_REF;
+        }
+        Integer ref = categoryRefs().get(category);
+        if (ref == null) {
+            ref = appendString(category);
+            categoryRefs.put(category, ref);
+        }
+        return ref;
+    }
+
+    private LongIntHashMap slotById() {
+        if (slotById == null) {
+            LongIntHashMap index = new LongIntHashMap((int) Math.max(INITIAL_CAPACITY, liveCount));
+            for (int slot = 0; slot < recordCount; slot++) {
+                if (!isDeleted(slot)) {
+                    index.put(buffer.getLong(recordOffset(slot) + R_ID), slot);
+                }
+            }
+            slotById = index;
+        }
+        return slotById;
+    }
+
+    private Map<String, Integer> categoryRefs() {
+        if (categoryRefs == null) {
+            Map<String, Integer> refs = new HashMap<>();
+            Set<Integer> seen = new HashSet<>();
+            for (int slot = 0; slot < recordCount; slot++) {
+                int ref = buffer.getInt(recordOffset(slot) + R_CATEGORY);
+                if (ref != NULL_REF && seen.add(ref)) {
+                    refs.putIfAbsent(readString(ref), ref);
+                }
+            }
+            categoryRefs = refs;
+        }
+        return categoryRefs;
+    }
+
+    private void ensureRecordCapacity(int additional) {
+        if (recordCount + additional > capacity) {
+            rewrite(Math.max(liveCount + additional, capacity) * 2);
+        }
+    }
+
+    private void ensureHeapCapacity(int bytes) {
+        long required = heapStart() + heapEnd + bytes;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long size = Math.max(required, (long) buffer.capacity() * 2);
+        if (size > Integer.MAX_VALUE) {
+            size = Integer.MAX_VALUE;
+            if (required > size) {
+                throw new RuntimeException("Двоичный файл расходов превысил 2 ГБ");
+            }
+        }
+        try {
+            // Отображение большего размера расширяет файл
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка расширения двоичного файла расходов", e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        long deadRecords = recordCount - liveCount;
+        boolean manyDeadRecords = deadRecords >= MIN_COMPACTION_RECORDS && deadRecords > liveCount;
+        boolean heapMostlyGarbage = heapGarbage >= MIN_COMPACTION_HEAP_BYTES && heapGarbage * 2 > heapEnd;
+        if (manyDeadRecords || heapMostlyGarbage) {
+            compact();
+        }
+    }
+
+    /**
+     * Переписывает живые записи во временный файл с новой ёмкостью области записей,
+     * заново раскладывая строки в куче, и атомарно подменяет им основной файл.
+     * Пока подмена не выполнена, старый файл остаётся открытым; при ошибке DAO
+     * возвращается к нему, как будто свёртки не было.
+     */
+    private void rewrite(long newCapacity) {
+        if (HEADER_SIZE + newCapacity * RECORD_SIZE + heapEnd - heapGarbage > Integer.MAX_VALUE) {
+            throw new RuntimeException("Двоичный файл расходов превысил 2 ГБ");
+        }
+        List<Expense> live = getAllExpenses();
+        State previous = new State();
+        FileChannel oldChannel = channel;
+        boolean replaced = false;
+        try {
+            create(tempPath, newCapacity, Math.max(INITIAL_HEAP_SIZE, heapEnd - heapGarbage));
+            buffer.force();
+
+            // Записываем живые данные в новый файл через тот же код, что и при добавлении
+            channel = FileChannel.open(tempPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            capacity = newCapacity;
+            recordCount = 0;
+            liveCount = 0;
+            heapEnd = 0;
+            heapGarbage = 0;
+            slotById = new LongIntHashMap(Math.max(INITIAL_CAPACITY, live.size()));
+            categoryRefs = new HashMap<>();
+            for (Expense expense : live) {
+                int slot = (int) recordCount;
+                writeRecord(slot, expense);
+                slotById.put(expense.getId(), slot);
+                recordCount++;
+                liveCount++;
+            }
+            nextId = previous.nextId;
+            writeHeader();
+            buffer.force();
+
+            // Новое отображение остаётся действующим: после переименования это и есть основной файл
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            replaced = true;
+        } catch (IOException | RuntimeException e) {
+            if (channel != oldChannel) {
+                closeQuietly(channel);
+            }
+            previous.restore();
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new RuntimeException("Ошибка свёртки двоичного файла расходов", e);
+        } finally {
+            if (replaced) {
+                closeQuietly(oldChannel);
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel target) {
+        try {
+            target.close();
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.WARNING, "Не удалось закрыть двоичный файл расходов", e);
+        }
+    }
+
+    /** Состояние до свёртки, к которому она откатывается при ошибке. */
+    private final class State {
+        private final FileChannel channel = ExpenseBinaryDao.this.channel;
+        private final MappedByteBuffer buffer = ExpenseBinaryDao.this.buffer;
+        private final long capacity = ExpenseBinaryDao.this.capacity;
+        private final long recordCount = ExpenseBinaryDao.this.recordCount;
+        private final long liveCount = ExpenseBinaryDao.this.liveCount;
+        private final long nextId = ExpenseBinaryDao.this.nextId;
+        private final long heapEnd = ExpenseBinaryDao.this.heapEnd;
+        private final long heapGarbage = ExpenseBinaryDao.this.heapGarbage;
+        private final LongIntHashMap slotById = ExpenseBinaryDao.this.slotById;
+        private final Map<String, Integer> categoryRefs = ExpenseBinaryDao.this.categoryRefs;
+
+        void restore() {
+            ExpenseBinaryDao.this.channel = channel;
+            ExpenseBinaryDao.this.buffer = buffer;
+            ExpenseBinaryDao.this.capacity = capacity;
+            ExpenseBinaryDao.this.recordCount = recordCount;
+            ExpenseBinaryDao.this.liveCount = liveCount;
+            ExpenseBinaryDao.this.nextId = nextId;
+            ExpenseBinaryDao.this.heapEnd = heapEnd;
+            ExpenseBinaryDao.this.heapGarbage = heapGarbage;
+            ExpenseBinaryDao.this.slotById = slotById;
+            ExpenseBinaryDao.this.categoryRefs = categoryRefs;
+        }
+    }
+}
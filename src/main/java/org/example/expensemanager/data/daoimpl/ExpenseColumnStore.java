@@ -0,0 +1,609 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Колоночное хранилище расходов в памяти.
+ * <p>
+ * Каждое поле лежит в своём примитивном массиве: id, сумма в копейках, момент времени
+ * в секундах эпохи (UTC), коды категории и описания. Категории и описания хранятся
+ * в словарях, поэтому повторяющиеся строки занимают память один раз. Объекты
+ * {@link Expense} создаются только при чтении конкретных строк; агрегаты считаются
+ * прямо по массивам.
+ * <p>
+ * Для выборок по периоду и в порядке даты или суммы поддерживаются упорядоченные
+ * индексы {@link SortedLongIndex} по времени и по сумме: такие выборки проходят только
+ * нужный участок индекса, а не все строки, и не требуют сортировки.
+ * <p>
+ * Точность: сумма округляется до копеек (как DECIMAL(10,2) в PostgreSQL),
+ * время — до секунд.
+ * <p>
+ * Потокобезопасно: изменения идут под записывающей блокировкой {@link StampedLock},
+ * чтение по id и агрегаты сначала выполняются оптимистично, без блокировки.
+ */
+public class ExpenseColumnStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NARROW_RANGE_DIVISOR = 32;
+
+    /** Метка отсутствующей даты в колонке времени. */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] cents = new long[INITIAL_CAPACITY];
+    private long[] epochSeconds = new long[INITIAL_CAPACITY];
+    private int[] categoryCodes = new int[INITIAL_CAPACITY];
+    private int[] descriptionCodes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private final LongIntHashMap rowById = new LongIntHashMap(INITIAL_CAPACITY);
+    private final SortedLongIndex byTime = new SortedLongIndex();
+    private final SortedLongIndex byAmount = new SortedLongIndex();
+    private final StringDictionary categories = new StringDictionary();
+    private final StringDictionary descriptions = new StringDictionary();
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Условие по примитивным полям строки.
+     */
+    @FunctionalInterface
+    public interface RowPredicate {
+        boolean test(long cents, long epochSecond, int categoryCode);
+    }
+
+    /** Упорядоченный индекс; при равном ключе строки идут по возрастанию id. */
+    public enum Order {
+        TIME,
+        AMOUNT
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int result = size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    public boolean contains(long id) {
+        return get(id) != null;
+    }
+
+    public void insert(Expense expense) {
+        long stamp = lock.writeLock();
+        try {
+            insertRow(expense);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Добавляет пачку строк под одной блокировкой. Если пачка больше уже хранимого,
+     * индексы перестраиваются целиком, а не дополняются по строке.
+     */
+    public void insertAll(List<Expense> batch) {
+        long stamp = lock.writeLock();
+        try {
+            ensureCapacity(size + batch.size());
+            if (batch.size() <= size) {
+                for (Expense expense : batch) {
+                    insertRow(expense);
+                }
+                return;
+            }
+            for (Expense expense : batch) {
+                write(size, expense);
+                rowById.put(expense.getId(), size);
+                size++;
+            }
+            byTime.rebuild(epochSeconds, ids, size);
+            byAmount.rebuild(cents, ids, size);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Перезаписывает строку с тем же id; возвращает {@code false}, если её нет. */
+    public boolean update(Expense expense) {
+        long stamp = lock.writeLock();
+        try {
+            return updateRow(expense);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Перезаписывает строки пачки под одной блокировкой. Если какого-то id нет, ничего
+     * не меняет и возвращает {@code false}.
+     */
+    public boolean updateAll(List<Expense> batch) {
+        long stamp = lock.writeLock();
+        try {
+            for (Expense expense : batch) {
+                if (rowById.get(expense.getId()) < 0) {
+                    return false;
+                }
+            }
+            for (Expense expense : batch) {
+                updateRow(expense);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удаляет строку, перенося на её место последнюю, поэтому порядок строк не сохраняется.
+     */
+    public boolean delete(long id) {
+        long stamp = lock.writeLock();
+        try {
+            return deleteRow(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void deleteAll(Collection<Long> batch) {
+        long stamp = lock.writeLock();
+        try {
+            for (long id : batch) {
+                deleteRow(id);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Строка по id за O(1) или {@code null}. Сначала читается без блокировки; если за
+     * это время была запись, чтение повторяется под блокировкой чтения.
+     */
+    public Expense get(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int row = rowById.get(id);
+                if (row < 0) {
+                    if (lock.validate(stamp)) {
+                        return null;
+                    }
+                } else {
+                    long rowCents = cents[row];
+                    long rowEpoch = epochSeconds[row];
+                    int category = categoryCodes[row];
+                    int description = descriptionCodes[row];
+                    if (lock.validate(stamp)) {
+                        // Словари только дополняются, поэтому коды можно раскрыть после проверки
+                        return toExpense(id, rowCents, rowEpoch, category, description);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Массивы поменялись во время чтения; повторяем под блокировкой
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int row = rowById.get(id);
+            return row < 0 ? null : materialize(row);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<Expense> toList() {
+        long stamp = lock.readLock();
+        try {
+            List<Expense> result = new ArrayList<>(size);
+            for (int row = 0; row < size; row++) {
+                result.add(materialize(row));
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Обходит строки под блокировкой чтения; посетитель не должен изменять хранилище.
+     */
+    public void forEach(Consumer<Expense> visitor) {
+        long stamp = lock.readLock();
+        try {
+            for (int row = 0; row < size; row++) {
+                visitor.accept(materialize(row));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Строки, удовлетворяющие условию, в порядке хранения. Условие проверяется по
+     * колонкам, объекты создаются только для подходящих строк; весь результат
+     * относится к одному состоянию хранилища.
+     */
+    public List<Expense> select(RowPredicate predicate) {
+        long stamp = lock.readLock();
+        try {
+            List<Expense> result = new ArrayList<>();
+            for (int row = 0; row < size; row++) {
+                if (predicate.test(cents[row], epochSeconds[row], categoryCodes[row])) {
+                    result.add(materialize(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Строки в порядке индекса {@code order}: обход начинается с пары
+     * {@code (startKey, startId)} включительно и идёт по возрастанию или убыванию, пока
+     * ключ не выйдет за {@code endKey} (тоже включительно). Условие проверяется по
+     * колонкам, {@code filter} (если задан) — на созданных объектах. Обход
+     * останавливается, как только набрано {@code limit} строк; отрицательный
+     * {@code limit} снимает ограничение.
+     */
+    public List<Expense> selectOrdered(Order order, boolean descending, long startKey, long startId, long endKey,
+                                       RowPredicate predicate, Predicate<Expense> filter, int limit) {
+        List<Expense> result = new ArrayList<>();
+        if (limit == 0) {
+            return result;
+        }
+        SortedLongIndex.Visitor visitor = (key, id, row) -> {
+            if (descending ? key < endKey : key > endKey) {
+                return false;
+            }
+            if (predicate.test(cents[row], epochSeconds[row], categoryCodes[row])) {
+                Expense expense = materialize(row);
+                if (filter == null || filter.test(expense)) {
+                    result.add(expense);
+                    return limit < 0 || result.size() < limit;
+                }
+            }
+            return true;
+        };
+        long stamp = lock.readLock();
+        try {
+            if (descending) {
+                index(order).descendingFrom(startKey, startId, visitor);
+            } else {
+                index(order).ascendingFrom(startKey, startId, visitor);
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Строки с ключом из {@code [lowKey, highKey]}, удовлетворяющие условию, без
+     * гарантии порядка. Узкий диапазон проходится по индексу, широкий — по колонкам:
+     * последовательный проход по массивам дешевле обращений к строкам вразброс.
+     */
+    public List<Expense> selectRange(Order order, long lowKey, long highKey, RowPredicate predicate) {
+        long stamp = lock.readLock();
+        try {
+            List<Expense> result = new ArrayList<>();
+            if (isNarrow(order, lowKey, highKey)) {
+                rangeWalk(order, lowKey, highKey, row -> {
+                    if (predicate.test(cents[row], epochSeconds[row], categoryCodes[row])) {
+                        result.add(materialize(row));
+                    }
+                });
+            } else {
+                long[] keyColumn = order == Order.TIME ? epochSeconds : cents;
+                for (int row = 0; row < size; row++) {
+                    long key = keyColumn[row];
+                    if (key >= lowKey && key <= highKey
+                            && predicate.test(cents[row], epochSeconds[row], categoryCodes[row])) {
+                        result.add(materialize(row));
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Количество строк с ключом из {@code [lowKey, highKey]}, удовлетворяющих условию.
+     * Без условия ({@code null}) считается по размерам блоков индекса.
+     */
+    public long countRange(Order order, long lowKey, long highKey, RowPredicate predicate) {
+        if (predicate == null) {
+            long stamp = lock.readLock();
+            try {
+                return index(order).countBetween(lowKey, highKey);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return rangeScan(order, lowKey, highKey, predicate, false);
+    }
+
+    /**
+     * Код категории в словаре или {@code -1}, если такой категории ни разу не было.
+     */
+    public int categoryCode(String category) {
+        long stamp = lock.readLock();
+        try {
+            return categories.find(category);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Количество строк, удовлетворяющих условию. */
+    public long count(RowPredicate predicate) {
+        return scan(predicate, false);
+    }
+
+    /** Сумма в копейках по строкам, удовлетворяющим условию. */
+    public long sumCents(RowPredicate predicate) {
+        return scan(predicate, true);
+    }
+
+    /** Сумма в копейках за период {@code [fromEpoch, toEpoch)}. */
+    public long sumCentsBetween(long fromEpoch, long toEpoch) {
+        if (fromEpoch >= toEpoch) {
+            return 0;
+        }
+        return rangeScan(Order.TIME, Math.max(fromEpoch, NO_TIME + 1), toEpoch - 1, null, true);
+    }
+
+    /** Количество строк за период {@code [fromEpoch, toEpoch)}. */
+    public long countBetween(long fromEpoch, long toEpoch) {
+        if (fromEpoch >= toEpoch) {
+            return 0;
+        }
+        return countRange(Order.TIME, Math.max(fromEpoch, NO_TIME + 1), toEpoch - 1, null);
+    }
+
+    /**
+     * Агрегат по строкам с ключом из {@code [lowKey, highKey]}: по индексу или по колонкам.
+     * Без условия ({@code null}) при обходе индекса читается только колонка сумм.
+     */
+    private long rangeScan(Order order, long lowKey, long highKey, RowPredicate predicate, boolean sum) {
+        long stamp = lock.readLock();
+        try {
+            if (!isNarrow(order, lowKey, highKey)) {
+                boolean byTime = order == Order.TIME;
+                return scan((rowCents, t, category) -> {
+                    long key = byTime ? t : rowCents;
+                    return key >= lowKey && key <= highKey
+                            && (predicate == null || predicate.test(rowCents, t, category));
+                }, sum, size, cents, epochSeconds, categoryCodes);
+            }
+            long[] result = new long[1];
+            rangeWalk(order, lowKey, highKey, row -> {
+                if (predicate == null || predicate.test(cents[row], epochSeconds[row], categoryCodes[row])) {
+                    result[0] += sum ? cents[row] : 1;
+                }
+            });
+            return result[0];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Диапазон выгоднее проходить по индексу, если в нём меньше
+     * {@code 1 / NARROW_RANGE_DIVISOR} всех строк. Размер диапазона считается по блокам
+     * индекса за O(log n + число блоков).
+     */
+    private boolean isNarrow(Order order, long lowKey, long highKey) {
+        return index(order).countBetween(lowKey, highKey) * NARROW_RANGE_DIVISOR < size;
+    }
+
+    private void rangeWalk(Order order, long lowKey, long highKey, IntConsumer visitor) {
+        index(order).ascendingFrom(lowKey, Long.MIN_VALUE, (key, id, row) -> {
+            if (key > highKey) {
+                return false;
+            }
+            visitor.accept(row);
+            return true;
+        });
+    }
+
+    private SortedLongIndex index(Order order) {
+        return order == Order.TIME ? byTime : byAmount;
+    }
+
+    /**
+     * Проход по колонкам для агрегатов: сначала без блокировки по локальным ссылкам на
+     * массивы, при конкурентной записи — повторно под блокировкой чтения.
+     */
+    private long scan(RowPredicate predicate, boolean sum) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                long result = scan(predicate, sum, size, cents, epochSeconds, categoryCodes);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // Массивы поменялись во время чтения; повторяем под блокировкой
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return scan(predicate, sum, size, cents, epochSeconds, categoryCodes);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static long scan(RowPredicate predicate, boolean sum, int size,
+                             long[] cents, long[] epochSeconds, int[] categoryCodes) {
+        long result = 0;
+        for (int row = 0; row < size; row++) {
+            if (predicate.test(cents[row], epochSeconds[row], categoryCodes[row])) {
+                result += sum ? cents[row] : 1;
+            }
+        }
+        return result;
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime == null ? NO_TIME : dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private void insertRow(Expense expense) {
+        ensureCapacity(size + 1);
+        write(size, expense);
+        rowById.put(expense.getId(), size);
+        addToIndexes(size);
+        size++;
+    }
+
+    private boolean updateRow(Expense expense) {
+        int row = rowById.get(expense.getId());
+        if (row < 0) {
+            return false;
+        }
+        long previousEpoch = epochSeconds[row];
+        long previousCents = cents[row];
+        write(row, expense);
+        // Правка описания или категории индексы не затрагивает
+        if (epochSeconds[row] != previousEpoch) {
+            byTime.remove(previousEpoch, ids[row]);
+            byTime.add(epochSeconds[row], ids[row], row);
+        }
+        if (cents[row] != previousCents) {
+            byAmount.remove(previousCents, ids[row]);
+            byAmount.add(cents[row], ids[row], row);
+        }
+        return true;
+    }
+
+    private boolean deleteRow(long id) {
+        int row = rowById.remove(id);
+        if (row < 0) {
+            return false;
+        }
+        removeFromIndexes(row);
+        int last = size - 1;
+        if (row != last) {
+            ids[row] = ids[last];
+            cents[row] = cents[last];
+            epochSeconds[row] = epochSeconds[last];
+            categoryCodes[row] = categoryCodes[last];
+            descriptionCodes[row] = descriptionCodes[last];
+            rowById.put(ids[row], row);
+            byTime.move(epochSeconds[row], ids[row], row);
+            byAmount.move(cents[row], ids[row], row);
+        }
+        size--;
+        return true;
+    }
+
+    private void addToIndexes(int row) {
+        byTime.add(epochSeconds[row], ids[row], row);
+        byAmount.add(cents[row], ids[row], row);
+    }
+
+    private void removeFromIndexes(int row) {
+        byTime.remove(epochSeconds[row], ids[row]);
+        byAmount.remove(cents[row], ids[row]);
+    }
+
+    private Expense materialize(int row) {
+        return toExpense(ids[row], cents[row], epochSeconds[row], categoryCodes[row], descriptionCodes[row]);
+    }
+
+    private Expense toExpense(long id, long rowCents, long rowEpoch, int category, int description) {
+        Expense expense = new Expense(rowCents / 100.0,
+                descriptions.value(description),
+                categories.value(category),
+                rowEpoch == NO_TIME ? null : LocalDateTime.ofEpochSecond(rowEpoch, 0, ZoneOffset.UTC));
+        expense.setId(id);
+        return expense;
+    }
+
+    private void write(int row, Expense expense) {
+        ids[row] = expense.getId();
+        cents[row] = toCents(expense.getAmount());
+        epochSeconds[row] = toEpochSecond(expense.getDateTime());
+        categoryCodes[row] = categories.encode(expense.getCategory());
+        descriptionCodes[row] = descriptions.encode(expense.getDescription());
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        cents = Arrays.copyOf(cents, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        descriptionCodes = Arrays.copyOf(descriptionCodes, capacity);
+    }
+
+    /**
+     * Словарь строк: каждая различная строка хранится один раз и получает код.
+     * Код {@code -1} означает {@code null}. Значения только дописываются, а массив
+     * заменяется целиком при росте, поэтому уже выданные коды можно раскрывать
+     * без блокировки.
+     */
+    private static final class StringDictionary {
+        private volatile String[] values = new String[64];
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                String[] current = values;
+                if (code == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[code] = value;
+                values = current;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        int find(String value) {
+            Integer code = value == null ? null : codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        String value(int code) {
+            return code < 0 ? null : values[code];
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package org.example.expensemanager.data.daoimpl;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseJsonCodec;
+import org.example.expensemanager.data.ExpenseQuery;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JSON-хранилище с журналом изменений.
+ * <p>
+ * Снимок хранится в том же формате, что и у {@link ExpenseJsonDao}, а каждое изменение
+ * дописывается одной строкой в файл {@code <снимок>.log}. Когда журнал превышает порог,
+ * фоновый поток сворачивает его в новый снимок. При запуске состояние восстанавливается
+ * из снимка и журнала. Записи журнала идемпотентны (добавление/обновление по id
+ * перезаписывает строку, удаление убирает её), поэтому повторное применение журнала
+ * после сбоя во время свёртки не искажает данные.
+ * <p>
+ * Расходы хранятся и отдаются копиями, как в остальных хранилищах: изменение
+ * полученного объекта не меняет состояние DAO в обход журнала.
+ */
+public class ExpenseJournalDao implements ExpenseDao, AutoCloseable {
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 4L * 1024 * 1024;
+
+    private static final System.Logger LOG = System.getLogger(ExpenseJournalDao.class.getName());
+    private static final String OP_ADD = "ADD";
+    private static final String OP_UPDATE = "UPDATE";
+    private static final String OP_DELETE = "DELETE";
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final Path compactingLogPath;
+    private final long compactionThreshold;
+    private final ExpenseJsonCodec snapshotCodec;
+    private final ExpenseJsonCodec logCodec;
+    private final Map<Long, Expense> expenses = new LinkedHashMap<>();
+    private final AtomicLong idGenerator = new AtomicLong(1);
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "expense-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Writer logWriter;
+    private long logSize;
+    private long compactedLogSize;
+    private boolean closed;
+
+    public ExpenseJournalDao(String filePath) {
+        this(filePath, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public ExpenseJournalDao(String filePath, long compactionThreshold) {
+        this(filePath, compactionThreshold, true);
+    }
+
+    public ExpenseJournalDao(String filePath, long compactionThreshold, boolean prettyPrinting) {
+        this.snapshotPath = Paths.get(filePath);
+        this.logPath = Paths.get(filePath + ".log");
+        this.compactingLogPath = Paths.get(filePath + ".log.compacting");
+        this.compactionThreshold = compactionThreshold;
+        this.snapshotCodec = new ExpenseJsonCodec(prettyPrinting);
+        this.logCodec = new ExpenseJsonCodec(false);
+
+        try {
+            loadSnapshot();
+            replayLog(compactingLogPath);
+            replayLog(logPath);
+            openLog();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка восстановления JSON журнала", e);
+        }
+
+        long maxId = expenses.keySet().stream().mapToLong(Long::longValue).max().orElse(0);
+        idGenerator.set(maxId + 1);
+
+        // Свёртка прерванная прошлым запуском: дописываем снимок сразу
+        if (Files.exists(compactingLogPath)) {
+            scheduleCompaction();
+        }
+    }
+
+    @Override
+    public synchronized void addExpense(Expense expense) {
+        ensureOpen();
+        expense.setId(idGenerator.getAndIncrement());
+        append(OP_ADD, expense.getId(), expense);
+        flushLog();
+        expenses.put(expense.getId(), new Expense(expense));
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void updateExpense(Expense expense) {
+        ensureOpen();
+        if (!expenses.containsKey(expense.getId())) {
+            throw new RuntimeException("Расход не найден по id: " + expense.getId());
+        }
+        append(OP_UPDATE, expense.getId(), expense);
+        flushLog();
+        expenses.put(expense.getId(), new Expense(expense));
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void deleteExpense(long id) {
+        ensureOpen();
+        if (!expenses.containsKey(id)) {
+            return;
+        }
+        append(OP_DELETE, id, null);
+        flushLog();
+        expenses.remove(id);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void addExpenses(List<Expense> batch) {
+        ensureOpen();
+        for (Expense expense : batch) {
+            expense.setId(idGenerator.getAndIncrement());
+            append(OP_ADD, expense.getId(), expense);
+        }
+        flushLog();
+        for (Expense expense : batch) {
+            expenses.put(expense.getId(), new Expense(expense));
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void updateExpenses(List<Expense> batch) {
+        ensureOpen();
+        for (Expense expense : batch) {
+            if (!expenses.containsKey(expense.getId())) {
+                throw new RuntimeException("Расход не найден по id: " + expense.getId());
+            }
+        }
+        for (Expense expense : batch) {
+            append(OP_UPDATE, expense.getId(), expense);
+        }
+        flushLog();
+        for (Expense expense : batch) {
+            expenses.put(expense.getId(), new Expense(expense));
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void deleteExpenses(Collection<Long> ids) {
+        ensureOpen();
+        List<Long> present = new ArrayList<>();
+        for (long id : ids) {
+            if (expenses.containsKey(id)) {
+                append(OP_DELETE, id, null);
+                present.add(id);
+            }
+        }
+        flushLog();
+        present.forEach(expenses::remove);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized Optional<Expense> findExpenseById(long id) {
+        Expense expense = expenses.get(id);
+        return expense == null ? Optional.empty() : Optional.of(new Expense(expense));
+    }
+
+    @Override
+    public synchronized List<Expense> getAllExpenses() {
+        return copies(expenses.values());
+    }
+
+    @Override
+    public synchronized List<Expense> findExpenses(ExpenseQuery query) {
+        return copies(query.apply(expenses.values()));
+    }
+
+    @Override
+    public synchronized long countExpenses(ExpenseQuery query) {
+        long count = 0;
+        for (Expense expense : expenses.values()) {
+            if (query.matches(expense)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return true;
+    }
+
+    /**
+     * Принудительно сворачивает журнал в снимок, не дожидаясь порога.
+     */
+    public synchronized void compact() {
+        ensureOpen();
+        scheduleCompaction();
+    }
+
+    /**
+     * Дожидается начатой свёртки и закрывает журнал. Всё записанное до закрытия уже
+     * сброшено на диск, так что незавершённая свёртка просто повторится при следующем
+     * открытии.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.log(System.Logger.Level.WARNING, "Свёртка JSON журнала не завершилась за минуту");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            logWriter.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка закрытия JSON журнала", e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("JSON журнал закрыт");
+        }
+    }
+
+    private static List<Expense> copies(Collection<Expense> source) {
+        List<Expense> result = new ArrayList<>(source.size());
+        for (Expense expense : source) {
+            result.add(new Expense(expense));
+        }
+        return result;
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath) || Files.size(snapshotPath) == 0) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+            snapshotCodec.forEach(reader, expense -> expenses.put(expense.getId(), expense));
+        }
+    }
+
+    private void replayLog(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JournalRecord record;
+                try {
+                    record = readRecord(line);
+                } catch (IOException | JsonParseException | IllegalStateException e) {
+                    // Оборванная последняя строка после аварийного завершения
+                    LOG.log(System.Logger.Level.WARNING, "Пропущена повреждённая запись журнала " + path);
+                    continue;
+                }
+                apply(record);
+            }
+        }
+    }
+
+    private void apply(JournalRecord record) {
+        switch (record.op) {
+            case OP_ADD, OP_UPDATE -> expenses.put(record.id, record.expense);
+            case OP_DELETE -> expenses.remove(record.id);
+            default -> throw new RuntimeException("Неизвестная операция журнала: " + record.op);
+        }
+    }
+
+    private JournalRecord readRecord(String line) throws IOException {
+        JournalRecord record = new JournalRecord();
+        JsonReader in = new JsonReader(new StringReader(line));
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "op" -> record.op = in.nextString();
+                case "id" -> record.id = in.nextLong();
+                case "expense" -> record.expense = logCodec.readExpense(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (record.op == null) {
+            throw new IllegalStateException("Запись журнала без операции");
+        }
+        return record;
+    }
+
+    private void append(String op, long id, Expense expense) {
+        try {
+            StringWriter buffer = new StringWriter();
+            JsonWriter out = logCodec.newWriter(buffer);
+            out.beginObject();
+            out.name("op").value(op);
+            out.name("id").value(id);
+            if (expense != null) {
+                out.name("expense");
+                logCodec.writeExpense(out, expense);
+            }
+            out.endObject();
+            out.flush();
+            buffer.write(System.lineSeparator());
+
+            String line = buffer.toString();
+            logWriter.write(line);
+            logSize += line.getBytes(StandardCharsets.UTF_8).length;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка записи JSON журнала", e);
+        }
+    }
+
+    private void flushLog() {
+        try {
+            logWriter.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка записи JSON журнала", e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (logSize - compactedLogSize >= compactionThreshold) {
+            scheduleCompaction();
+        }
+    }
+
+    private void openLog() throws IOException {
+        dropTornTail();
+        logWriter = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        logSize = Files.size(logPath);
+    }
+
+    /**
+     * Обрезает оборванную последнюю строку журнала: иначе следующая запись склеилась бы
+     * с ней в одну строку и пропала при восстановлении.
+     */
+    private void dropTornTail() throws IOException {
+        if (!Files.exists(logPath)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = size;
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            scan:
+            while (end > 0) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        throw new IOException("Журнал укоротился при чтении: " + logPath);
+                    }
+                }
+                for (int i = buffer.limit() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        end = start + i + 1;
+                        break scan;
+                    }
+                }
+                end = start;
+            }
+            if (end < size) {
+                LOG.log(System.Logger.Level.WARNING, "Обрезана оборванная запись в конце журнала " + logPath);
+                channel.truncate(end);
+            }
+        }
+    }
+
+    /**
+     * Вызывается под блокировкой: переименовывает текущий журнал, открывает новый
+     * и отдаёт копию состояния фоновому потоку. Если предыдущий журнал ещё не свёрнут,
+     * он не перезаписывается — снимок всё равно включает все его изменения.
+     */
+    private void scheduleCompaction() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (!Files.exists(compactingLogPath)) {
+                logWriter.close();
+                Files.move(logPath, compactingLogPath, StandardCopyOption.ATOMIC_MOVE);
+                openLog();
+            }
+            compactedLogSize = logSize;
+        } catch (IOException e) {
+            compacting.set(false);
+            throw new RuntimeException("Ошибка ротации JSON журнала", e);
+        }
+
+        List<Expense> snapshot = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses.values()) {
+            snapshot.add(new Expense(expense));
+        }
+        compactor.execute(() -> writeSnapshot(snapshot));
+    }
+
+    private void writeSnapshot(List<Expense> snapshot) {
+        Path tmpPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmpPath, StandardCharsets.UTF_8)) {
+                snapshotCodec.writeAll(writer, snapshot);
+            }
+            Files.move(tmpPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(compactingLogPath);
+        } catch (IOException e) {
+            // Журнал остаётся на диске и будет свёрнут при следующей попытке
+            LOG.log(System.Logger.Level.WARNING, "Не удалось свернуть JSON журнал", e);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private static class JournalRecord {
+        private String op;
+        private long id;
+        private Expense expense;
+    }
+}
@@ -1,32 +1,35 @@
 package org.example.expensemanager.data.daoimpl;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import org.example.expensemanager.business.model.Expense;
 import org.example.expensemanager.data.ExpenseDao;
-import org.example.expensemanager.data.LocalDateTimeAdapter;
+import org.example.expensemanager.data.ExpenseJsonCodec;
+import org.example.expensemanager.data.ExpenseQuery;
 
 import java.io.*;
-import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class ExpenseJsonDao implements ExpenseDao {
     private final String filePath;
-    private final Gson gson;
+    private final ExpenseJsonCodec codec;
     private final AtomicLong idGenerator = new AtomicLong(1);
 
     public ExpenseJsonDao(String filePath) {
+        this(filePath, true);
+    }
+
+    public ExpenseJsonDao(String filePath, boolean prettyPrinting) {
         this.filePath = filePath;
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                .create();
+        this.codec = new ExpenseJsonCodec(prettyPrinting);
 
         initializeFile();
     }
@@ -71,21 +74,46 @@ public class ExpenseJsonDao implements ExpenseDao {
     }
 
     @Override
-    public List<Expense> getAllExpenses() {
-        try (Reader reader = new FileReader(filePath)) {
-            Type listType = new TypeToken<ArrayList<Expense>>() {}.getType();
-            List<Expense> expenses = gson.fromJson(reader, listType);
+    public void addExpenses(List<Expense> batch) {
+        List<Expense> expenses = getAllExpenses();
+        for (Expense expense : batch) {
+            expense.setId(idGenerator.getAndIncrement());
+            expenses.add(expense);
+        }
+        saveAll(expenses);
+    }
 
-            if (expenses == null) {
-                expenses = new ArrayList<>();
+    @Override
+    public void updateExpenses(List<Expense> batch) {
+        Map<Long, Expense> byId = new HashMap<>();
+        for (Expense expense : batch) {
+            byId.put(expense.getId(), expense);
+        }
+        List<Expense> expenses = getAllExpenses();
+        for (int i = 0; i < expenses.size() && !byId.isEmpty(); i++) {
+            Expense updated = byId.remove(expenses.get(i).getId());
+            if (updated != null) {
+                expenses.set(i, updated);
             }
+        }
+        if (!byId.isEmpty()) {
+            throw new RuntimeException("Расход не найден по id: " + byId.keySet().iterator().next());
+        }
+        saveAll(expenses);
+    }
 
-            // Обновляем статусы для всех расходов
-            expenses.forEach(expense -> {
-                if (expense.getStatus() == null && expense.getAmount() != 0) {
-                    expense.updateStatus();
-                }
-            });
+    @Override
+    public void deleteExpenses(Collection<Long> ids) {
+        Set<Long> toDelete = new HashSet<>(ids);
+        List<Expense> expenses = getAllExpenses();
+        expenses.removeIf(e -> toDelete.contains(e.getId()));
+        saveAll(expenses);
+    }
+
+    @Override
+    public List<Expense> getAllExpenses() {
+        try (Reader reader = new BufferedReader(new FileReader(filePath))) {
+            List<Expense> expenses = codec.readAll(reader);
 
             long maxId = expenses.stream().mapToLong(Expense::getId).max().orElse(0);
             idGenerator.set(maxId + 1);
@@ -96,10 +124,57 @@ public class ExpenseJsonDao implements ExpenseDao {
         }
     }
 
+    /**
+     * Фильтрует записи прямо при потоковом чтении файла: в памяти остаются только
+     * подходящие под запрос расходы.
+     */
+    @Override
+    public List<Expense> findExpenses(ExpenseQuery query) {
+        List<Expense> matched = new ArrayList<>();
+        forEachExpense(expense -> {
+            if (query.matches(expense)) {
+                matched.add(expense);
+            }
+        });
+        return query.sortAndPage(matched);
+    }
+
+    @Override
+    public long countExpenses(ExpenseQuery query) {
+        long[] count = new long[1];
+        forEachExpense(expense -> {
+            if (query.matches(expense)) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /** Каждый вызов переписывает файл целиком, поэтому пачку лучше не дробить. */
+    @Override
+    public int preferredBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return true;
+    }
+
+    /**
+     * Потоково обходит файл, не материализуя список расходов целиком.
+     */
+    public void forEachExpense(Consumer<Expense> visitor) {
+        try (Reader reader = new BufferedReader(new FileReader(filePath))) {
+            codec.forEach(reader, visitor);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения JSON", e);
+        }
+    }
 
     private void saveAll(List<Expense> expenses) {
-        try (Writer writer = new FileWriter(filePath)) {
-            gson.toJson(expenses, writer);
+        try (Writer writer = new BufferedWriter(new FileWriter(filePath))) {
+            codec.writeAll(writer, expenses);
         } catch (IOException e) {
             throw new RuntimeException("Ошибка записи JSON", e);
         }
@@ -2,38 +2,259 @@ package org.example.expensemanager.data.daoimpl;
 
 import org.example.expensemanager.business.model.Expense;
 import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
+/**
+ * Хранилище в памяти поверх {@link ExpenseColumnStore}. Потокобезопасно: чтение по id
+ * выполняется за O(1) без блокировки, выборки видят согласованное состояние.
+ * <p>
+ * Выборки с сортировкой по дате или сумме идут по упорядоченному индексу хранилища
+ * и останавливаются, как только набрана страница; выборки за период проходят только
+ * этот период. Стоимость страницы — O(log n + просмотренные строки) без сортировки.
+ */
 public class ExpenseMemoryDao implements ExpenseDao {
-    private final List<Expense> expenses = new ArrayList<>();
+    private final ExpenseColumnStore store = new ExpenseColumnStore();
     private final AtomicLong idGenerator = new AtomicLong(1);
 
     @Override
     public void addExpense(Expense expense) {
         expense.setId(idGenerator.getAndIncrement());
-        expenses.add(expense);
+        store.insert(expense);
     }
 
     @Override
     public void updateExpense(Expense expense) {
-        for (int i = 0; i < expenses.size(); i++) {
-            if (expenses.get(i).getId() == expense.getId()) {
-                expenses.set(i, expense);
-                return;
-            }
+        if (!store.update(expense)) {
+            throw new RuntimeException("Расход не найден по id: " + expense.getId());
         }
     }
 
     @Override
     public void deleteExpense(long id) {
-        expenses.removeIf(e -> e.getId() == id);
+        store.delete(id);
+    }
+
+    @Override
+    public void addExpenses(List<Expense> batch) {
+        for (Expense expense : batch) {
+            expense.setId(idGenerator.getAndIncrement());
+        }
+        store.insertAll(batch);
+    }
+
+    /** Пачка с отсутствующим id отклоняется целиком, как в файловых хранилищах. */
+    @Override
+    public void updateExpenses(List<Expense> batch) {
+        if (!store.updateAll(batch)) {
+            long missing = batch.stream()
+                    .mapToLong(Expense::getId)
+                    .filter(id -> store.get(id) == null)
+                    .findFirst()
+                    .orElse(-1);
+            throw new RuntimeException("Расход не найден по id: " + missing);
+        }
+    }
+
+    @Override
+    public void deleteExpenses(Collection<Long> ids) {
+        store.deleteAll(ids);
+    }
+
+    @Override
+    public Optional<Expense> findExpenseById(long id) {
+        return Optional.ofNullable(store.get(id));
     }
 
     @Override
     public List<Expense> getAllExpenses() {
-        return new ArrayList<>(expenses);
+        return store.toList();
+    }
+
+    /**
+     * Условия по дате, сумме и категории проверяются прямо по колонкам; объекты
+     * создаются только для строк, прошедших этот отбор.
+     * <p>
+     * Сортированная выборка обходит индекс своего порядка. Исключение — сортировка по
+     * сумме за период: период обычно отсекает больше строк, поэтому выбирается он по
+     * индексу времени, а сортируется только результат.
+     */
+    @Override
+    public List<Expense> findExpenses(ExpenseQuery query) {
+        ExpenseColumnStore.RowPredicate predicate = rowPredicate(query);
+        if (predicate == null) {
+            return new ArrayList<>();
+        }
+        Predicate<Expense> filter = needsObjectCheck(query) ? query::matches : null;
+        boolean byDate = query.getSortOrder() == ExpenseQuery.SortOrder.DATE_ASC
+                || query.getSortOrder() == ExpenseQuery.SortOrder.DATE_DESC;
+        if (query.getSortOrder() != ExpenseQuery.SortOrder.NONE && (byDate || !isTimeBounded(query))) {
+            return query.page(selectInOrder(query, byDate, predicate, filter));
+        }
+        List<Expense> matched = isTimeBounded(query)
+                ? store.selectRange(ExpenseColumnStore.Order.TIME, lowTime(query), highTime(query), predicate)
+                : store.select(predicate);
+        if (filter != null) {
+            matched.removeIf(filter.negate());
+        }
+        return query.sortAndPage(matched);
+    }
+
+    @Override
+    public long countExpenses(ExpenseQuery query) {
+        ExpenseColumnStore.RowPredicate predicate = rowPredicate(query);
+        if (predicate == null) {
+            return 0;
+        }
+        if (isTimeBounded(query) && !needsObjectCheck(query)) {
+            // Только период: количество берётся из индекса без обхода строк
+            boolean periodOnly = query.getCategory() == null
+                    && query.getMinAmount() == null && query.getMaxAmount() == null;
+            return store.countRange(ExpenseColumnStore.Order.TIME, lowTime(query), highTime(query),
+                    periodOnly ? null : predicate);
+        }
+        if (!needsObjectCheck(query)) {
+            return store.count(predicate);
+        }
+        List<Expense> candidates = isTimeBounded(query)
+                ? store.selectRange(ExpenseColumnStore.Order.TIME, lowTime(query), highTime(query), predicate)
+                : store.select(predicate);
+        long count = 0;
+        for (Expense expense : candidates) {
+            if (query.matches(expense)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Хранилище потокобезопасно; чтение ограничено только числом процессоров. */
+    @Override
+    public int maxConcurrentOperations() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return true;
+    }
+
+    /**
+     * Условие по колонкам для периода, диапазона сумм и категории или {@code null},
+     * если категория в хранилище не встречается и выборка заведомо пуста.
+     */
+    private ExpenseColumnStore.RowPredicate rowPredicate(ExpenseQuery query) {
+        int categoryCode = -1;
+        if (query.getCategory() != null) {
+            categoryCode = store.categoryCode(query.getCategory());
+            if (categoryCode < 0) {
+                return null;
+            }
+        }
+        long fromEpoch = query.getFrom() == null ? Long.MIN_VALUE : ExpenseColumnStore.toEpochSecond(query.getFrom());
+        long toEpoch = query.getTo() == null ? Long.MAX_VALUE : ExpenseColumnStore.toEpochSecond(query.getTo());
+        boolean timeBounded = query.getFrom() != null || query.getTo() != null;
+        double minAmount = query.getMinAmount() == null ? Double.NEGATIVE_INFINITY : query.getMinAmount();
+        double maxAmount = query.getMaxAmount() == null ? Double.POSITIVE_INFINITY : query.getMaxAmount();
+        int wantedCategory = categoryCode;
+
+        return (cents, epochSecond, category) -> {
+            if (timeBounded && (epochSecond == ExpenseColumnStore.NO_TIME
+                    || epochSecond < fromEpoch || epochSecond >= toEpoch)) {
+                return false;
+            }
+            double amount = cents / 100.0;
+            return amount >= minAmount && amount <= maxAmount
+                    && (wantedCategory < 0 || category == wantedCategory);
+        };
+    }
+
+    /**
+     * Обход индекса в порядке сортировки запроса: от границы диапазона или от курсора
+     * до другой границы, пока не набраны строки до конца страницы включительно.
+     */
+    private List<Expense> selectInOrder(ExpenseQuery query, boolean byDate,
+                                        ExpenseColumnStore.RowPredicate predicate, Predicate<Expense> filter) {
+        ExpenseQuery.SortOrder sortOrder = query.getSortOrder();
+        boolean descending = sortOrder == ExpenseQuery.SortOrder.DATE_DESC
+                || sortOrder == ExpenseQuery.SortOrder.AMOUNT_DESC;
+        long lowKey = byDate ? lowTime(query) : lowCents(query);
+        long highKey = byDate ? highTime(query) : highCents(query);
+        long startKey = descending ? highKey : lowKey;
+        long startId = descending ? Long.MAX_VALUE : Long.MIN_VALUE;
+
+        // Курсор сдвигает начало обхода; точное сравнение с ним делает фильтр
+        Expense cursor = query.getAfter();
+        if (cursor != null) {
+            long cursorKey = byDate
+                    ? ExpenseColumnStore.toEpochSecond(cursor.getDateTime())
+                    : ExpenseColumnStore.toCents(cursor.getAmount());
+            if (descending ? cursorKey < startKey : cursorKey > startKey) {
+                startKey = cursorKey;
+                startId = descending ? cursor.getId() - 1 : cursor.getId() + 1;
+            } else if (cursorKey == startKey) {
+                startId = descending ? Math.min(startId, cursor.getId() - 1) : Math.max(startId, cursor.getId() + 1);
+            }
+        }
+        int limit = query.hasLimit() ? (int) Math.min(Integer.MAX_VALUE, (long) query.getOffset() + query.getLimit()) : -1;
+        return store.selectOrdered(byDate ? ExpenseColumnStore.Order.TIME : ExpenseColumnStore.Order.AMOUNT,
+                descending, startKey, startId, descending ? lowKey : highKey, predicate, filter, limit);
+    }
+
+    private static boolean isTimeBounded(ExpenseQuery query) {
+        return query.getFrom() != null || query.getTo() != null;
+    }
+
+    /** Нижняя граница ключа времени; расходы без даты в период не попадают. */
+    private static long lowTime(ExpenseQuery query) {
+        if (query.getFrom() != null) {
+            return ExpenseColumnStore.toEpochSecond(query.getFrom());
+        }
+        return query.getTo() != null ? ExpenseColumnStore.NO_TIME + 1 : Long.MIN_VALUE;
+    }
+
+    private static long highTime(ExpenseQuery query) {
+        return query.getTo() == null ? Long.MAX_VALUE : ExpenseColumnStore.toEpochSecond(query.getTo()) - 1;
+    }
+
+    /** Границы ключа суммы с запасом; точно суммы проверяет условие по колонкам. */
+    private static long lowCents(ExpenseQuery query) {
+        return query.getMinAmount() == null ? Long.MIN_VALUE : (long) Math.floor(query.getMinAmount() * 100);
+    }
+
+    private static long highCents(ExpenseQuery query) {
+        return query.getMaxAmount() == null ? Long.MAX_VALUE : (long) Math.ceil(query.getMaxAmount() * 100);
+    }
+
+    /** Поиск по тексту и курсор проверяются уже на объектах. */
+    private static boolean needsObjectCheck(ExpenseQuery query) {
+        return query.getText() != null || query.getAfter() != null;
+    }
+
+    /**
+     * Сумма расходов за период {@code [from, to)} без создания объектов; {@code null}
+     * снимает соответствующую границу.
+     */
+    public double sumAmount(LocalDateTime from, LocalDateTime to) {
+        long fromEpoch = from == null ? Long.MIN_VALUE : ExpenseColumnStore.toEpochSecond(from);
+        long toEpoch = to == null ? Long.MAX_VALUE : ExpenseColumnStore.toEpochSecond(to);
+        return store.sumCentsBetween(fromEpoch, toEpoch) / 100.0;
+    }
+
+    /**
+     * Средняя сумма расхода за период {@code [from, to)} без создания объектов.
+     */
+    public double averageAmount(LocalDateTime from, LocalDateTime to) {
+        long fromEpoch = from == null ? Long.MIN_VALUE : ExpenseColumnStore.toEpochSecond(from);
+        long toEpoch = to == null ? Long.MAX_VALUE : ExpenseColumnStore.toEpochSecond(to);
+        long count = store.countBetween(fromEpoch, toEpoch);
+        return count == 0 ? 0 : store.sumCentsBetween(fromEpoch, toEpoch) / 100.0 / count;
     }
-}
\ No newline at end of file
+}
@@ -2,25 +2,57 @@ package org.example.expensemanager.data.daoimpl;
 
 import org.example.expensemanager.business.model.Expense;
 import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public class ExpensePostgresDao implements ExpenseDao {
-    private final Connection connection;
+public class ExpensePostgresDao implements ExpenseDao, AutoCloseable {
+    private static final String INSERT_SQL =
+            "INSERT INTO expenses (amount, description, category, date_time) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+            "UPDATE expenses SET amount=?, description=?, category=?, date_time=? WHERE id=?";
+    private static final String DELETE_SQL = "DELETE FROM expenses WHERE id=?";
+    private static final String SELECT_ALL_SQL =
+            "SELECT id, amount, description, category, date_time FROM expenses";
+    private static final String SELECT_BY_ID_SQL = SELECT_ALL_SQL + " WHERE id=?";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM expenses";
+    // Повтор после обрыва связи на коммите не должен падать на уже вставленных id
+    private static final String INSERT_WITH_ID_SQL =
+            "INSERT INTO expenses (id, amount, description, category, date_time) VALUES (?, ?, ?, ?, ?)"
+                    + " ON CONFLICT (id) DO UPDATE SET amount = EXCLUDED.amount, description = EXCLUDED.description,"
+                    + " category = EXCLUDED.category, date_time = EXCLUDED.date_time";
+    private static final String SELECT_BY_IDS_SQL = SELECT_ALL_SQL + " WHERE id = ANY(?)";
+    private static final String RESERVE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('expenses', 'id')) FROM generate_series(1, ?)";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcConnectionPool pool;
 
     public ExpensePostgresDao(String url, String user, String password) {
+        this(new JdbcConnectionPool(url, user, password, 1));
+    }
+
+    public ExpensePostgresDao(JdbcConnectionPool pool) {
+        this.pool = pool;
         try {
-            connection = DriverManager.getConnection(url, user, password);
-            createTableIfNotExists();
+            pool.execute(connection -> {
+                createTableIfNotExists(connection.getConnection());
+                return null;
+            }, true);
         } catch (SQLException e) {
+            pool.close();
             throw new RuntimeException("Ошибка подключения к базе данных PostgreSQL", e);
         }
     }
 
-    private void createTableIfNotExists() throws SQLException {
+    private void createTableIfNotExists(Connection connection) throws SQLException {
         String sql = "CREATE TABLE IF NOT EXISTS expenses (" +
                 "id SERIAL PRIMARY KEY, " +
                 "amount DECIMAL(10,2) NOT NULL, " +
@@ -30,25 +62,32 @@ public class ExpensePostgresDao implements ExpenseDao {
                 ")";
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_expenses_date_time ON expenses (date_time, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_expenses_amount ON expenses (amount, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_expenses_category ON expenses (category)");
         }
     }
 
     @Override
     public void addExpense(Expense expense) {
-        String sql = "INSERT INTO expenses (amount, description, category, date_time) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setDouble(1, expense.getAmount());
-            stmt.setString(2, expense.getDescription());
-            stmt.setString(3, expense.getCategory());
-            stmt.setTimestamp(4, Timestamp.valueOf(expense.getDateTime()));
+        try {
+            // Вставка не повторяется: при обрыве после коммита появился бы дубль
+            pool.execute(connection -> {
+                PreparedStatement stmt = connection.prepare(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                stmt.setDouble(1, expense.getAmount());
+                stmt.setString(2, expense.getDescription());
+                stmt.setString(3, expense.getCategory());
+                stmt.setTimestamp(4, Timestamp.valueOf(expense.getDateTime()));
 
-            stmt.executeUpdate();
+                stmt.executeUpdate();
 
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    expense.setId(rs.getInt(1));
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        expense.setId(rs.getLong(1));
+                    }
                 }
-            }
+                return null;
+            }, false);
         } catch (SQLException e) {
             throw new RuntimeException("Ошибка добавления расхода", e);
         }
@@ -56,61 +95,431 @@ public class ExpensePostgresDao implements ExpenseDao {
 
     @Override
     public void updateExpense(Expense expense) {
-        String sql = "UPDATE expenses SET amount=?, description=?, category=?, date_time=? WHERE id=?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setDouble(1, expense.getAmount());
-            stmt.setString(2, expense.getDescription());
-            stmt.setString(3, expense.getCategory());
-            stmt.setTimestamp(4, Timestamp.valueOf(expense.getDateTime()));
-            stmt.setLong(5, expense.getId());
-
-            stmt.executeUpdate();
+        int updated;
+        try {
+            updated = pool.execute(connection -> {
+                PreparedStatement stmt = connection.prepare(UPDATE_SQL);
+                stmt.setDouble(1, expense.getAmount());
+                stmt.setString(2, expense.getDescription());
+                stmt.setString(3, expense.getCategory());
+                stmt.setTimestamp(4, Timestamp.valueOf(expense.getDateTime()));
+                stmt.setLong(5, expense.getId());
+
+                return stmt.executeUpdate();
+            }, true);
         } catch (SQLException e) {
             throw new RuntimeException("Ошибка обновления расхода", e);
         }
+        if (updated == 0) {
+            throw new RuntimeException("Расход не найден по id: " + expense.getId());
+        }
     }
 
     @Override
     public void deleteExpense(long id) {
-        String sql = "DELETE FROM expenses WHERE id=?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, id);
-            stmt.executeUpdate();
+        try {
+            pool.execute(connection -> {
+                PreparedStatement stmt = connection.prepare(DELETE_SQL);
+                stmt.setLong(1, id);
+                return stmt.executeUpdate();
+            }, true);
         } catch (SQLException e) {
             throw new RuntimeException("Ошибка удаления расхода", e);
         }
     }
 
+    @Override
+    public void addExpenses(List<Expense> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            long[] ids = pool.execute(connection -> inTransaction(connection.getConnection(), () -> {
+                long[] generated = new long[batch.size()];
+                PreparedStatement stmt = connection.prepare(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                for (int from = 0; from < batch.size(); from += BATCH_SIZE) {
+                    int to = Math.min(from + BATCH_SIZE, batch.size());
+                    for (int i = from; i < to; i++) {
+                        Expense expense = batch.get(i);
+                        stmt.setDouble(1, expense.getAmount());
+                        stmt.setString(2, expense.getDescription());
+                        stmt.setString(3, expense.getCategory());
+                        stmt.setTimestamp(4, Timestamp.valueOf(expense.getDateTime()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    try (ResultSet rs = stmt.getGeneratedKeys()) {
+                        for (int i = from; i < to && rs.next(); i++) {
+                            generated[i] = rs.getLong(1);
+                        }
+                    }
+                }
+                return generated;
+            }), false);
+
+            // id присваиваются только после успешного коммита
+            for (int i = 0; i < ids.length; i++) {
+                batch.get(i).setId(ids[i]);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка пакетного добавления расходов", e);
+        }
+    }
+
+    @Override
+    public void updateExpenses(List<Expense> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            pool.execute(connection -> inTransaction(connection.getConnection(), () -> {
+                PreparedStatement stmt = connection.prepare(UPDATE_SQL);
+                for (int from = 0; from < batch.size(); from += BATCH_SIZE) {
+                    int to = Math.min(from + BATCH_SIZE, batch.size());
+                    for (int i = from; i < to; i++) {
+                        Expense expense = batch.get(i);
+                        stmt.setDouble(1, expense.getAmount());
+                        stmt.setString(2, expense.getDescription());
+                        stmt.setString(3, expense.getCategory());
+                        stmt.setTimestamp(4, Timestamp.valueOf(expense.getDateTime()));
+                        stmt.setLong(5, expense.getId());
+                        stmt.addBatch();
+                    }
+                    int[] updated = stmt.executeBatch();
+                    for (int i = 0; i < updated.length; i++) {
+                        if (updated[i] == 0) {
+                            // Исключение откатывает транзакцию: пачка не применяется частично
+                            throw new RuntimeException("Расход не найден по id: " + batch.get(from + i).getId());
+                        }
+                    }
+                }
+                return null;
+            }), true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка пакетного обновления расходов", e);
+        }
+    }
+
+    @Override
+    public void deleteExpenses(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            pool.execute(connection -> inTransaction(connection.getConnection(), () -> {
+                PreparedStatement stmt = connection.prepare(DELETE_SQL);
+                int pending = 0;
+                for (long id : ids) {
+                    stmt.setLong(1, id);
+                    stmt.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        stmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    stmt.executeBatch();
+                }
+                return null;
+            }), true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка пакетного удаления расходов", e);
+        }
+    }
+
+    @Override
+    public Optional<Expense> findExpenseById(long id) {
+        try {
+            return pool.execute(connection -> {
+                PreparedStatement stmt = connection.prepare(SELECT_BY_ID_SQL);
+                stmt.setLong(1, id);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? Optional.of(mapRow(rs)) : Optional.<Expense>empty();
+                }
+            }, true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка получения расхода по id: " + id, e);
+        }
+    }
+
     @Override
     public List<Expense> getAllExpenses() {
-        List<Expense> expenses = new ArrayList<>();
-        String sql = "SELECT * FROM expenses";
+        try {
+            return pool.execute(connection -> {
+                List<Expense> expenses = new ArrayList<>();
+                PreparedStatement stmt = connection.prepare(SELECT_ALL_SQL);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        expenses.add(mapRow(rs));
+                    }
+                }
+                return expenses;
+            }, true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка получения расходов", e);
+        }
+    }
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    @Override
+    public List<Expense> findExpenses(ExpenseQuery query) {
+        List<Object> params = new ArrayList<>();
+        String sql = SELECT_ALL_SQL + buildWhere(query, params) + buildOrderBy(query) + buildPage(query, params);
+        try {
+            return pool.execute(connection -> {
+                List<Expense> expenses = new ArrayList<>();
+                PreparedStatement stmt = connection.prepare(sql);
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        expenses.add(mapRow(rs));
+                    }
+                }
+                return expenses;
+            }, true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка получения расходов", e);
+        }
+    }
+
+    @Override
+    public long countExpenses(ExpenseQuery query) {
+        List<Object> params = new ArrayList<>();
+        String sql = COUNT_SQL + buildWhere(query, params);
+        try {
+            return pool.execute(connection -> {
+                PreparedStatement stmt = connection.prepare(sql);
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }, true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка подсчёта расходов", e);
+        }
+    }
+
+    /**
+     * Текстовое условие совпадает с фильтром таблицы с одной оговоркой: сумма сравнивается
+     * в представлении DECIMAL(10,2) ("1500.00"), а не Java double ("1500.0").
+     */
+    private static String buildWhere(ExpenseQuery query, List<Object> params) {
+        StringBuilder where = new StringBuilder();
+        if (query.getFrom() != null) {
+            where.append(" AND date_time >= ?");
+            params.add(Timestamp.valueOf(query.getFrom()));
+        }
+        if (query.getTo() != null) {
+            where.append(" AND date_time < ?");
+            params.add(Timestamp.valueOf(query.getTo()));
+        }
+        if (query.getCategory() != null) {
+            where.append(" AND category = ?");
+            params.add(query.getCategory());
+        }
+        if (query.getMinAmount() != null) {
+            where.append(" AND amount >= ?");
+            params.add(query.getMinAmount());
+        }
+        if (query.getMaxAmount() != null) {
+            where.append(" AND amount <= ?");
+            params.add(query.getMaxAmount());
+        }
+        if (query.getText() != null) {
+            String pattern = "%" + escapeLike(query.getText()) + "%";
+            where.append(" AND (LOWER(description) LIKE ? ESCAPE '\\'"
+                    + " OR LOWER(category) LIKE ? ESCAPE '\\'"
+                    + " OR CAST(amount AS VARCHAR) LIKE ? ESCAPE '\\')");
+            params.add(pattern);
+            params.add(pattern);
+            params.add(pattern);
+        }
+        Expense after = query.getAfter();
+        if (after != null) {
+            // Курсор по тем же столбцам, что и ORDER BY; индексы (date_time, id) и (amount, id)
+            // позволяют начать чтение сразу с нужного места
+            switch (query.getSortOrder()) {
+                case DATE_DESC -> where.append(" AND (date_time, id) < (?, ?)");
+                case DATE_ASC -> where.append(" AND (date_time, id) > (?, ?)");
+                case AMOUNT_ASC -> where.append(" AND (amount, id) > (?, ?)");
+                case AMOUNT_DESC -> where.append(" AND (amount, id) < (?, ?)");
+                default -> throw new IllegalStateException("Курсор без сортировки");
+            }
+            boolean byDate = query.getSortOrder() == ExpenseQuery.SortOrder.DATE_DESC
+                    || query.getSortOrder() == ExpenseQuery.SortOrder.DATE_ASC;
+            params.add(byDate ? Timestamp.valueOf(after.getDateTime()) : BigDecimal.valueOf(after.getAmount()));
+            params.add(after.getId());
+        }
+        return where.length() == 0 ? "" : " WHERE" + where.substring(4);
+    }
+
+    private static String buildOrderBy(ExpenseQuery query) {
+        return switch (query.getSortOrder()) {
+            case DATE_DESC -> " ORDER BY date_time DESC, id DESC";
+            case DATE_ASC -> " ORDER BY date_time ASC, id ASC";
+            case AMOUNT_ASC -> " ORDER BY amount ASC, id ASC";
+            case AMOUNT_DESC -> " ORDER BY amount DESC, id DESC";
+            case NONE -> "";
+        };
+    }
 
-            while (rs.next()) {
-                Expense expense = new Expense();
-                expense.setId(rs.getInt("id"));
-                expense.setAmount(rs.getDouble("amount"));
-                expense.setDescription(rs.getString("description"));
-                expense.setCategory(rs.getString("category"));
+    private static String buildPage(ExpenseQuery query, List<Object> params) {
+        StringBuilder page = new StringBuilder();
+        if (query.hasLimit()) {
+            page.append(" LIMIT ?");
+            params.add(query.getLimit());
+        }
+        if (query.getOffset() > 0) {
+            page.append(" OFFSET ?");
+            params.add(query.getOffset());
+        }
+        return page.toString();
+    }
 
-                Timestamp ts = rs.getTimestamp("date_time");
-                if (ts != null) {
-                    expense.setDateTime(ts.toLocalDateTime());
-                } else {
-                    // Временно подставляем текущую дату
-                    expense.setDateTime(LocalDateTime.now());
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Резервирует {@code count} id из последовательности таблицы, чтобы расходы получали
+     * id до фактической вставки. Неиспользованные id дают пропуски, как и откаты.
+     */
+    long[] reserveIds(int count) {
+        try {
+            return pool.execute(connection -> {
+                PreparedStatement stmt = connection.prepare(RESERVE_IDS_SQL);
+                stmt.setInt(1, count);
+                long[] ids = new long[count];
+                try (ResultSet rs = stmt.executeQuery()) {
+                    for (int i = 0; i < count && rs.next(); i++) {
+                        ids[i] = rs.getLong(1);
+                    }
                 }
+                return ids;
+            }, true);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка резервирования id расходов", e);
+        }
+    }
 
-                expenses.add(expense);
+    /**
+     * Применяет вставки (с уже назначенными id), изменения и удаления одной транзакцией.
+     * Все три операции идемпотентны, поэтому транзакцию можно повторить, даже если
+     * неизвестно, дошёл ли до базы её коммит.
+     */
+    void applyChanges(List<Expense> inserts, List<Expense> updates, Collection<Long> deletes) throws SQLException {
+        pool.execute(connection -> inTransaction(connection.getConnection(), () -> {
+            if (!deletes.isEmpty()) {
+                PreparedStatement stmt = connection.prepare(DELETE_SQL);
+                for (long id : deletes) {
+                    stmt.setLong(1, id);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            if (!updates.isEmpty()) {
+                PreparedStatement stmt = connection.prepare(UPDATE_SQL);
+                for (Expense expense : updates) {
+                    stmt.setDouble(1, expense.getAmount());
+                    stmt.setString(2, expense.getDescription());
+                    stmt.setString(3, expense.getCategory());
+                    stmt.setTimestamp(4, Timestamp.valueOf(expense.getDateTime()));
+                    stmt.setLong(5, expense.getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            if (!inserts.isEmpty()) {
+                PreparedStatement stmt = connection.prepare(INSERT_WITH_ID_SQL);
+                for (Expense expense : inserts) {
+                    stmt.setLong(1, expense.getId());
+                    stmt.setDouble(2, expense.getAmount());
+                    stmt.setString(3, expense.getDescription());
+                    stmt.setString(4, expense.getCategory());
+                    stmt.setTimestamp(5, Timestamp.valueOf(expense.getDateTime()));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
             }
+            return null;
+        }), true);
+    }
 
+    /** Сохранённые версии расходов с указанными id; отсутствующие пропускаются. */
+    List<Expense> findExpensesByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            return pool.execute(connection -> {
+                List<Expense> expenses = new ArrayList<>();
+                PreparedStatement stmt = connection.prepare(SELECT_BY_IDS_SQL);
+                stmt.setArray(1, connection.getConnection().createArrayOf("bigint", ids.toArray()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        expenses.add(mapRow(rs));
+                    }
+                }
+                return expenses;
+            }, true);
         } catch (SQLException e) {
-            throw new RuntimeException("Ошибка получения расходов", e);
+            throw new RuntimeException("Ошибка получения расходов по id", e);
+        }
+    }
+
+    /** Одновременно выполняется не больше запросов, чем соединений в пуле. */
+    @Override
+    public int maxConcurrentOperations() {
+        return pool.getMaxSize();
+    }
+
+    public void close() {
+        pool.close();
+    }
+
+    private static <T> T inTransaction(Connection connection, TransactionWork<T> work) throws SQLException {
+        connection.setAutoCommit(false);
+        boolean committed = false;
+        try {
+            T result = work.run();
+            connection.commit();
+            committed = true;
+            return result;
+        } finally {
+            if (!committed) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ignored) {
+                    // исходная ошибка важнее
+                }
+            }
+            connection.setAutoCommit(true);
         }
+    }
 
-        return expenses;
+    @FunctionalInterface
+    private interface TransactionWork<T> {
+        T run() throws SQLException;
+    }
+
+    private Expense mapRow(ResultSet rs) throws SQLException {
+        Expense expense = new Expense();
+        expense.setId(rs.getLong("id"));
+        expense.setAmount(rs.getDouble("amount"));
+        expense.setDescription(rs.getString("description"));
+        expense.setCategory(rs.getString("category"));
+
+        Timestamp ts = rs.getTimestamp("date_time");
+        if (ts != null) {
+            expense.setDateTime(ts.toLocalDateTime());
+        } else {
+            // Временно подставляем текущую дату
+            expense.setDateTime(LocalDateTime.now());
+        }
+        return expense;
     }
 }
@@ -0,0 +1,687 @@
+package org.example.expensemanager.data.daoimpl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseJsonCodec;
+import org.example.expensemanager.data.ExpenseQuery;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON-хранилище, разбитое по месяцам.
+ * <p>
+ * В каталоге лежит по файлу на месяц ({@code 2024-05.json} или, со сжатием,
+ * {@code 2024-05.json.gz}) в формате {@link ExpenseJsonDao}, файл {@code undated.json}
+ * для расходов без даты и небольшой {@code manifest.json}: следующий id, отметка
+ * о переносе из прежнего файла и список сегментов с числом строк. Изменение переписывает только сегменты затронутых месяцев,
+ * выборка за период читает только сегменты этого периода, полная загрузка разбирает
+ * сегменты параллельно. Прошлые месяцы после этого не меняются, их можно архивировать
+ * как обычные файлы.
+ * <p>
+ * Сегмент и манифест пишутся во временный файл и атомарно подменяются. Перед записью
+ * сегментов в манифест заносится отметка о начатой записи вместе с уже увеличенным
+ * следующим id и месяцами, куда переносятся расходы; после записи отметка снимается.
+ * Сначала пишутся сегменты, куда расходы добавляются, затем те, откуда они убираются,
+ * поэтому прерванная запись может оставить расход в двух сегментах, но не потерять его.
+ * Если при открытии отметка осталась, сегмент новее манифеста или не совпадает с его
+ * списком (файлы подложены вручную), манифест пересобирается по сегментам, а дубли
+ * по id убираются. Сжатие определяется по расширению, поэтому сжатые и несжатые
+ * сегменты могут лежать вместе; сегмент переписывается в текущем режиме.
+ * <p>
+ * Для изменения и удаления по id нужен месяц расхода. Обновление без смены месяца
+ * находит расход в сегменте его новой даты; в остальных случаях при первом обращении
+ * все сегменты читаются один раз и строится индекс {@code id → месяц}.
+ */
+public class ExpenseSegmentedJsonDao implements ExpenseDao {
+    private static final System.Logger LOG = System.getLogger(ExpenseSegmentedJsonDao.class.getName());
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String UNDATED_NAME = "undated";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("(\\d{4}-\\d{2}|" + UNDATED_NAME + ")\\.json(\\.gz)?");
+    private static final int MANIFEST_VERSION = 1;
+    /** Ключ сегмента без даты; сортируется после всех месяцев. */
+    private static final int UNDATED = Integer.MAX_VALUE;
+
+    private final Path directory;
+    private final boolean compress;
+    private final ExpenseJsonCodec codec;
+
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    private long nextId = 1;
+    /** Месяц по id; строится при первой необходимости. */
+    private LongIntHashMap monthById;
+    /**
+     * Перенос из прежнего файла выполнен; хранится в манифесте, чтобы удалённые после
+     * переноса расходы не вернулись при следующем запуске.
+     */
+    private boolean imported;
+
+    public ExpenseSegmentedJsonDao(String directory, boolean compress, boolean prettyPrinting) {
+        this.directory = Paths.get(directory);
+        this.compress = compress;
+        this.codec = new ExpenseJsonCodec(prettyPrinting);
+        try {
+            Files.createDirectories(this.directory);
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка открытия каталога JSON-сегментов", e);
+        }
+    }
+
+    /**
+     * {@code true}, если перенос {@link #importExpenses} уже выполнялся. Для каталога,
+     * открытого без манифеста, — если в нём есть сегменты.
+     */
+    public synchronized boolean isImported() {
+        return imported;
+    }
+
+    /**
+     * Переносит расходы с сохранением их id, например из файла {@link ExpenseJsonDao}
+     * при переходе на сегменты, и отмечает перенос в манифесте. Отметка пишется после
+     * сегментов: прерванный перенос повторяется, а повтор заменяет строки с теми же id.
+     */
+    public synchronized void importExpenses(List<Expense> expenses) {
+        for (Expense expense : expenses) {
+            nextId = Math.max(nextId, expense.getId() + 1);
+        }
+        write(byMonth(expenses), Map.of());
+        imported = true;
+        saveManifest(null);
+    }
+
+    @Override
+    public synchronized void addExpense(Expense expense) {
+        addExpenses(List.of(expense));
+    }
+
+    @Override
+    public synchronized void addExpenses(List<Expense> batch) {
+        for (Expense expense : batch) {
+            expense.setId(nextId++);
+        }
+        write(byMonth(batch), Map.of());
+    }
+
+    @Override
+    public synchronized void updateExpense(Expense expense) {
+        updateExpenses(List.of(expense));
+    }
+
+    @Override
+    public synchronized void updateExpenses(List<Expense> batch) {
+        Map<Integer, List<Expense>> puts = byMonth(batch);
+        if (monthById == null && allInPlace(puts)) {
+            write(puts, Map.of());
+            return;
+        }
+        LongIntHashMap months = monthById();
+        Map<Integer, Set<Long>> removes = new HashMap<>();
+        for (Expense expense : batch) {
+            int month = months.get(expense.getId());
+            if (month < 0) {
+                throw new RuntimeException("Расход не найден по id: " + expense.getId());
+            }
+            if (month != keyOf(expense.getDateTime())) {
+                removes.computeIfAbsent(month, m -> new HashSet<>()).add(expense.getId());
+            }
+        }
+        write(puts, removes);
+    }
+
+    @Override
+    public synchronized void deleteExpense(long id) {
+        deleteExpenses(List.of(id));
+    }
+
+    @Override
+    public synchronized void deleteExpenses(Collection<Long> ids) {
+        LongIntHashMap months = monthById();
+        Map<Integer, Set<Long>> removes = new HashMap<>();
+        for (long id : ids) {
+            int month = months.get(id);
+            if (month >= 0) {
+                removes.computeIfAbsent(month, m -> new HashSet<>()).add(id);
+            }
+        }
+        if (!removes.isEmpty()) {
+            write(Map.of(), removes);
+        }
+    }
+
+    /** Все сегменты по порядку месяцев, разобранные параллельно. */
+    @Override
+    public synchronized List<Expense> getAllExpenses() {
+        List<List<Expense>> parts = readAll(segments.values());
+        List<Expense> expenses = new ArrayList<>();
+        parts.forEach(expenses::addAll);
+        if (monthById == null) {
+            monthById = indexOf(parts);
+        }
+        return expenses;
+    }
+
+    @Override
+    public synchronized Optional<Expense> findExpenseById(long id) {
+        int month = monthById().get(id);
+        if (month < 0) {
+            return Optional.empty();
+        }
+        for (Expense expense : read(month)) {
+            if (expense.getId() == id) {
+                return Optional.of(expense);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Читаются только сегменты месяцев, пересекающихся с периодом запроса. */
+    @Override
+    public synchronized List<Expense> findExpenses(ExpenseQuery query) {
+        List<Expense> matched = new ArrayList<>();
+        for (List<Expense> part : readAll(segmentsFor(query))) {
+            for (Expense expense : part) {
+                if (query.matches(expense)) {
+                    matched.add(expense);
+                }
+            }
+        }
+        return query.sortAndPage(matched);
+    }
+
+    @Override
+    public synchronized long countExpenses(ExpenseQuery query) {
+        long count = 0;
+        for (List<Expense> part : readAll(segmentsFor(query))) {
+            for (Expense expense : part) {
+                if (query.matches(expense)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return true;
+    }
+
+    private Collection<Segment> segmentsFor(ExpenseQuery query) {
+        if (query.getFrom() == null && query.getTo() == null) {
+            return segments.values();
+        }
+        int from = query.getFrom() == null ? Integer.MIN_VALUE : keyOf(query.getFrom());
+        // Конец периода не включается: 2024-06-01T00:00 не затрагивает июнь
+        int to = query.getTo() == null ? UNDATED - 1 : keyOf(query.getTo().minusNanos(1));
+        return from > to ? List.of() : segments.subMap(from, true, to, true).values();
+    }
+
+    /**
+     * Проверяет, что каждый расход уже лежит в сегменте своей новой даты, т.е. месяц
+     * не менялся и индекс по id не нужен.
+     */
+    private boolean allInPlace(Map<Integer, List<Expense>> puts) {
+        List<Integer> months = new ArrayList<>(puts.keySet());
+        List<Set<Long>> present = months.parallelStream()
+                .map(month -> read(month).stream().map(Expense::getId).collect(Collectors.toSet()))
+                .collect(Collectors.toList());
+        for (int i = 0; i < months.size(); i++) {
+            for (Expense expense : puts.get(months.get(i))) {
+                if (!present.get(i).contains(expense.getId())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Переписывает затронутые сегменты: расходы из {@code puts} заменяют строки с тем же
+     * id или дописываются, из сегментов убираются {@code removes}. Сначала параллельно
+     * пишутся сегменты с добавлениями, затем сегменты с удалениями; манифест отмечает
+     * начало и конец записи.
+     */
+    private void write(Map<Integer, List<Expense>> puts, Map<Integer, Set<Long>> removes) {
+        Map<Long, Integer> moves = new HashMap<>();
+        if (!removes.isEmpty()) {
+            Set<Long> removed = new HashSet<>();
+            removes.values().forEach(removed::addAll);
+            puts.forEach((month, expenses) -> expenses.stream()
+                    .filter(e -> removed.contains(e.getId()))
+                    .forEach(e -> moves.put(e.getId(), month)));
+        }
+        saveManifest(moves);
+
+        rewriteSegments(puts.keySet(), month -> merge(read(month), puts.get(month), Set.of()));
+        rewriteSegments(removes.keySet(), month -> merge(read(month), List.of(), removes.get(month)));
+
+        if (monthById != null) {
+            removes.values().forEach(ids -> ids.forEach(monthById::remove));
+            puts.forEach((month, expenses) -> expenses.forEach(e -> monthById.put(e.getId(), month)));
+        }
+        saveManifest(null);
+    }
+
+    /** Параллельно переписывает сегменты указанных месяцев новым содержимым. */
+    private void rewriteSegments(Set<Integer> months, Function<Integer, List<Expense>> content) {
+        List<Segment> written = new ArrayList<>(months).parallelStream()
+                .map(month -> writeSegment(month, content.apply(month)))
+                .collect(Collectors.toList());
+        for (Segment segment : written) {
+            if (segment.count == 0) {
+                segments.remove(segment.month);
+            } else {
+                segments.put(segment.month, segment);
+            }
+        }
+    }
+
+    private static List<Expense> merge(List<Expense> rows, List<Expense> put, Set<Long> removed) {
+        Map<Long, Expense> byId = new HashMap<>();
+        for (Expense expense : put) {
+            byId.put(expense.getId(), expense);
+        }
+        List<Expense> result = new ArrayList<>(rows.size() + put.size());
+        for (Expense row : rows) {
+            if (removed.contains(row.getId())) {
+                continue;
+            }
+            Expense replacement = byId.remove(row.getId());
+            result.add(replacement != null ? replacement : row);
+        }
+        for (Expense expense : put) {
+            if (byId.containsKey(expense.getId())) {
+                result.add(expense);
+            }
+        }
+        return result;
+    }
+
+    private List<Expense> read(int month) {
+        Segment segment = segments.get(month);
+        return segment == null ? new ArrayList<>() : read(segment.file);
+    }
+
+    private List<Expense> read(String file) {
+        try (Reader reader = reader(directory.resolve(file))) {
+            return codec.readAll(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения JSON-сегмента " + file, e);
+        }
+    }
+
+    /** Содержимое сегментов в том же порядке; файлы разбираются параллельно. */
+    private List<List<Expense>> readAll(Collection<Segment> selected) {
+        return new ArrayList<>(selected).parallelStream()
+                .map(segment -> read(segment.file))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Пишет сегмент через временный файл; пустой сегмент удаляется. Сегмент,
+     * записанный раньше в другом режиме сжатия, удаляется после записи нового.
+     */
+    private Segment writeSegment(int month, List<Expense> expenses) {
+        Segment previous = segments.get(month);
+        String file = nameOf(month) + (compress ? ".json.gz" : ".json");
+        try {
+            if (expenses.isEmpty()) {
+                if (previous != null) {
+                    Files.deleteIfExists(directory.resolve(previous.file));
+                }
+                return new Segment(month, file, 0);
+            }
+            Path target = directory.resolve(file);
+            Path temp = directory.resolve(file + ".tmp");
+            try (Writer writer = writer(temp)) {
+                codec.writeAll(writer, expenses);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (previous != null && !previous.file.equals(file)) {
+                Files.deleteIfExists(directory.resolve(previous.file));
+            }
+            return new Segment(month, file, expenses.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка записи JSON-сегмента " + file, e);
+        }
+    }
+
+    private LongIntHashMap monthById() {
+        if (monthById == null) {
+            monthById = indexOf(readAll(segments.values()));
+        }
+        return monthById;
+    }
+
+    private LongIntHashMap indexOf(List<List<Expense>> parts) {
+        LongIntHashMap index = new LongIntHashMap(parts.stream().mapToInt(List::size).sum());
+        for (List<Expense> part : parts) {
+            for (Expense expense : part) {
+                index.put(expense.getId(), keyOf(expense.getDateTime()));
+                nextId = Math.max(nextId, expense.getId() + 1);
+            }
+        }
+        return index;
+    }
+
+    private static Map<Integer, List<Expense>> byMonth(Collection<Expense> expenses) {
+        Map<Integer, List<Expense>> result = new HashMap<>();
+        for (Expense expense : expenses) {
+            result.computeIfAbsent(keyOf(expense.getDateTime()), m -> new ArrayList<>()).add(expense);
+        }
+        return result;
+    }
+
+    /**
+     * Загружает манифест и сверяет его с каталогом; при расхождении или прерванной
+     * записи пересобирает его по сегментам.
+     */
+    private void open() throws IOException {
+        Map<Integer, Path> files = segmentFiles();
+        Path manifest = directory.resolve(MANIFEST);
+        Manifest state = Files.exists(manifest) ? readManifest(manifest) : null;
+        boolean consistent = state != null && !state.writing;
+        if (consistent) {
+            FileTime manifestTime = Files.getLastModifiedTime(manifest);
+            consistent = files.size() == segments.size();
+            for (Map.Entry<Integer, Path> entry : files.entrySet()) {
+                Segment segment = segments.get(entry.getKey());
+                consistent &= segment != null
+                        && segment.file.equals(entry.getValue().getFileName().toString())
+                        && Files.getLastModifiedTime(entry.getValue()).compareTo(manifestTime) <= 0;
+            }
+        }
+        if (consistent) {
+            return;
+        }
+        if (!files.isEmpty() || Files.exists(manifest)) {
+            LOG.log(System.Logger.Level.WARNING, "Манифест JSON-сегментов не совпадает с каталогом "
+                    + directory + ", пересобирается");
+        }
+        segments.clear();
+        for (Map.Entry<Integer, Path> entry : files.entrySet()) {
+            segments.put(entry.getKey(), new Segment(entry.getKey(), entry.getValue().getFileName().toString(), 0));
+        }
+        List<List<Expense>> parts = readAll(segments.values());
+        removeDuplicates(parts, state == null ? Map.of() : state.moves);
+        int i = 0;
+        for (Segment segment : segments.values()) {
+            segment.count = parts.get(i++).size();
+        }
+        segments.values().removeIf(segment -> segment.count == 0);
+        monthById = indexOf(parts);
+        if (state == null) {
+            // Без манифеста перенос считается выполненным, если хранилищем уже пользовались
+            imported = !segments.isEmpty();
+        }
+        saveManifest(null);
+    }
+
+    /**
+     * Оставляет каждый id в одном сегменте. Дубль появляется, если запись с переносом
+     * расхода в другой месяц прервалась; остаётся копия в месяце, куда расход
+     * переносился, а если он неизвестен — в последнем изменённом сегменте. Сегменты,
+     * из которых убраны копии, переписываются.
+     */
+    private void removeDuplicates(List<List<Expense>> parts, Map<Long, Integer> moves) throws IOException {
+        List<Segment> list = new ArrayList<>(segments.values());
+        List<FileTime> modified = new ArrayList<>();
+        for (Segment segment : list) {
+            modified.add(Files.getLastModifiedTime(directory.resolve(segment.file)));
+        }
+        Map<Long, Integer> owner = new HashMap<>();
+        Map<Integer, Set<Long>> losers = new HashMap<>();
+        for (int i = 0; i < parts.size(); i++) {
+            for (Expense expense : parts.get(i)) {
+                Integer previous = owner.putIfAbsent(expense.getId(), i);
+                if (previous == null) {
+                    continue;
+                }
+                Integer intended = moves.get(expense.getId());
+                boolean keepNew = intended != null
+                        ? intended == list.get(i).month
+                        : modified.get(i).compareTo(modified.get(previous)) > 0;
+                int loser = keepNew ? previous : i;
+                if (keepNew) {
+                    owner.put(expense.getId(), i);
+                }
+                losers.computeIfAbsent(loser, k -> new HashSet<>()).add(expense.getId());
+            }
+        }
+        for (Map.Entry<Integer, Set<Long>> entry : losers.entrySet()) {
+            int i = entry.getKey();
+            List<Expense> kept = merge(parts.get(i), List.of(), entry.getValue());
+            LOG.log(System.Logger.Level.WARNING, "Из сегмента " + list.get(i).file + " убрано дублей: "
+                    + (parts.get(i).size() - kept.size()));
+            parts.set(i, kept);
+            segments.put(list.get(i).month, writeSegment(list.get(i).month, kept));
+        }
+    }
+
+    /**
+     * Файлы сегментов по месяцам. Если месяц лежит в двух видах (запись прервалась
+     * при смене режима сжатия), берётся более новый файл, старый удаляется.
+     */
+    private Map<Integer, Path> segmentFiles() throws IOException {
+        Map<Integer, Path> files = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                int month = parseKey(matcher.group(1));
+                Path other = files.get(month);
+                if (other != null) {
+                    boolean newer = Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(other)) > 0;
+                    Files.delete(newer ? other : file);
+                    if (!newer) {
+                        continue;
+                    }
+                }
+                files.put(month, file);
+            }
+        }
+        return files;
+    }
+
+    /** Манифест или {@code null}, если его не удалось прочитать. */
+    private Manifest readManifest(Path manifest) {
+        Manifest state = new Manifest();
+        // Манифесты без поля писались, когда перенос выполнялся сразу при создании каталога
+        imported = true;
+        try (JsonReader in = new JsonReader(Files.newBufferedReader(manifest, StandardCharsets.UTF_8))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "nextId" -> nextId = in.nextLong();
+                    case "writing" -> state.writing = in.nextBoolean();
+                    case "imported" -> imported = in.nextBoolean();
+                    case "moves" -> {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            in.beginArray();
+                            long id = in.nextLong();
+                            state.moves.put(id, parseKey(in.nextString()));
+                            in.endArray();
+                        }
+                        in.endArray();
+                    }
+                    case "segments" -> {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            Segment segment = readSegmentEntry(in);
+                            segments.put(segment.month, segment);
+                        }
+                        in.endArray();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return state;
+        } catch (IOException | RuntimeException e) {
+            LOG.log(System.Logger.Level.WARNING, "Не удалось прочитать манифест " + manifest, e);
+            segments.clear();
+            return null;
+        }
+    }
+
+    private static Segment readSegmentEntry(JsonReader in) throws IOException {
+        String month = null;
+        String file = null;
+        long count = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "month" -> month = in.nextString();
+                case "file" -> file = in.nextString();
+                case "count" -> count = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (file == null) {
+            throw new IllegalStateException("Сегмент без имени файла в манифесте");
+        }
+        return new Segment(month == null ? UNDATED : parseKey(month), file, count);
+    }
+
+    /**
+     * Пишет манифест. {@code moves} не {@code null} — отметка о начатой записи
+     * с месяцами, куда переносятся расходы.
+     */
+    private void saveManifest(Map<Long, Integer> moves) {
+        Path manifest = directory.resolve(MANIFEST);
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        try {
+            try (JsonWriter out = codec.newWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+                out.beginObject();
+                out.name("version").value(MANIFEST_VERSION);
+                out.name("nextId").value(nextId);
+                out.name("imported").value(imported);
+                if (moves != null) {
+                    out.name("writing").value(true);
+                    out.name("moves").beginArray();
+                    for (Map.Entry<Long, Integer> move : moves.entrySet()) {
+                        out.beginArray().value(move.getKey()).value(nameOf(move.getValue())).endArray();
+                    }
+                    out.endArray();
+                }
+                out.name("segments").beginArray();
+                for (Segment segment : segments.values()) {
+                    out.beginObject();
+                    if (segment.month == UNDATED) {
+                        out.name("month").nullValue();
+                    } else {
+                        out.name("month").value(nameOf(segment.month));
+                    }
+                    out.name("file").value(segment.file);
+                    out.name("count").value(segment.count);
+                    out.endObject();
+                }
+                out.endArray();
+                out.endObject();
+            }
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка записи манифеста JSON-сегментов", e);
+        }
+    }
+
+    private static Reader reader(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private Writer writer(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (compress) {
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /** Ключ месяца {@code год * 12 + месяц - 1}; для расходов без даты — {@link #UNDATED}. */
+    private static int keyOf(LocalDateTime dateTime) {
+        return dateTime == null ? UNDATED : dateTime.getYear() * 12 + dateTime.getMonthValue() - 1;
+    }
+
+    private static int parseKey(String name) {
+        if (UNDATED_NAME.equals(name)) {
+            return UNDATED;
+        }
+        YearMonth month = YearMonth.parse(name);
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static String nameOf(int month) {
+        if (month == UNDATED) {
+            return UNDATED_NAME;
+        }
+        return String.format(Locale.ROOT, "%04d-%02d", month / 12, month % 12 + 1);
+    }
+
+    private static final class Manifest {
+        boolean writing;
+        final Map<Long, Integer> moves = new HashMap<>();
+    }
+
+    private static final class Segment {
+        final int month;
+        final String file;
+        long count;
+
+        Segment(int month, String file, long count) {
+            this.month = month;
+            this.file = file;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.example.expensemanager.data.daoimpl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Небольшой пул JDBC-соединений.
+ * <p>
+ * Каждое соединение кэширует свои {@link PreparedStatement} по тексту запроса.
+ * Соединение, простоявшее без дела дольше {@code validationIntervalMillis},
+ * проверяется через {@link Connection#isValid(int)} перед выдачей; сломанные
+ * соединения закрываются и заменяются новыми. Работает с любым JDBC-драйвером,
+ * поэтому для проверки без сервера подходит H2 в режиме PostgreSQL.
+ */
+public class JdbcConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_ACQUIRE_TIMEOUT_SECONDS = 30;
+    public static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 5_000;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long validationIntervalMillis;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private volatile boolean closed;
+
+    public JdbcConnectionPool(String url, String user, String password, int maxSize) {
+        this(url, user, password, maxSize, DEFAULT_VALIDATION_INTERVAL_MILLIS);
+    }
+
+    public JdbcConnectionPool(String url, String user, String password, int maxSize, long validationIntervalMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Размер пула должен быть положительным: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Выполняет работу на соединении из пула. Если во время работы соединение оказалось
+     * разорванным, оно выбрасывается из пула, и для {@code retryable}-операций работа
+     * повторяется один раз на новом соединении.
+     */
+    public <T> T execute(SqlWork<T> work, boolean retryable) throws SQLException {
+        try {
+            return runOnce(work);
+        } catch (BrokenConnectionException e) {
+            if (!retryable) {
+                throw e.sqlException;
+            }
+        }
+        try {
+            return runOnce(work);
+        } catch (BrokenConnectionException e) {
+            throw e.sqlException;
+        }
+    }
+
+    private <T> T runOnce(SqlWork<T> work) throws SQLException, BrokenConnectionException {
+        PooledConnection connection = acquire();
+        try {
+            T result = work.run(connection);
+            release(connection);
+            return result;
+        } catch (SQLException e) {
+            connection.markIfBroken(e);
+            if (connection.isBroken()) {
+                discard(connection);
+                throw new BrokenConnectionException(e);
+            }
+            release(connection);
+            throw e;
+        } catch (RuntimeException e) {
+            release(connection);
+            throw e;
+        }
+    }
+
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт", "08003");
+        }
+        try {
+            if (!permits.tryAcquire(DEFAULT_ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Превышено время ожидания свободного соединения", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", "08001", e);
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.poll()) != null) {
+                if (connection.isHealthy(validationIntervalMillis)) {
+                    return connection;
+                }
+                connection.closeQuietly();
+            }
+            return new PooledConnection(DriverManager.getConnection(url, user, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(PooledConnection connection) {
+        if (closed) {
+            connection.closeQuietly();
+        } else {
+            connection.touch();
+            idle.offer(connection);
+        }
+        permits.release();
+    }
+
+    public void discard(PooledConnection connection) {
+        connection.closeQuietly();
+        permits.release();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.closeQuietly();
+        }
+    }
+
+    private static class BrokenConnectionException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final SQLException sqlException;
+
+        private BrokenConnectionException(SQLException sqlException) {
+            super(sqlException);
+            this.sqlException = sqlException;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(PooledConnection connection) throws SQLException;
+    }
+
+    /**
+     * Соединение из пула с кэшем подготовленных запросов.
+     */
+    public static class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private long lastUsedMillis = System.currentTimeMillis();
+        private boolean broken;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return prepare(sql, Statement.NO_GENERATED_KEYS);
+        }
+
+        public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+            PreparedStatement stmt = statements.get(key);
+            if (stmt == null || stmt.isClosed()) {
+                stmt = connection.prepareStatement(sql, autoGeneratedKeys);
+                statements.put(key, stmt);
+            } else {
+                stmt.clearParameters();
+            }
+            return stmt;
+        }
+
+        /**
+         * Помечает соединение как сломанное, если ошибка относится к классу 08
+         * (проблемы соединения) или драйвер уже считает его закрытым.
+         */
+        public void markIfBroken(SQLException e) {
+            String state = e.getSQLState();
+            if (state != null && state.startsWith("08")) {
+                broken = true;
+                return;
+            }
+            try {
+                broken = connection.isClosed() || !connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException ignored) {
+                broken = true;
+            }
+        }
+
+        boolean isBroken() {
+            return broken;
+        }
+
+        private boolean isHealthy(long validationIntervalMillis) {
+            if (broken) {
+                return false;
+            }
+            if (System.currentTimeMillis() - lastUsedMillis < validationIntervalMillis) {
+                return true;
+            }
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void touch() {
+            lastUsedMillis = System.currentTimeMillis();
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement stmt : statements.values()) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignored) {
+                    // соединение всё равно закрывается
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // соединение уже недоступно
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package org.example.expensemanager.data.daoimpl;
+
+import java.util.Arrays;
+
+/**
+ * Упорядоченный индекс пар {@code (ключ, id)} на примитивных массивах: пары отсортированы
+ * по ключу, при равном ключе — по id, поэтому порядок полный и совпадает с порядком
+ * сортировки выборок. С каждой парой хранится номер строки владельца, чтобы обход
+ * не искал строку по id.
+ * <p>
+ * Пары лежат в отсортированных блоках ограниченного размера, как листья B-дерева:
+ * блок находится двоичным поиском по отдельному плотному массиву первых пар блоков,
+ * внутри блока — двоичным поиском. Вставка и удаление сдвигают не больше одного блока, обход с любой позиции
+ * в обе стороны стоит O(log n + k). Блок, в котором не осталось пар, удаляется.
+ * <p>
+ * Не потокобезопасен: синхронизация на стороне владельца.
+ */
+class SortedLongIndex {
+    private static final int BLOCK_SIZE = 256;
+
+    private long[][] keys = new long[8][];
+    private long[][] ids = new long[8][];
+    private int[][] rows = new int[8][];
+    private int[] sizes = new int[8];
+    private long[] firstKeys = new long[8];
+    private long[] firstIds = new long[8];
+    private int blockCount;
+    private int size;
+
+    /** Посетитель пар; {@code false} останавливает обход. */
+    @FunctionalInterface
+    interface Visitor {
+        boolean visit(long key, long id, int row);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(long key, long id, int row) {
+        if (blockCount == 0) {
+            insertBlock(0, new long[BLOCK_SIZE], new long[BLOCK_SIZE], new int[BLOCK_SIZE], 0);
+        }
+        int block = blockFor(key, id);
+        if (sizes[block] == BLOCK_SIZE) {
+            split(block);
+            if (compare(key, id, firstKeys[block + 1], firstIds[block + 1]) >= 0) {
+                block++;
+            }
+        }
+        int count = sizes[block];
+        int position = lowerBound(keys[block], ids[block], count, key, id);
+        System.arraycopy(keys[block], position, keys[block], position + 1, count - position);
+        System.arraycopy(ids[block], position, ids[block], position + 1, count - position);
+        System.arraycopy(rows[block], position, rows[block], position + 1, count - position);
+        keys[block][position] = key;
+        ids[block][position] = id;
+        rows[block][position] = row;
+        sizes[block]++;
+        size++;
+        if (position == 0) {
+            updateFirst(block);
+        }
+    }
+
+    /** Удаляет пару; возвращает {@code false}, если её не было. */
+    boolean remove(long key, long id) {
+        int block = find(key, id);
+        if (block < 0) {
+            return false;
+        }
+        int count = sizes[block];
+        int position = lowerBound(keys[block], ids[block], count, key, id);
+        System.arraycopy(keys[block], position + 1, keys[block], position, count - position - 1);
+        System.arraycopy(ids[block], position + 1, ids[block], position, count - position - 1);
+        System.arraycopy(rows[block], position + 1, rows[block], position, count - position - 1);
+        size--;
+        if (--sizes[block] == 0) {
+            removeBlock(block);
+        } else if (position == 0) {
+            updateFirst(block);
+        }
+        return true;
+    }
+
+    /** Меняет номер строки у существующей пары (строка переехала в хранилище). */
+    void move(long key, long id, int row) {
+        int block = find(key, id);
+        if (block >= 0) {
+            rows[block][lowerBound(keys[block], ids[block], sizes[block], key, id)] = row;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0, blockCount, null);
+        Arrays.fill(ids, 0, blockCount, null);
+        Arrays.fill(rows, 0, blockCount, null);
+        blockCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Заменяет содержимое парами {@code (keys[row], ids[row])} для строк
+     * {@code 0..count-1}. Быстрее поштучной вставки: строки сортируются один раз,
+     * блоки заполняются на три четверти, чтобы следующие вставки не делили их сразу.
+     */
+    void rebuild(long[] keys, long[] ids, int count) {
+        clear();
+        long[] sortedKeys = Arrays.copyOf(keys, count);
+        long[] sortedIds = Arrays.copyOf(ids, count);
+        int[] sortedRows = new int[count];
+        for (int row = 0; row < count; row++) {
+            sortedRows[row] = row;
+        }
+        sort(sortedKeys, sortedIds, sortedRows);
+        int fill = BLOCK_SIZE * 3 / 4;
+        for (int start = 0; start < count; start += fill) {
+            int blockSize = Math.min(fill, count - start);
+            long[] blockKeys = new long[BLOCK_SIZE];
+            long[] blockIds = new long[BLOCK_SIZE];
+            int[] blockRows = new int[BLOCK_SIZE];
+            System.arraycopy(sortedKeys, start, blockKeys, 0, blockSize);
+            System.arraycopy(sortedIds, start, blockIds, 0, blockSize);
+            System.arraycopy(sortedRows, start, blockRows, 0, blockSize);
+            insertBlock(blockCount, blockKeys, blockIds, blockRows, blockSize);
+        }
+        size = count;
+    }
+
+    /**
+     * Число пар с ключом из {@code [lowKey, highKey]}: блоки внутри диапазона считаются
+     * целиком, поиск нужен только в крайних.
+     */
+    long countBetween(long lowKey, long highKey) {
+        if (blockCount == 0 || lowKey > highKey) {
+            return 0;
+        }
+        int firstBlock = blockFor(lowKey, Long.MIN_VALUE);
+        int first = lowerBound(keys[firstBlock], ids[firstBlock], sizes[firstBlock], lowKey, Long.MIN_VALUE);
+        int lastBlock = blockFor(highKey, Long.MAX_VALUE);
+        int last = upperBound(keys[lastBlock], ids[lastBlock], sizes[lastBlock], highKey, Long.MAX_VALUE);
+        long count = last - first;
+        for (int block = firstBlock; block < lastBlock; block++) {
+            count += sizes[block];
+        }
+        return Math.max(0, count);
+    }
+
+    /** Пары начиная с первой, не меньшей {@code (key, id)}, по возрастанию. */
+    void ascendingFrom(long key, long id, Visitor visitor) {
+        if (blockCount == 0) {
+            return;
+        }
+        int block = blockFor(key, id);
+        int position = lowerBound(keys[block], ids[block], sizes[block], key, id);
+        for (; block < blockCount; block++, position = 0) {
+            long[] blockKeys = keys[block];
+            long[] blockIds = ids[block];
+            int[] blockRows = rows[block];
+            for (int count = sizes[block]; position < count; position++) {
+                if (!visitor.visit(blockKeys[position], blockIds[position], blockRows[position])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Пары начиная с последней, не большей {@code (key, id)}, по убыванию. */
+    void descendingFrom(long key, long id, Visitor visitor) {
+        if (blockCount == 0) {
+            return;
+        }
+        int block = blockFor(key, id);
+        int position = upperBound(keys[block], ids[block], sizes[block], key, id) - 1;
+        while (block >= 0) {
+            long[] blockKeys = keys[block];
+            long[] blockIds = ids[block];
+            int[] blockRows = rows[block];
+            for (; position >= 0; position--) {
+                if (!visitor.visit(blockKeys[position], blockIds[position], blockRows[position])) {
+                    return;
+                }
+            }
+            if (--block >= 0) {
+                position = sizes[block] - 1;
+            }
+        }
+    }
+
+    /** Блок, содержащий пару, или {@code -1}. */
+    private int find(long key, long id) {
+        if (blockCount == 0) {
+            return -1;
+        }
+        int block = blockFor(key, id);
+        int position = lowerBound(keys[block], ids[block], sizes[block], key, id);
+        boolean found = position < sizes[block] && keys[block][position] == key && ids[block][position] == id;
+        return found ? block : -1;
+    }
+
+    /** Последний блок, первая пара которого не больше {@code (key, id)}, или первый блок. */
+    private int blockFor(long key, long id) {
+        int low = 1;
+        int high = blockCount - 1;
+        int result = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(firstKeys[middle], firstIds[middle], key, id) <= 0) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    private void split(int block) {
+        int half = BLOCK_SIZE / 2;
+        long[] tailKeys = new long[BLOCK_SIZE];
+        long[] tailIds = new long[BLOCK_SIZE];
+        int[] tailRows = new int[BLOCK_SIZE];
+        System.arraycopy(keys[block], half, tailKeys, 0, BLOCK_SIZE - half);
+        System.arraycopy(ids[block], half, tailIds, 0, BLOCK_SIZE - half);
+        System.arraycopy(rows[block], half, tailRows, 0, BLOCK_SIZE - half);
+        sizes[block] = half;
+        insertBlock(block + 1, tailKeys, tailIds, tailRows, BLOCK_SIZE - half);
+    }
+
+    private void insertBlock(int block, long[] blockKeys, long[] blockIds, int[] blockRows, int count) {
+        if (blockCount == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            firstKeys = Arrays.copyOf(firstKeys, capacity);
+            firstIds = Arrays.copyOf(firstIds, capacity);
+        }
+        System.arraycopy(keys, block, keys, block + 1, blockCount - block);
+        System.arraycopy(ids, block, ids, block + 1, blockCount - block);
+        System.arraycopy(rows, block, rows, block + 1, blockCount - block);
+        System.arraycopy(sizes, block, sizes, block + 1, blockCount - block);
+        System.arraycopy(firstKeys, block, firstKeys, block + 1, blockCount - block);
+        System.arraycopy(firstIds, block, firstIds, block + 1, blockCount - block);
+        keys[block] = blockKeys;
+        ids[block] = blockIds;
+        rows[block] = blockRows;
+        sizes[block] = count;
+        updateFirst(block);
+        blockCount++;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(keys, block + 1, keys, block, blockCount - block - 1);
+        System.arraycopy(ids, block + 1, ids, block, blockCount - block - 1);
+        System.arraycopy(rows, block + 1, rows, block, blockCount - block - 1);
+        System.arraycopy(sizes, block + 1, sizes, block, blockCount - block - 1);
+        System.arraycopy(firstKeys, block + 1, firstKeys, block, blockCount - block - 1);
+        System.arraycopy(firstIds, block + 1, firstIds, block, blockCount - block - 1);
+        blockCount--;
+        keys[blockCount] = null;
+        ids[blockCount] = null;
+        rows[blockCount] = null;
+    }
+
+    private void updateFirst(int block) {
+        firstKeys[block] = keys[block][0];
+        firstIds[block] = ids[block][0];
+    }
+
+    /**
+     * Сортировка слиянием трёх параллельных массивов по {@code (keys, ids)}. Значения
+     * переносятся вместе, поэтому слияние читает память последовательно.
+     */
+    private static void sort(long[] keys, long[] ids, int[] rows) {
+        int count = keys.length;
+        long[] fromKeys = keys;
+        long[] fromIds = ids;
+        int[] fromRows = rows;
+        long[] toKeys = new long[count];
+        long[] toIds = new long[count];
+        int[] toRows = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count; low += 2 * width) {
+                int middle = Math.min(low + width, count);
+                int high = Math.min(low + 2 * width, count);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    boolean takeLeft = right >= high || left < middle
+                            && compare(fromKeys[left], fromIds[left], fromKeys[right], fromIds[right]) <= 0;
+                    int from = takeLeft ? left++ : right++;
+                    toKeys[i] = fromKeys[from];
+                    toIds[i] = fromIds[from];
+                    toRows[i] = fromRows[from];
+                }
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+            long[] swapIds = fromIds;
+            fromIds = toIds;
+            toIds = swapIds;
+            int[] swapRows = fromRows;
+            fromRows = toRows;
+            toRows = swapRows;
+        }
+        if (fromKeys != keys) {
+            System.arraycopy(fromKeys, 0, keys, 0, count);
+            System.arraycopy(fromIds, 0, ids, 0, count);
+            System.arraycopy(fromRows, 0, rows, 0, count);
+        }
+    }
+
+    /** Позиция первой пары, не меньшей {@code (key, id)}. */
+    private static int lowerBound(long[] blockKeys, long[] blockIds, int count, long key, long id) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(blockKeys[middle], blockIds[middle], key, id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** Позиция первой пары, большей {@code (key, id)}. */
+    private static int upperBound(long[] blockKeys, long[] blockIds, int count, long key, long id) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(blockKeys[middle], blockIds[middle], key, id) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(long key1, long id1, long key2, long id2) {
+        int byKey = Long.compare(key1, key2);
+        return byKey != 0 ? byKey : Long.compare(id1, id2);
+    }
+}
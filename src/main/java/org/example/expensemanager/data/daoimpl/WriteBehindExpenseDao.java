@@ -0,0 +1,575 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Отложенная запись в PostgreSQL с групповыми коммитами.
+ * <p>
+ * Изменения не уходят в базу сразу, а копятся в очереди, где сворачиваются по id:
+ * несколько изменений одного расхода дают одно, добавление с последующим удалением
+ * взаимно уничтожаются. Очередь сбрасывается одной транзакцией, когда в ней набирается
+ * {@code maxBatch} изменений или через {@code delayMillis} после первого из них.
+ * Новые расходы получают id сразу — из заранее зарезервированного блока
+ * последовательности таблицы.
+ * <p>
+ * Чтение учитывает ещё не записанные изменения (своя запись видна сразу): результат
+ * базы накрывается очередью и сбрасываемой в этот момент пачкой.
+ * <p>
+ * Если транзакция не прошла из-за связи или нагрузки на базу, пачка возвращается в очередь
+ * и повторяется со следующим сбросом. Ошибку, которую повтор не исправит (нарушение
+ * ограничения, неверные данные), пачка не переживает: она отбрасывается, её признак
+ * сохранения завершается этой ошибкой, а получатель узнаёт о ней через
+ * {@link FlushListener#failed}. {@link #whenDurable()} сообщает, когда записанное до вызова сохранено в базе;
+ * при завершении JVM очередь сбрасывается хуком.
+ */
+public class WriteBehindExpenseDao implements ExpenseDao, AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH = 500;
+    public static final long DEFAULT_DELAY_MILLIS = 50;
+
+    private static final System.Logger LOG = System.getLogger(WriteBehindExpenseDao.class.getName());
+    private static final int ID_BLOCK = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5_000;
+
+    /** Отложенное изменение расхода. */
+    private enum Kind { INSERT, UPDATE, DELETE }
+
+    private static final class Change {
+        final Kind kind;
+        final long id;
+        final Expense expense;
+
+        Change(Kind kind, long id, Expense expense) {
+            this.kind = kind;
+            this.id = id;
+            this.expense = expense;
+        }
+
+        /**
+         * Результат последовательного применения {@code older} и {@code newer} или
+         * {@code null}, если они взаимно уничтожаются.
+         */
+        static Change merge(Change older, Change newer) {
+            if (older == null) {
+                return newer;
+            }
+            if (older.kind == Kind.DELETE) {
+                return older;
+            }
+            if (older.kind == Kind.INSERT) {
+                return newer.kind == Kind.DELETE ? null : new Change(Kind.INSERT, newer.id, newer.expense);
+            }
+            return newer;
+        }
+    }
+
+    /**
+     * Получатель событий сброса очереди.
+     */
+    public interface FlushListener {
+        void flushed(int changes);
+
+        void failed(int changes, Throwable error);
+    }
+
+    private final ExpensePostgresDao delegate;
+    private final int maxBatch;
+    private final long delayMillis;
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+    private final Object lock = new Object();
+    // Сбросы идут строго по одному: из потока сброса, при закрытии и из хука завершения
+    private final Object flushLock = new Object();
+    // Чтение берёт снимок очереди и читает базу под общей блокировкой, а сброс фиксирует
+    // пачку под исключающей: иначе чтение увидит пачку и в базе, и в снимке в полёте
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
+
+    private Map<Long, Change> pending = new LinkedHashMap<>();
+    private Map<Long, Change> inFlight = Map.of();
+    private CompletableFuture<Void> pendingDurable = new CompletableFuture<>();
+    private CompletableFuture<Void> inFlightDurable = CompletableFuture.completedFuture(null);
+    private ScheduledFuture<?> scheduledFlush;
+    private final ArrayDeque<Long> reservedIds = new ArrayDeque<>();
+    private long retryDelayMillis;
+    private volatile FlushListener listener;
+    private boolean closed;
+
+    public WriteBehindExpenseDao(ExpensePostgresDao delegate) {
+        this(delegate, DEFAULT_MAX_BATCH, DEFAULT_DELAY_MILLIS);
+    }
+
+    public WriteBehindExpenseDao(ExpensePostgresDao delegate, int maxBatch, long delayMillis) {
+        this.delegate = delegate;
+        this.maxBatch = maxBatch;
+        this.delayMillis = delayMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "postgres-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.shutdownHook = new Thread(this::flushQuietly, "postgres-write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public void setFlushListener(FlushListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Завершается, когда все изменения, поставленные в очередь до вызова, сохранены в базе.
+     */
+    public CompletableFuture<Void> whenDurable() {
+        synchronized (lock) {
+            if (!pending.isEmpty()) {
+                // Очередь сбрасывается после пачки в полёте, а неудачная пачка
+                // возвращается в очередь, поэтому её признак покрывает и пачку
+                return pendingDurable.copy();
+            }
+            return inFlightDurable.copy();
+        }
+    }
+
+    /** Число изменений, ещё не сохранённых в базе. */
+    public int pendingChanges() {
+        synchronized (lock) {
+            return pending.size() + inFlight.size();
+        }
+    }
+
+    @Override
+    public void addExpense(Expense expense) {
+        synchronized (lock) {
+            expense.setId(nextId());
+            enqueue(new Change(Kind.INSERT, expense.getId(), validated(expense)));
+        }
+    }
+
+    @Override
+    public void addExpenses(List<Expense> expenses) {
+        // Пачка проверяется целиком до того, как что-то попадёт в очередь
+        expenses.forEach(WriteBehindExpenseDao::validated);
+        synchronized (lock) {
+            for (Expense expense : expenses) {
+                expense.setId(nextId());
+                enqueue(new Change(Kind.INSERT, expense.getId(), validated(expense)));
+            }
+        }
+    }
+
+    @Override
+    public void updateExpense(Expense expense) {
+        synchronized (lock) {
+            enqueue(new Change(Kind.UPDATE, expense.getId(), validated(expense)));
+        }
+    }
+
+    @Override
+    public void updateExpenses(List<Expense> expenses) {
+        synchronized (lock) {
+            for (Expense expense : expenses) {
+                enqueue(new Change(Kind.UPDATE, expense.getId(), validated(expense)));
+            }
+        }
+    }
+
+    @Override
+    public void deleteExpense(long id) {
+        synchronized (lock) {
+            enqueue(new Change(Kind.DELETE, id, null));
+        }
+    }
+
+    @Override
+    public void deleteExpenses(Collection<Long> ids) {
+        synchronized (lock) {
+            for (long id : ids) {
+                enqueue(new Change(Kind.DELETE, id, null));
+            }
+        }
+    }
+
+    @Override
+    public Optional<Expense> findExpenseById(long id) {
+        return consistentRead(() -> {
+            Change change = overlay().get(id);
+            if (change != null) {
+                return change.kind == Kind.DELETE ? Optional.empty() : Optional.of(new Expense(change.expense));
+            }
+            return delegate.findExpenseById(id);
+        });
+    }
+
+    @Override
+    public List<Expense> getAllExpenses() {
+        return consistentRead(this::readAll);
+    }
+
+    private List<Expense> readAll() {
+        Map<Long, Change> overlay = overlay();
+        List<Expense> stored = delegate.getAllExpenses();
+        if (overlay.isEmpty()) {
+            return stored;
+        }
+        List<Expense> result = new ArrayList<>(stored.size() + overlay.size());
+        for (Expense expense : stored) {
+            if (!overlay.containsKey(expense.getId())) {
+                result.add(expense);
+            }
+        }
+        for (Change change : overlay.values()) {
+            if (change.kind != Kind.DELETE) {
+                result.add(new Expense(change.expense));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Из базы запрашивается на {@code overlay.size()} строк больше: каждая строка очереди
+     * может вытеснить из страницы не больше одной строки базы. Затем строки с отложенными
+     * изменениями заменяются версиями из очереди и страница собирается заново.
+     */
+    @Override
+    public List<Expense> findExpenses(ExpenseQuery query) {
+        return consistentRead(() -> find(query));
+    }
+
+    private List<Expense> find(ExpenseQuery query) {
+        Map<Long, Change> overlay = overlay();
+        if (overlay.isEmpty()) {
+            return delegate.findExpenses(query);
+        }
+        ExpenseQuery widened = query.copy().offset(0);
+        if (query.hasLimit()) {
+            widened.limit(query.getOffset() + query.getLimit() + overlay.size());
+        }
+        List<Expense> merged = new ArrayList<>();
+        for (Expense expense : delegate.findExpenses(widened)) {
+            if (!overlay.containsKey(expense.getId())) {
+                merged.add(expense);
+            }
+        }
+        for (Change change : overlay.values()) {
+            if (change.kind != Kind.DELETE && query.matches(change.expense)) {
+                merged.add(new Expense(change.expense));
+            }
+        }
+        return query.sortAndPage(merged);
+    }
+
+    /**
+     * Счёт базы поправляется на строки очереди: сохранённые версии, подходившие под
+     * запрос, вычитаются, а отложенные версии, подходящие под него, прибавляются.
+     */
+    @Override
+    public long countExpenses(ExpenseQuery query) {
+        return consistentRead(() -> count(query));
+    }
+
+    private long count(ExpenseQuery query) {
+        Map<Long, Change> overlay = overlay();
+        long count = delegate.countExpenses(query);
+        if (overlay.isEmpty()) {
+            return count;
+        }
+        for (Expense stored : delegate.findExpensesByIds(overlay.keySet())) {
+            if (query.matches(stored)) {
+                count--;
+            }
+        }
+        for (Change change : overlay.values()) {
+            if (change.kind != Kind.DELETE && query.matches(change.expense)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int preferredBatchSize() {
+        return delegate.preferredBatchSize();
+    }
+
+    @Override
+    public int maxConcurrentOperations() {
+        return delegate.maxConcurrentOperations();
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return delegate.isInProcess();
+    }
+
+    /**
+     * Сбрасывает очередь и закрывает соединения. Если базу недоступна, несохранённые
+     * изменения теряются, о чём пишется в журнал.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM уже завершается, хук сработает сам
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        delegate.close();
+    }
+
+    private <T> T consistentRead(Supplier<T> read) {
+        commitLock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    /** Изменения, ещё не сохранённые в базе: очередь поверх пачки в полёте. */
+    private Map<Long, Change> overlay() {
+        synchronized (lock) {
+            if (inFlight.isEmpty()) {
+                return pending.isEmpty() ? Map.of() : new HashMap<>(pending);
+            }
+            Map<Long, Change> overlay = new HashMap<>(inFlight);
+            for (Change change : pending.values()) {
+                Change merged = Change.merge(overlay.get(change.id), change);
+                if (merged == null) {
+                    overlay.remove(change.id);
+                } else {
+                    overlay.put(change.id, merged);
+                }
+            }
+            // Вставка из пачки, отменённая удалением в очереди, ещё может оказаться в базе
+            for (Change change : inFlight.values()) {
+                if (!overlay.containsKey(change.id)) {
+                    overlay.put(change.id, new Change(Kind.DELETE, change.id, null));
+                }
+            }
+            return overlay;
+        }
+    }
+
+    private void enqueue(Change change) {
+        if (closed) {
+            throw new IllegalStateException("Хранилище закрыто");
+        }
+        Change merged = Change.merge(pending.get(change.id), change);
+        if (merged == null) {
+            pending.remove(change.id);
+        } else {
+            pending.put(change.id, merged);
+        }
+        if (pending.size() >= maxBatch) {
+            flushNow();
+        } else if (scheduledFlush == null && !pending.isEmpty()) {
+            scheduledFlush = flusher.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Ставит сброс в очередь немедленно. */
+    private void flushNow() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = flusher.isShutdown() ? null : flusher.schedule(this::flush, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Копия расхода для очереди. Ограничения таблицы проверяются сразу: строка, которую
+     * база отвергнет, иначе блокировала бы каждую следующую пачку.
+     */
+    private static Expense validated(Expense expense) {
+        if (expense.getDateTime() == null || expense.getDescription() == null || expense.getCategory() == null) {
+            throw new IllegalArgumentException("У расхода должны быть дата, описание и категория");
+        }
+        if (expense.getDescription().length() > 255 || expense.getCategory().length() > 50) {
+            throw new IllegalArgumentException("Описание длиннее 255 или категория длиннее 50 символов");
+        }
+        if (Math.abs(expense.getAmount()) >= 1e8) {
+            throw new IllegalArgumentException("Сумма не помещается в DECIMAL(10,2): " + expense.getAmount());
+        }
+        return new Expense(expense);
+    }
+
+    private long nextId() {
+        if (reservedIds.isEmpty()) {
+            for (long id : delegate.reserveIds(ID_BLOCK)) {
+                reservedIds.add(id);
+            }
+        }
+        return reservedIds.poll();
+    }
+
+    private void flush() {
+        synchronized (flushLock) {
+            flushBatch();
+        }
+    }
+
+    /** Сбрасывает очередь одной транзакцией. */
+    private void flushBatch() {
+        Map<Long, Change> batch;
+        CompletableFuture<Void> durable;
+        synchronized (lock) {
+            scheduledFlush = null;
+            durable = pendingDurable;
+            pendingDurable = new CompletableFuture<>();
+            if (pending.isEmpty()) {
+                // Все изменения взаимно уничтожились — сохранять нечего
+                durable.complete(null);
+                return;
+            }
+            batch = pending;
+            inFlight = batch;
+            inFlightDurable = durable;
+            pending = new LinkedHashMap<>();
+        }
+
+        List<Expense> inserts = new ArrayList<>();
+        List<Expense> updates = new ArrayList<>();
+        Set<Long> deletes = new HashSet<>();
+        for (Change change : batch.values()) {
+            switch (change.kind) {
+                case INSERT -> inserts.add(change.expense);
+                case UPDATE -> updates.add(change.expense);
+                case DELETE -> deletes.add(change.id);
+            }
+        }
+
+        Throwable error = null;
+        boolean permanent = false;
+        commitLock.writeLock().lock();
+        try {
+            delegate.applyChanges(inserts, updates, deletes);
+        } catch (Exception e) {
+            error = e;
+            permanent = isPermanent(e);
+        } finally {
+            synchronized (lock) {
+                inFlight = Map.of();
+                if (error == null || permanent) {
+                    retryDelayMillis = 0;
+                } else {
+                    requeue(batch, durable);
+                }
+            }
+            commitLock.writeLock().unlock();
+        }
+
+        FlushListener currentListener = listener;
+        if (error == null) {
+            durable.complete(null);
+            if (currentListener != null) {
+                currentListener.flushed(batch.size());
+            }
+            return;
+        }
+        if (permanent) {
+            LOG.log(System.Logger.Level.ERROR, "База отвергла пачку из " + batch.size()
+                    + " изменений, они не сохранены", error);
+            durable.completeExceptionally(error);
+        } else {
+            LOG.log(System.Logger.Level.WARNING, "Не удалось сохранить " + batch.size()
+                    + " изменений, повтор через " + retryDelayMillis + " мс", error);
+        }
+        if (currentListener != null) {
+            currentListener.failed(batch.size(), error);
+        }
+    }
+
+    /**
+     * Ошибка, которую повтор той же транзакции не исправит: SQLState классов 22
+     * (неверные данные), 23 (нарушение ограничения) и 42 (синтаксис, права). Обрыв
+     * связи, конфликт сериализации и нехватка ресурсов считаются временными.
+     */
+    static boolean isPermanent(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof SQLException) {
+                for (SQLException next = (SQLException) e; next != null; next = next.getNextException()) {
+                    String state = next.getSQLState();
+                    if (state != null && (state.startsWith("22") || state.startsWith("23") || state.startsWith("42"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает несохранённую пачку в начало очереди; её признак сохранения завершится
+     * вместе с очередью.
+     */
+    private void requeue(Map<Long, Change> batch, CompletableFuture<Void> durable) {
+        Map<Long, Change> merged = new LinkedHashMap<>(batch);
+        for (Change change : pending.values()) {
+            Change result = Change.merge(merged.get(change.id), change);
+            if (result == null) {
+                merged.remove(change.id);
+            } else {
+                merged.put(change.id, result);
+            }
+        }
+        pending = merged;
+        pendingDurable.whenComplete((ignored, error) -> {
+            if (error == null) {
+                durable.complete(null);
+            } else {
+                durable.completeExceptionally(error);
+            }
+        });
+        retryDelayMillis = Math.min(MAX_RETRY_DELAY_MILLIS, Math.max(delayMillis, retryDelayMillis * 2));
+        if (!flusher.isShutdown() && scheduledFlush == null) {
+            scheduledFlush = flusher.schedule(this::flush, retryDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Синхронный сброс при закрытии и завершении JVM. */
+    private void flushQuietly() {
+        flush();
+        int left;
+        synchronized (lock) {
+            left = pending.size();
+            if (left > 0) {
+                pendingDurable.completeExceptionally(
+                        new IllegalStateException("Изменения не сохранены: база недоступна"));
+            }
+        }
+        if (left > 0) {
+            LOG.log(System.Logger.Level.ERROR, "При закрытии не сохранено изменений: " + left);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.expensemanager.importer;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Выписка в CSV. Разделитель (точка с запятой, запятая или табуляция) определяется по
+ * первой строке. Если первая строка — заголовок, колонки находятся по названиям
+ * («дата», «сумма», «описание», «категория» или английские аналоги), иначе порядок
+ * такой: дата, сумма, описание, необязательная категория. Поля в кавычках могут
+ * содержать разделитель и переводы строк.
+ */
+public class CsvStatementParser implements StatementParser {
+    private final BufferedReader reader;
+    private final List<String> fields = new ArrayList<>();
+    private char delimiter;
+    private int dateColumn = 0;
+    private int amountColumn = 1;
+    private int descriptionColumn = 2;
+    private int categoryColumn = 3;
+    private long lineNumber;
+    private boolean started;
+    private String pendingLine;
+
+    public CsvStatementParser(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public Expense next() throws IOException {
+        if (!started) {
+            started = true;
+            if (!readHeader()) {
+                return null;
+            }
+        }
+        String line;
+        if (pendingLine != null) {
+            line = pendingLine;
+            pendingLine = null;
+        } else {
+            line = nextLine();
+        }
+        while (line != null && line.isBlank()) {
+            line = nextLine();
+        }
+        if (line == null) {
+            return null;
+        }
+        long recordLine = lineNumber;
+        split(line);
+        try {
+            return toExpense();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Строка " + recordLine + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /** Читает первую строку: определяет разделитель и, если это заголовок, колонки. */
+    private boolean readHeader() throws IOException {
+        String first = nextLine();
+        while (first != null && first.isBlank()) {
+            first = nextLine();
+        }
+        if (first == null) {
+            return false;
+        }
+        if (first.startsWith("\uFEFF")) {
+            first = first.substring(1);
+        }
+        delimiter = detectDelimiter(first);
+        split(first);
+        int date = -1;
+        int amount = -1;
+        int description = -1;
+        int category = -1;
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).trim().toLowerCase(Locale.ROOT);
+            if (name.startsWith("дата") || name.startsWith("date")) {
+                date = date < 0 ? i : date;
+            } else if (name.startsWith("сумма") || name.equals("amount")) {
+                amount = amount < 0 ? i : amount;
+            } else if (name.startsWith("описание") || name.startsWith("назначение")
+                    || name.equals("description") || name.equals("memo")) {
+                description = description < 0 ? i : description;
+            } else if (name.startsWith("категория") || name.equals("category")) {
+                category = i;
+            }
+        }
+        if (date < 0 && amount < 0 && description < 0) {
+            // Заголовка нет, первая строка — уже данные
+            pendingLine = first;
+            return true;
+        }
+        if (date < 0 || amount < 0 || description < 0) {
+            throw new IOException("В заголовке CSV нужны колонки даты, суммы и описания: " + first);
+        }
+        dateColumn = date;
+        amountColumn = amount;
+        descriptionColumn = description;
+        categoryColumn = category;
+        return true;
+    }
+
+    private Expense toExpense() {
+        if (fields.size() <= Math.max(dateColumn, Math.max(amountColumn, descriptionColumn))) {
+            throw new IllegalArgumentException("не хватает полей");
+        }
+        String category = categoryColumn >= 0 && categoryColumn < fields.size()
+                ? fields.get(categoryColumn).trim() : null;
+        return new Expense(StatementValues.parseAmount(fields.get(amountColumn)),
+                fields.get(descriptionColumn).trim(),
+                category == null || category.isEmpty() ? null : category,
+                StatementValues.parseDateTime(fields.get(dateColumn)));
+    }
+
+    private static char detectDelimiter(String line) {
+        int semicolons = 0;
+        int commas = 0;
+        int tabs = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == ';') semicolons++;
+                else if (c == ',') commas++;
+                else if (c == '\t') tabs++;
+            }
+        }
+        if (tabs > semicolons && tabs > commas) {
+            return '\t';
+        }
+        return semicolons >= commas && semicolons > 0 ? ';' : ',';
+    }
+
+    /** Разбивает запись на поля; незакрытая кавычка продолжает поле на следующей строке. */
+    private void split(String line) throws IOException {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        String current = line;
+        int i = 0;
+        while (true) {
+            if (i == current.length()) {
+                if (!quoted) {
+                    break;
+                }
+                current = nextLine();
+                if (current == null) {
+                    throw new IllegalArgumentException("незакрытая кавычка");
+                }
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = current.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < current.length() && current.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+
+    private String nextLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineNumber++;
+        }
+        return line;
+    }
+}
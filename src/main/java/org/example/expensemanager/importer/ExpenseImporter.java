@@ -0,0 +1,357 @@
+package org.example.expensemanager.importer;
+
+import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.service.AsyncExpenseService;
+import org.example.expensemanager.service.ExpenseService;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Импорт банковской выписки конвейером:
+ * <ol>
+ *     <li>поток разбора читает файл и собирает расходы в пачки по {@link #CHUNK_SIZE};</li>
+ *     <li>несколько потоков параллельно определяют категории через {@link ExpenseCategoryManager};</li>
+ *     <li>вызывающий поток восстанавливает исходный порядок пачек, собирает их в пачки
+ *     записи по {@link ExpenseService#preferredBatchSize()} и передаёт каждую в
+ *     {@link ExpenseService#addAll(List)}: сервис отбрасывает дубликаты по своему правилу
+ *     и записывает остальное в хранилище одним пакетом. Хранилище, переписывающее файл
+ *     при каждом вызове (JSON), получает весь импорт одним вызовом, иначе запись была бы
+ *     квадратичной по размеру файла. Если импорт идёт параллельно
+ *     с другими изменениями через {@link AsyncExpenseService}, пачки передаются через него,
+ *     чтобы записи выполнялись по очереди.</li>
+ * </ol>
+ * Стадии связаны очередями ограниченной длины, а число пачек в работе ограничено
+ * семафором, поэтому расход памяти ограничен размером пачки записи: для хранилищ,
+ * держащих при записи все данные в памяти, это не больше того, что они держат и так. Некорректные записи
+ * пропускаются и учитываются в {@link ImportProgress#getRejected()}.
+ * <p>
+ * Импорт прерывается, если прервать вызывающий поток.
+ */
+public class ExpenseImporter {
+    static final int CHUNK_SIZE = 2000;
+
+    private static final System.Logger LOG = System.getLogger(ExpenseImporter.class.getName());
+    private static final int LOGGED_ERRORS = 10;
+    private static final Chunk END = new Chunk(-1, List.of());
+    // Как часто запись, ожидая пачку, проверяет, не упала ли другая стадия
+    private static final long FAILURE_CHECK_MS = 200;
+
+    private final Function<List<Expense>, List<Expense>> addAll;
+    private final ExpenseCategoryManager categoryManager;
+    private final int workers;
+    private final int writeBatchSize;
+
+    public ExpenseImporter(ExpenseService service, ExpenseCategoryManager categoryManager) {
+        this(service, categoryManager, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ExpenseImporter(ExpenseService service, ExpenseCategoryManager categoryManager, int workers) {
+        this(service::addAll, categoryManager, workers, service.preferredBatchSize());
+    }
+
+    /** Импорт, пачки которого записываются в очереди изменений {@code service}. */
+    public ExpenseImporter(AsyncExpenseService service, ExpenseCategoryManager categoryManager) {
+        this(chunk -> join(service.addAll(chunk)), categoryManager, Runtime.getRuntime().availableProcessors(),
+                service.getService().preferredBatchSize());
+    }
+
+    private ExpenseImporter(Function<List<Expense>, List<Expense>> addAll,
+                            ExpenseCategoryManager categoryManager, int workers, int writeBatchSize) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один поток категоризации");
+        }
+        if (writeBatchSize < 1) {
+            throw new IllegalArgumentException("Размер пачки записи должен быть положительным");
+        }
+        this.writeBatchSize = writeBatchSize;
+        this.addAll = addAll;
+        this.categoryManager = categoryManager;
+        this.workers = workers;
+    }
+
+    private static <T> T join(CompletableFuture<T> operation) {
+        try {
+            return operation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Импортирует файл, вызывая {@code listener} после записи каждой пачки.
+     *
+     * @return итог импорта
+     */
+    public ImportProgress importFile(Path file, Consumer<ImportProgress> listener) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return importStream(file.getFileName().toString(), in, Files.size(file), listener);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка чтения выписки: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Импортирует выписку из потока; формат определяется по {@code fileName}.
+     *
+     * @param totalBytes размер данных для расчёта доли или {@code -1}
+     */
+    public ImportProgress importStream(String fileName, InputStream in, long totalBytes,
+                                       Consumer<ImportProgress> listener) {
+        CountingInputStream counted = new CountingInputStream(in);
+        Run run = new Run(StatementParser.forFile(fileName, counted), counted, totalBytes, listener);
+        try {
+            return run.execute();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Импорт прерван", e);
+        }
+    }
+
+    /** Пачка расходов с порядковым номером в файле. */
+    private static final class Chunk {
+        final long sequence;
+        final List<Expense> expenses;
+
+        Chunk(long sequence, List<Expense> expenses) {
+            this.sequence = sequence;
+            this.expenses = expenses;
+        }
+    }
+
+    /** Состояние одного импорта. */
+    private final class Run {
+        private final StatementParser parser;
+        private final CountingInputStream input;
+        private final long totalBytes;
+        private final Consumer<ImportProgress> listener;
+
+        private final BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(2 * workers);
+        private final BlockingQueue<Chunk> categorized = new ArrayBlockingQueue<>(2 * workers);
+        // Пачки от разбора до записи: ограничивает и буфер восстановления порядка
+        private final Semaphore inFlight = new Semaphore(4 * workers);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicInteger loggedErrors = new AtomicInteger();
+        private long imported;
+        private long duplicates;
+
+        Run(StatementParser parser, CountingInputStream input, long totalBytes, Consumer<ImportProgress> listener) {
+            this.parser = parser;
+            this.input = input;
+            this.totalBytes = totalBytes;
+            this.listener = listener;
+        }
+
+        ImportProgress execute() throws InterruptedException {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService threads = Executors.newFixedThreadPool(workers + 1, r -> {
+                Thread thread = new Thread(r, "import-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                threads.execute(() -> guard(this::parse));
+                for (int i = 0; i < workers; i++) {
+                    threads.execute(() -> guard(this::categorize));
+                }
+                write();
+            } finally {
+                threads.shutdownNow();
+                try {
+                    parser.close();
+                } catch (IOException e) {
+                    LOG.log(System.Logger.Level.WARNING, "Не удалось закрыть выписку", e);
+                }
+            }
+            return progress();
+        }
+
+        private void parse() throws IOException, InterruptedException {
+            long sequence = 0;
+            List<Expense> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (true) {
+                Expense expense;
+                try {
+                    expense = parser.next();
+                } catch (IllegalArgumentException e) {
+                    reject(e);
+                    continue;
+                }
+                if (expense == null) {
+                    break;
+                }
+                chunk.add(expense);
+                if (chunk.size() == CHUNK_SIZE) {
+                    inFlight.acquire();
+                    parsed.put(new Chunk(sequence++, chunk));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                inFlight.acquire();
+                parsed.put(new Chunk(sequence, chunk));
+            }
+            for (int i = 0; i < workers; i++) {
+                parsed.put(END);
+            }
+        }
+
+        private void categorize() throws InterruptedException {
+            while (true) {
+                Chunk chunk = parsed.take();
+                if (chunk == END) {
+                    categorized.put(END);
+                    return;
+                }
+                for (Expense expense : chunk.expenses) {
+                    if (expense.getCategory() == null || expense.getCategory().isEmpty()) {
+                        expense.setCategory(categoryManager.determineCategory(
+                                expense.getDescription(), expense.getAmount()));
+                    }
+                }
+                categorized.put(chunk);
+            }
+        }
+
+        /** Пишет пачки в исходном порядке, чтобы из дубликатов оставался первый по файлу. */
+        private void write() throws InterruptedException {
+            Map<Long, Chunk> waiting = new HashMap<>();
+            List<Expense> pending = new ArrayList<>();
+            long next = 0;
+            int finished = 0;
+            while (finished < workers) {
+                Chunk chunk = categorized.poll(FAILURE_CHECK_MS, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    // Упавшая стадия могла не дослать маркеры конца: очередь была полна
+                    rethrowFailure();
+                    continue;
+                }
+                if (chunk == END) {
+                    finished++;
+                    continue;
+                }
+                waiting.put(chunk.sequence, chunk);
+                Chunk ready;
+                while ((ready = waiting.remove(next)) != null) {
+                    pending.addAll(ready.expenses);
+                    next++;
+                    inFlight.release();
+                    flush(pending, false);
+                    if (listener != null) {
+                        listener.accept(progress());
+                    }
+                }
+                rethrowFailure();
+            }
+            rethrowFailure();
+            flush(pending, true);
+            if (listener != null) {
+                listener.accept(progress());
+            }
+        }
+
+        /** Записывает полные пачки из {@code pending}, а с {@code all} — и остаток. */
+        private void flush(List<Expense> pending, boolean all) {
+            while (pending.size() >= writeBatchSize || all && !pending.isEmpty()) {
+                List<Expense> batch = pending.subList(0, Math.min(writeBatchSize, pending.size()));
+                List<Expense> skipped = addAll.apply(new ArrayList<>(batch));
+                duplicates += skipped.size();
+                imported += batch.size() - skipped.size();
+                batch.clear();
+            }
+        }
+
+        private void guard(StageWork work) {
+            try {
+                work.run();
+            } catch (InterruptedException e) {
+                // Импорт остановлен
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                // Стадии после упавшей ждут маркеров конца; досылаем их. В полную очередь
+                // маркеры не войдут — тогда ошибку заметит опрос в write()
+                for (int i = 0; i < workers; i++) {
+                    categorized.offer(END);
+                }
+            }
+        }
+
+        private void rethrowFailure() {
+            Throwable error = failure.get();
+            if (error != null) {
+                throw new RuntimeException("Ошибка импорта: " + error.getMessage(), error);
+            }
+        }
+
+        private void reject(IllegalArgumentException e) {
+            rejected.incrementAndGet();
+            if (loggedErrors.getAndIncrement() < LOGGED_ERRORS) {
+                LOG.log(System.Logger.Level.WARNING, "Запись выписки пропущена: " + e.getMessage());
+            }
+        }
+
+        private ImportProgress progress() {
+            return new ImportProgress(input.count(), totalBytes, imported, duplicates, rejected.get());
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageWork {
+        void run() throws Exception;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong count = new AtomicLong();
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.expensemanager.importer;
+
+/**
+ * Состояние импорта на момент снимка.
+ */
+public class ImportProgress {
+    private final long bytesRead;
+    private final long totalBytes;
+    private final long imported;
+    private final long duplicates;
+    private final long rejected;
+
+    public ImportProgress(long bytesRead, long totalBytes, long imported, long duplicates, long rejected) {
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.imported = imported;
+        this.duplicates = duplicates;
+        this.rejected = rejected;
+    }
+
+    public long getBytesRead() { return bytesRead; }
+
+    /** Размер файла или {@code -1}, если он неизвестен. */
+    public long getTotalBytes() { return totalBytes; }
+
+    /** Записано в хранилище. */
+    public long getImported() { return imported; }
+
+    /** Отброшено как дубликаты. */
+    public long getDuplicates() { return duplicates; }
+
+    /** Пропущено из-за ошибок формата. */
+    public long getRejected() { return rejected; }
+
+    /** Доля прочитанного файла от 0 до 1 или {@code -1}, если размер неизвестен. */
+    public double getFraction() {
+        return totalBytes > 0 ? Math.min(1.0, (double) bytesRead / totalBytes) : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "импортировано " + imported + ", дубликатов " + duplicates + ", пропущено " + rejected;
+    }
+}
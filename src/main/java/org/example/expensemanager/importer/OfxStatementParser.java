@@ -0,0 +1,154 @@
+package org.example.expensemanager.importer;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+
+/**
+ * Выписка в OFX (SGML-вариант 1.x и XML-вариант 2.x). Из каждой операции
+ * {@code <STMTTRN>} берутся дата {@code DTPOSTED}, сумма {@code TRNAMT} и описание
+ * {@code NAME} (или {@code MEMO}). Импортируются только списания — операции
+ * с отрицательной суммой; поступления пропускаются. Значение тега читается до
+ * следующего тега или конца строки, поэтому файл разбирается построчно.
+ */
+public class OfxStatementParser implements StatementParser {
+    private final BufferedReader reader;
+    private String line;
+    private int position;
+    private long lineNumber;
+
+    private boolean inTransaction;
+    private String posted;
+    private String amount;
+    private String name;
+    private String memo;
+
+    public OfxStatementParser(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public Expense next() throws IOException {
+        String tag;
+        while ((tag = nextTag()) != null) {
+            switch (tag) {
+                case "STMTTRN" -> {
+                    inTransaction = true;
+                    posted = amount = name = memo = null;
+                }
+                case "/STMTTRN" -> {
+                    if (inTransaction) {
+                        inTransaction = false;
+                        Expense expense = toExpense();
+                        if (expense != null) {
+                            return expense;
+                        }
+                    }
+                }
+                case "DTPOSTED" -> posted = value();
+                case "TRNAMT" -> amount = value();
+                case "NAME" -> name = value();
+                case "MEMO" -> memo = value();
+                default -> {
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /** Расход из собранных полей операции или {@code null} для поступления. */
+    private Expense toExpense() {
+        try {
+            if (posted == null || amount == null) {
+                throw new IllegalArgumentException("у операции нет DTPOSTED или TRNAMT");
+            }
+            if (!amount.trim().startsWith("-")) {
+                return null;
+            }
+            String description = name != null && !name.isEmpty() ? name : memo;
+            return new Expense(StatementValues.parseAmount(amount),
+                    description == null ? "" : description,
+                    null,
+                    parseOfxDate(posted));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** {@code yyyyMMdd[HHmm[ss[.XXX]]][[смещение:зона]]}; часовой пояс отбрасывается. */
+    static LocalDateTime parseOfxDate(String text) {
+        String value = text.trim();
+        if (value.length() < 8) {
+            throw new IllegalArgumentException("Некорректная дата: " + text);
+        }
+        try {
+            int year = StatementValues.digits(value, 0, 4);
+            int month = StatementValues.digits(value, 4, 2);
+            int day = StatementValues.digits(value, 6, 2);
+            int hour = 0;
+            int minute = 0;
+            int second = 0;
+            if (value.length() >= 12 && Character.isDigit(value.charAt(8))) {
+                hour = StatementValues.digits(value, 8, 2);
+                minute = StatementValues.digits(value, 10, 2);
+                if (value.length() >= 14 && Character.isDigit(value.charAt(12))) {
+                    second = StatementValues.digits(value, 12, 2);
+                }
+            }
+            return LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Некорректная дата: " + text);
+        }
+    }
+
+    /** Имя следующего тега в верхнем регистре или {@code null} в конце файла. */
+    private String nextTag() throws IOException {
+        while (true) {
+            if (line == null || position >= line.length()) {
+                line = reader.readLine();
+                position = 0;
+                if (line == null) {
+                    return null;
+                }
+                lineNumber++;
+                continue;
+            }
+            int open = line.indexOf('<', position);
+            if (open < 0) {
+                position = line.length();
+                continue;
+            }
+            int close = line.indexOf('>', open + 1);
+            if (close < 0) {
+                position = line.length();
+                continue;
+            }
+            position = close + 1;
+            return line.substring(open + 1, close).trim().toUpperCase();
+        }
+    }
+
+    /** Текст после только что прочитанного тега до следующего тега или конца строки. */
+    private String value() {
+        int end = line.indexOf('<', position);
+        String text = line.substring(position, end < 0 ? line.length() : end);
+        position = end < 0 ? line.length() : end;
+        return unescape(text.trim());
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.expensemanager.importer;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Потоковый разбор банковской выписки: записи читаются по одной, файл целиком
+ * в память не загружается.
+ */
+public interface StatementParser extends Closeable {
+    /**
+     * Следующий расход или {@code null} в конце выписки.
+     *
+     * @throws IllegalArgumentException если запись некорректна; разбор можно продолжить
+     *                                  со следующей записи
+     */
+    Expense next() throws IOException;
+
+    /**
+     * Разборщик по расширению файла: {@code .ofx} и {@code .qfx} — OFX, остальное — CSV.
+     * Выписка читается в UTF-8.
+     */
+    static StatementParser forFile(String fileName, InputStream in) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ofx") || name.endsWith(".qfx")) {
+            return new OfxStatementParser(reader);
+        }
+        return new CsvStatementParser(reader);
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.expensemanager.importer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Разбор сумм и дат из выписок. Даты разбираются вручную, без {@code DateTimeFormatter}:
+ * на миллионах строк это заметно быстрее.
+ */
+final class StatementValues {
+    private StatementValues() {
+    }
+
+    /**
+     * Сумма без знака: банки записывают списания отрицательными. Допускаются десятичная
+     * запятая и пробелы между разрядами.
+     */
+    static double parseAmount(String text) {
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',') {
+                digits.append('.');
+            } else if (c != ' ' && c != '\u00A0' && c != '\'') {
+                digits.append(c);
+            }
+        }
+        try {
+            return Math.abs(Double.parseDouble(digits.toString()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректная сумма: " + text);
+        }
+    }
+
+    /**
+     * Дата в форматах {@code yyyy-MM-dd} или {@code dd.MM.yyyy}, за которой через пробел
+     * или {@code T} может идти время {@code HH:mm[:ss]}.
+     */
+    static LocalDateTime parseDateTime(String text) {
+        String value = text.trim();
+        try {
+            int year;
+            int month;
+            int day;
+            if (value.length() >= 10 && value.charAt(4) == '-' && value.charAt(7) == '-') {
+                year = digits(value, 0, 4);
+                month = digits(value, 5, 2);
+                day = digits(value, 8, 2);
+            } else if (value.length() >= 10 && value.charAt(2) == '.' && value.charAt(5) == '.') {
+                day = digits(value, 0, 2);
+                month = digits(value, 3, 2);
+                year = digits(value, 6, 4);
+            } else {
+                throw new IllegalArgumentException("Некорректная дата: " + text);
+            }
+            int hour = 0;
+            int minute = 0;
+            int second = 0;
+            if (value.length() > 10) {
+                char separator = value.charAt(10);
+                if ((separator != ' ' && separator != 'T') || value.length() < 16 || value.charAt(13) != ':') {
+                    throw new IllegalArgumentException("Некорректное время: " + text);
+                }
+                hour = digits(value, 11, 2);
+                minute = digits(value, 14, 2);
+                if (value.length() >= 19 && value.charAt(16) == ':') {
+                    second = digits(value, 17, 2);
+                }
+            }
+            return LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (java.time.DateTimeException e) {
+            throw new IllegalArgumentException("Некорректная дата: " + text);
+        }
+    }
+
+    static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Ожидалась цифра: " + text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
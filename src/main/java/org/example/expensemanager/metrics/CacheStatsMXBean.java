@@ -0,0 +1,26 @@
+package org.example.expensemanager.metrics;
+
+/**
+ * Показатели кэша хранилища, публикуемые через JMX.
+ */
+public interface CacheStatsMXBean {
+    long getIdHits();
+
+    long getIdMisses();
+
+    long getQueryHits();
+
+    long getQueryMisses();
+
+    long getEvictions();
+
+    long getInvalidations();
+
+    int getCachedExpenses();
+
+    int getCachedQueries();
+
+    long getCachedRows();
+
+    double getHitRate();
+}
@@ -0,0 +1,153 @@
+package org.example.expensemanager.metrics;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * DAO-обёртка, замеряющая каждую операцию: время, ошибки и число переданных строк.
+ * Показатели группируются по классу исходного DAO.
+ */
+public class InstrumentedExpenseDao implements ExpenseDao, AutoCloseable {
+    private final ExpenseDao delegate;
+    private final OperationStats add;
+    private final OperationStats update;
+    private final OperationStats delete;
+    private final OperationStats getAll;
+    private final OperationStats findById;
+    private final OperationStats find;
+    private final OperationStats count;
+    private final OperationStats addBatch;
+    private final OperationStats updateBatch;
+    private final OperationStats deleteBatch;
+
+    public InstrumentedExpenseDao(ExpenseDao delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        String component = delegate.getClass().getSimpleName();
+        this.add = registry.operation(component, "addExpense");
+        this.update = registry.operation(component, "updateExpense");
+        this.delete = registry.operation(component, "deleteExpense");
+        this.getAll = registry.operation(component, "getAllExpenses");
+        this.findById = registry.operation(component, "findExpenseById");
+        this.find = registry.operation(component, "findExpenses");
+        this.count = registry.operation(component, "countExpenses");
+        this.addBatch = registry.operation(component, "addExpenses");
+        this.updateBatch = registry.operation(component, "updateExpenses");
+        this.deleteBatch = registry.operation(component, "deleteExpenses");
+    }
+
+    public ExpenseDao getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void addExpense(Expense expense) {
+        run(add, () -> delegate.addExpense(expense));
+        add.addRows(1);
+    }
+
+    @Override
+    public void updateExpense(Expense expense) {
+        run(update, () -> delegate.updateExpense(expense));
+        update.addRows(1);
+    }
+
+    @Override
+    public void deleteExpense(long id) {
+        run(delete, () -> delegate.deleteExpense(id));
+    }
+
+    @Override
+    public List<Expense> getAllExpenses() {
+        List<Expense> result = call(getAll, delegate::getAllExpenses);
+        getAll.addRows(result.size());
+        return result;
+    }
+
+    @Override
+    public Optional<Expense> findExpenseById(long id) {
+        Optional<Expense> result = call(findById, () -> delegate.findExpenseById(id));
+        findById.addRows(result.isPresent() ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public List<Expense> findExpenses(ExpenseQuery query) {
+        List<Expense> result = call(find, () -> delegate.findExpenses(query));
+        find.addRows(result.size());
+        return result;
+    }
+
+    @Override
+    public long countExpenses(ExpenseQuery query) {
+        return call(count, () -> delegate.countExpenses(query));
+    }
+
+    @Override
+    public void addExpenses(List<Expense> expenses) {
+        run(addBatch, () -> delegate.addExpenses(expenses));
+        addBatch.addRows(expenses.size());
+    }
+
+    @Override
+    public void updateExpenses(List<Expense> expenses) {
+        run(updateBatch, () -> delegate.updateExpenses(expenses));
+        updateBatch.addRows(expenses.size());
+    }
+
+    @Override
+    public void deleteExpenses(Collection<Long> ids) {
+        run(deleteBatch, () -> delegate.deleteExpenses(ids));
+        deleteBatch.addRows(ids.size());
+    }
+
+    @Override
+    public int preferredBatchSize() {
+        return delegate.preferredBatchSize();
+    }
+
+    @Override
+    public int maxConcurrentOperations() {
+        return delegate.maxConcurrentOperations();
+    }
+
+    @Override
+    public boolean isInProcess() {
+        return delegate.isInProcess();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable) {
+            ((AutoCloseable) delegate).close();
+        }
+    }
+
+    static <T> T call(OperationStats stats, Supplier<T> operation) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = operation.get();
+            failed = false;
+            return result;
+        } finally {
+            stats.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    static void run(OperationStats stats, Runnable operation) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            operation.run();
+            failed = false;
+        } finally {
+            stats.record(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.expensemanager.metrics;
+
+import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.example.expensemanager.business.MonthlyAggregates;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.example.expensemanager.service.ExpenseService;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.example.expensemanager.metrics.InstrumentedExpenseDao.call;
+import static org.example.expensemanager.metrics.InstrumentedExpenseDao.run;
+
+/**
+ * Сервис, замеряющий каждую публичную операцию {@link ExpenseService}: время, ошибки
+ * (в том числе отказы из-за дубликатов) и число строк.
+ */
+public class InstrumentedExpenseService extends ExpenseService {
+    private static final String COMPONENT = "ExpenseService";
+
+    private final OperationStats getAll;
+    private final OperationStats find;
+    private final OperationStats count;
+    private final OperationStats search;
+    private final OperationStats add;
+    private final OperationStats addAll;
+    private final OperationStats update;
+    private final OperationStats updateAll;
+    private final OperationStats delete;
+    private final OperationStats deleteAll;
+    private final OperationStats aggregates;
+
+    public InstrumentedExpenseService(ExpenseDao dao, ExpenseCategoryManager categoryManager, MetricsRegistry registry) {
+        super(dao, categoryManager);
+        this.getAll = registry.operation(COMPONENT, "getAll");
+        this.find = registry.operation(COMPONENT, "find");
+        this.count = registry.operation(COMPONENT, "count");
+        this.search = registry.operation(COMPONENT, "search");
+        this.add = registry.operation(COMPONENT, "add");
+        this.addAll = registry.operation(COMPONENT, "addAll");
+        this.update = registry.operation(COMPONENT, "update");
+        this.updateAll = registry.operation(COMPONENT, "updateAll");
+        this.delete = registry.operation(COMPONENT, "delete");
+        this.deleteAll = registry.operation(COMPONENT, "deleteAll");
+        this.aggregates = registry.operation(COMPONENT, "getMonthlyAggregates");
+    }
+
+    @Override
+    public List<Expense> getAll() {
+        List<Expense> result = call(getAll, super::getAll);
+        getAll.addRows(result.size());
+        return result;
+    }
+
+    @Override
+    public List<Expense> find(ExpenseQuery query) {
+        List<Expense> result = call(find, () -> super.find(query));
+        find.addRows(result.size());
+        return result;
+    }
+
+    @Override
+    public long count(ExpenseQuery query) {
+        return call(count, () -> super.count(query));
+    }
+
+    @Override
+    public List<Expense> search(String text) {
+        List<Expense> result = call(search, () -> super.search(text));
+        search.addRows(result.size());
+        return result;
+    }
+
+    @Override
+    public void add(Expense expense) {
+        run(add, () -> super.add(expense));
+        add.addRows(1);
+    }
+
+    @Override
+    public List<Expense> addAll(List<Expense> expenses) {
+        List<Expense> duplicates = call(addAll, () -> super.addAll(expenses));
+        addAll.addRows(expenses.size() - duplicates.size());
+        return duplicates;
+    }
+
+    @Override
+    public void update(Expense expense) {
+        run(update, () -> super.update(expense));
+        update.addRows(1);
+    }
+
+    @Override
+    public void updateAll(List<Expense> expenses) {
+        run(updateAll, () -> super.updateAll(expenses));
+        updateAll.addRows(expenses.size());
+    }
+
+    @Override
+    public void delete(long id) {
+        run(delete, () -> super.delete(id));
+    }
+
+    @Override
+    public void deleteAll(Collection<Long> ids) {
+        run(deleteAll, () -> super.deleteAll(ids));
+        deleteAll.addRows(ids.size());
+    }
+
+    @Override
+    public MonthlyAggregates getMonthlyAggregates() {
+        return call(aggregates, super::getMonthlyAggregates);
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.expensemanager.metrics;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.example.expensemanager.data.CachingExpenseDao;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.service.ExpenseService;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реестр показателей операций DAO и сервиса.
+ * <p>
+ * Включается в {@code config.env}: {@code METRICS_ENABLED=true}. Каждая операция
+ * публикуется в JMX как {@code org.example.expensemanager:type=Operation,component=...,name=...};
+ * раз в {@code METRICS_DUMP_INTERVAL_SEC} секунд (по умолчанию 60) сводка пишется в журнал
+ * и, если задан {@code METRICS_CSV_PATH}, дописывается в CSV-файл. Выключенный реестр
+ * ничего не оборачивает, поэтому накладных расходов не добавляет.
+ */
+public class MetricsRegistry implements AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(MetricsRegistry.class.getName());
+    private static final String DOMAIN = "org.example.expensemanager";
+    private static final String CSV_HEADER =
+            "time,component,operation,calls,errors,rows,mean_us,p50_us,p99_us,p999_us,max_us";
+
+    private final boolean enabled;
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final MBeanServer mBeanServer;
+    private final Path csvPath;
+    private final ScheduledExecutorService dumper;
+
+    private MetricsRegistry(boolean enabled, long dumpIntervalSeconds, Path csvPath) {
+        this.enabled = enabled;
+        this.csvPath = csvPath;
+        this.mBeanServer = enabled ? ManagementFactory.getPlatformMBeanServer() : null;
+        if (enabled && dumpIntervalSeconds > 0) {
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(this::dump, dumpIntervalSeconds, dumpIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            dumper = null;
+        }
+    }
+
+    public static MetricsRegistry disabled() {
+        return new MetricsRegistry(false, 0, null);
+    }
+
+    public static MetricsRegistry enabled(long dumpIntervalSeconds, Path csvPath) {
+        return new MetricsRegistry(true, dumpIntervalSeconds, csvPath);
+    }
+
+    /**
+     * Реестр по настройкам {@code config.env}.
+     */
+    public static MetricsRegistry fromConfig() {
+        Dotenv dotenv = Dotenv.configure()
+                .filename("config.env")
+                .load();
+        if (!Boolean.parseBoolean(dotenv.get("METRICS_ENABLED", "false"))) {
+            return disabled();
+        }
+        long interval = Long.parseLong(dotenv.get("METRICS_DUMP_INTERVAL_SEC", "60"));
+        String csv = dotenv.get("METRICS_CSV_PATH");
+        return enabled(interval, csv == null || csv.isEmpty() ? null : Paths.get(csv));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Оборачивает DAO замером операций; при выключенных метриках возвращает его как есть.
+     * Показатели кэша ({@link CachingExpenseDao}) публикуются в JMX как
+     * {@code org.example.expensemanager:type=Cache}.
+     */
+    public ExpenseDao instrument(ExpenseDao dao) {
+        if (!enabled) {
+            return dao;
+        }
+        if (dao instanceof CachingExpenseDao) {
+            registerCache((CachingExpenseDao) dao);
+        }
+        return new InstrumentedExpenseDao(dao, this);
+    }
+
+    /** Создаёт сервис с замером операций или обычный, если метрики выключены. */
+    public ExpenseService createService(ExpenseDao dao, ExpenseCategoryManager categoryManager) {
+        return enabled ? new InstrumentedExpenseService(dao, categoryManager, this)
+                : new ExpenseService(dao, categoryManager);
+    }
+
+    /**
+     * Показатели операции; создаются и регистрируются в JMX при первом обращении.
+     */
+    public OperationStats operation(String component, String operation) {
+        return operations.computeIfAbsent(component + '.' + operation, key -> {
+            OperationStats stats = new OperationStats(component, operation);
+            register(stats);
+            return stats;
+        });
+    }
+
+    public List<OperationStats> getOperations() {
+        List<OperationStats> result = new ArrayList<>(operations.values());
+        result.sort((a, b) -> (a.getComponent() + '.' + a.getOperation())
+                .compareTo(b.getComponent() + '.' + b.getOperation()));
+        return result;
+    }
+
+    /** Пишет сводку в журнал и, если задан файл, в CSV. */
+    public void dump() {
+        List<OperationStats> snapshot = getOperations();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        String time = LocalDateTime.now().withNano(0).toString();
+        List<String> lines = new ArrayList<>(snapshot.size());
+        StringBuilder log = new StringBuilder("Метрики операций:");
+        for (OperationStats stats : snapshot) {
+            lines.add(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f",
+                    time, stats.getComponent(), stats.getOperation(), stats.getCalls(), stats.getErrors(),
+                    stats.getRows(), stats.getMeanMicros(), stats.getP50Micros(), stats.getP99Micros(),
+                    stats.getP999Micros(), stats.getMaxMicros()));
+            log.append(String.format(Locale.ROOT, "%n  %s.%s: вызовов %d, ошибок %d, строк %d, p50 %.1f мкс, p99 %.1f мкс, p999 %.1f мкс",
+                    stats.getComponent(), stats.getOperation(), stats.getCalls(), stats.getErrors(), stats.getRows(),
+                    stats.getP50Micros(), stats.getP99Micros(), stats.getP999Micros()));
+        }
+        LOG.log(System.Logger.Level.INFO, log.toString());
+        if (csvPath != null) {
+            writeCsv(lines);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dump();
+        }
+    }
+
+    private void writeCsv(List<String> lines) {
+        try {
+            boolean newFile = !Files.exists(csvPath) || Files.size(csvPath) == 0;
+            try (Writer writer = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (newFile) {
+                    writer.write(CSV_HEADER);
+                    writer.write(System.lineSeparator());
+                }
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write(System.lineSeparator());
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.WARNING, "Не удалось записать метрики в " + csvPath, e);
+        }
+    }
+
+    private void registerCache(CachingExpenseDao cache) {
+        CacheStatsMXBean view = new CacheStatsMXBean() {
+            @Override public long getIdHits() { return cache.getStats().getIdHits(); }
+            @Override public long getIdMisses() { return cache.getStats().getIdMisses(); }
+            @Override public long getQueryHits() { return cache.getStats().getQueryHits(); }
+            @Override public long getQueryMisses() { return cache.getStats().getQueryMisses(); }
+            @Override public long getEvictions() { return cache.getStats().getEvictions(); }
+            @Override public long getInvalidations() { return cache.getStats().getInvalidations(); }
+            @Override public int getCachedExpenses() { return cache.getStats().getCachedExpenses(); }
+            @Override public int getCachedQueries() { return cache.getStats().getCachedQueries(); }
+            @Override public long getCachedRows() { return cache.getStats().getCachedRows(); }
+            @Override public double getHitRate() { return cache.getStats().getHitRate(); }
+        };
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Cache");
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(new StandardMBean(view, CacheStatsMXBean.class, true), name);
+        } catch (JMException e) {
+            LOG.log(System.Logger.Level.WARNING, "Не удалось зарегистрировать MBean кэша", e);
+        }
+    }
+
+    private void register(OperationStats stats) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Operation,component="
+                    + ObjectName.quote(stats.getComponent()) + ",name=" + ObjectName.quote(stats.getOperation()));
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(stats, name);
+        } catch (JMException e) {
+            LOG.log(System.Logger.Level.WARNING, "Не удалось зарегистрировать MBean " + stats.getOperation(), e);
+        }
+    }
+}
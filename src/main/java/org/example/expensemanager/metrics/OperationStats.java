@@ -0,0 +1,68 @@
+package org.example.expensemanager.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики одной операции: вызовы, ошибки, переданные строки и гистограмма задержек.
+ */
+public class OperationStats implements OperationStatsMXBean {
+    private final String component;
+    private final String operation;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    OperationStats(String component, String operation) {
+        this.component = component;
+        this.operation = operation;
+    }
+
+    public String getComponent() { return component; }
+
+    public String getOperation() { return operation; }
+
+    public void record(long nanos, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram.record(nanos);
+    }
+
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+    @Override
+    public long getCalls() { return calls.sum(); }
+
+    @Override
+    public long getErrors() { return errors.sum(); }
+
+    @Override
+    public long getRows() { return rows.sum(); }
+
+    @Override
+    public double getMeanMicros() {
+        long count = calls.sum();
+        return count == 0 ? 0 : totalNanos.sum() / 1000.0 / count;
+    }
+
+    @Override
+    public double getMaxMicros() { return maxNanos.get() / 1000.0; }
+
+    @Override
+    public double getP50Micros() { return histogram.percentile(50) / 1000.0; }
+
+    @Override
+    public double getP99Micros() { return histogram.percentile(99) / 1000.0; }
+
+    @Override
+    public double getP999Micros() { return histogram.percentile(99.9) / 1000.0; }
+}
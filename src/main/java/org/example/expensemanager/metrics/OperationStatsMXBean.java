@@ -0,0 +1,22 @@
+package org.example.expensemanager.metrics;
+
+/**
+ * Показатели одной операции, публикуемые через JMX. Время — в микросекундах.
+ */
+public interface OperationStatsMXBean {
+    long getCalls();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanMicros();
+
+    double getMaxMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+}
@@ -0,0 +1,193 @@
+package org.example.expensemanager.service;
+
+import org.example.expensemanager.business.MonthlyAggregates;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронная обёртка над {@link ExpenseService}: каждая операция выполняется в фоне
+ * и возвращает {@link CompletableFuture}.
+ * <p>
+ * Операции идут на виртуальных потоках, если их поддерживает JVM (Java 21+), иначе —
+ * на пуле обычных потоков размером с лимит хранилища. Одновременно выполняется не
+ * больше {@link ExpenseDao#maxConcurrentOperations()} операций, остальные ждут
+ * в очереди, не занимая потоков платформы. Изменения выполняются по одному, чтобы
+ * проверка дубликатов и обновление индексов сервиса не перемешивались.
+ * <p>
+ * Отмена результата ({@link CompletableFuture#cancel(boolean)}) снимает операцию,
+ * которая ещё не начала выполняться. Начатую операцию хранилища не прерываем:
+ * прерывание закрывает файловые каналы, а запись в середине осталась бы частичной.
+ */
+public class AsyncExpenseService implements AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(AsyncExpenseService.class.getName());
+
+    private final ExpenseService service;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Semaphore writePermit = new Semaphore(1, true);
+
+    public AsyncExpenseService(ExpenseService service, ExpenseDao dao) {
+        this(service, dao.maxConcurrentOperations());
+    }
+
+    public AsyncExpenseService(ExpenseService service, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Лимит одновременных операций должен быть положительным");
+        }
+        this.service = service;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = newExecutor(maxConcurrency);
+    }
+
+    public ExpenseService getService() {
+        return service;
+    }
+
+    public CompletableFuture<List<Expense>> getAll() {
+        return read(service::getAll);
+    }
+
+    public CompletableFuture<List<Expense>> find(ExpenseQuery query) {
+        return read(() -> service.find(query));
+    }
+
+    public CompletableFuture<Long> count(ExpenseQuery query) {
+        return read(() -> service.count(query));
+    }
+
+    public CompletableFuture<List<Expense>> search(String text) {
+        return read(() -> service.search(text));
+    }
+
+    public CompletableFuture<MonthlyAggregates> getMonthlyAggregates() {
+        return read(service::getMonthlyAggregates);
+    }
+
+    /** Завершается с {@link IllegalArgumentException}, если расход — дубликат. */
+    public CompletableFuture<Void> add(Expense expense) {
+        return write(() -> service.add(expense));
+    }
+
+    /** @return расходы, отброшенные как дубликаты */
+    public CompletableFuture<List<Expense>> addAll(List<Expense> expenses) {
+        return submit(() -> service.addAll(expenses), true);
+    }
+
+    public CompletableFuture<Void> update(Expense expense) {
+        return write(() -> service.update(expense));
+    }
+
+    public CompletableFuture<Void> updateAll(List<Expense> expenses) {
+        return write(() -> service.updateAll(expenses));
+    }
+
+    public CompletableFuture<Void> delete(long id) {
+        return write(() -> service.delete(id));
+    }
+
+    public CompletableFuture<Void> deleteAll(Collection<Long> ids) {
+        return write(() -> service.deleteAll(ids));
+    }
+
+    /**
+     * Перестаёт принимать операции; уже поставленные выполняются до конца.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Ждёт окончания операций, поставленных до {@link #close()}.
+     *
+     * @return {@code false}, если время ожидания истекло
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private <T> CompletableFuture<T> read(Supplier<T> operation) {
+        return submit(operation, false);
+    }
+
+    private CompletableFuture<Void> write(Runnable operation) {
+        return submit(() -> {
+            operation.run();
+            return null;
+        }, true);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation, boolean modifies) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> run(operation, modifies, result));
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private <T> void run(Supplier<T> operation, boolean modifies, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            if (modifies) {
+                writePermit.acquire();
+            }
+            try {
+                permits.acquire();
+                try {
+                    // Пока ждали очереди, операцию могли отменить
+                    if (!result.isDone()) {
+                        result.complete(operation.get());
+                    }
+                } finally {
+                    permits.release();
+                }
+            } finally {
+                if (modifies) {
+                    writePermit.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Исполнитель на виртуальных потоках, если он есть в этой версии Java. Метод ищется
+     * через рефлексию, чтобы сборка оставалась совместимой с Java 17.
+     */
+    private static ExecutorService newExecutor(int platformThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOG.log(System.Logger.Level.DEBUG, "Виртуальные потоки недоступны, используется пул потоков");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, r -> {
+            Thread thread = new Thread(r, "expense-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.expensemanager.service;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Индекс для поиска дубликатов расходов.
+ * <p>
+ * Дубликатом считается расход с той же суммой и тем же описанием без учёта регистра,
+ * отстоящий не более чем на 60 минут ({@link ChronoUnit#MINUTES}). Записи группируются
+ * по ключу (сумма, описание в свёрнутом регистре), внутри ключа — по часовым корзинам.
+ * Два момента, между которыми меньше 61 минуты, лежат в корзинах, отличающихся не более
+ * чем на 2, поэтому проверка смотрит пять корзин и затем сверяет кандидатов по
+ * исходному правилу.
+ */
+public class DuplicateIndex {
+    private static final long WINDOW_MINUTES = 60;
+    private static final int BUCKET_RADIUS = 2;
+
+    private final Map<Key, Map<Long, List<Entry>>> buckets = new HashMap<>();
+    private final Map<Long, Entry> byId = new HashMap<>();
+
+    public DuplicateIndex() {
+    }
+
+    public DuplicateIndex(Iterable<Expense> expenses) {
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    public synchronized boolean containsDuplicate(Expense expense) {
+        if (expense.getDescription() == null || expense.getDateTime() == null) {
+            return false;
+        }
+        Map<Long, List<Entry>> byBucket = buckets.get(Key.of(expense));
+        if (byBucket == null) {
+            return false;
+        }
+        long bucket = bucketOf(expense.getDateTime());
+        for (long b = bucket - BUCKET_RADIUS; b <= bucket + BUCKET_RADIUS; b++) {
+            List<Entry> entries = byBucket.get(b);
+            if (entries == null) {
+                continue;
+            }
+            for (Entry entry : entries) {
+                if (entry.matches(expense)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Добавляет расход в индекс. Расход без id (ещё не сохранённый) участвует в проверке,
+     * но не может быть удалён или обновлён по id.
+     */
+    public synchronized void add(Expense expense) {
+        if (expense.getDescription() == null || expense.getDateTime() == null) {
+            return;
+        }
+        Entry entry = new Entry(expense);
+        if (entry.id != 0) {
+            remove(entry.id);
+            byId.put(entry.id, entry);
+        }
+        buckets.computeIfAbsent(entry.key, k -> new HashMap<>())
+                .computeIfAbsent(entry.bucket, b -> new ArrayList<>(1))
+                .add(entry);
+    }
+
+    public synchronized void update(Expense expense) {
+        remove(expense.getId());
+        add(expense);
+    }
+
+    public synchronized void remove(long id) {
+        Entry entry = byId.remove(id);
+        if (entry == null) {
+            return;
+        }
+        Map<Long, List<Entry>> byBucket = buckets.get(entry.key);
+        List<Entry> entries = byBucket.get(entry.bucket);
+        entries.remove(entry);
+        if (entries.isEmpty()) {
+            byBucket.remove(entry.bucket);
+            if (byBucket.isEmpty()) {
+                buckets.remove(entry.key);
+            }
+        }
+    }
+
+    private static long bucketOf(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    /**
+     * Свёртка регистра, совпадающая с {@link String#equalsIgnoreCase(String)}: символы
+     * равны без учёта регистра тогда и только тогда, когда равны их свёртки.
+     */
+    private static String fold(String text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c)) {
+                return foldCodePoints(text);
+            }
+            chars[i] = Character.toLowerCase(Character.toUpperCase(c));
+        }
+        return new String(chars);
+    }
+
+    /** Медленный путь для строк с символами вне BMP. */
+    private static String foldCodePoints(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        text.codePoints().forEach(cp -> folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp))));
+        return folded.toString();
+    }
+
+    private static final class Key {
+        private final double amount;
+        private final String description;
+
+        private Key(double amount, String description) {
+            // -0.0 == 0.0, поэтому приводим к одному ключу
+            this.amount = amount + 0.0;
+            this.description = description;
+        }
+
+        static Key of(Expense expense) {
+            return new Key(expense.getAmount(), fold(expense.getDescription()));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Double.compare(amount, key.amount) == 0 && description.equals(key.description);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(amount, description);
+        }
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final Key key;
+        private final long bucket;
+        private final double amount;
+        private final String description;
+        private final LocalDateTime dateTime;
+
+        private Entry(Expense expense) {
+            this.id = expense.getId();
+            this.key = Key.of(expense);
+            this.bucket = bucketOf(expense.getDateTime());
+            this.amount = expense.getAmount();
+            this.description = expense.getDescription();
+            this.dateTime = expense.getDateTime();
+        }
+
+        boolean matches(Expense expense) {
+            boolean sameAmount = amount == expense.getAmount();
+            boolean sameDesc = description.equalsIgnoreCase(expense.getDescription());
+            long minutes = ChronoUnit.MINUTES.between(dateTime, expense.getDateTime());
+            return sameAmount && sameDesc && Math.abs(minutes) <= WINDOW_MINUTES;
+        }
+    }
+}
@@ -1,50 +1,228 @@
 package org.example.expensemanager.service;
 
 import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.example.expensemanager.business.MonthlyAggregates;
+import org.example.expensemanager.business.SpendingReport;
+import org.example.expensemanager.business.SpendingReportEngine;
+import org.example.expensemanager.data.ExpenseChange;
+import org.example.expensemanager.data.ExpenseChangeListener;
 import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.example.expensemanager.data.ObservableExpenseDao;
 import org.example.expensemanager.business.model.Expense;
 
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * Операции над расходами поверх хранилища. Индексы сервиса (дубликаты, помесячные
+ * суммы, поиск) обновляются по событиям {@link ObservableExpenseDao} сервиса. Записи
+ * напрямую в исходное хранилище событий не дают, и индексы о них не узнают: писать
+ * нужно через сервис или через ту же обёртку.
+ */
 public class ExpenseService {
-    private final ExpenseDao dao;
+    private final ObservableExpenseDao dao;
     private final ExpenseCategoryManager categoryManager;
+    private DuplicateIndex duplicateIndex;
+    private MonthlyAggregates monthlyAggregates;
+    private TrigramIndex searchIndex;
 
     public ExpenseService(ExpenseDao dao, ExpenseCategoryManager categoryManager) {
-        this.dao = dao;
+        this.dao = ObservableExpenseDao.of(dao);
         this.categoryManager = categoryManager;
+        this.dao.addChangeListener(this::applyChanges);
+    }
+
+    /**
+     * Подписывает на изменения хранилища сервиса. Подписчик вызывается после того, как
+     * индексы сервиса уже учли изменение.
+     */
+    public void addChangeListener(ExpenseChangeListener listener) {
+        dao.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(ExpenseChangeListener listener) {
+        dao.removeChangeListener(listener);
     }
 
     public List<Expense> getAll() {
         return dao.getAllExpenses();
     }
 
-    public void add(Expense expense) {
-        // Проверка дубликатов
-        for (Expense existing : dao.getAllExpenses()) {
-            boolean sameAmount = existing.getAmount() == expense.getAmount();
-            boolean sameDesc = existing.getDescription().equalsIgnoreCase(expense.getDescription());
-            long minutes = ChronoUnit.MINUTES.between(existing.getDateTime(), expense.getDateTime());
-            if (sameAmount && sameDesc && Math.abs(minutes) <= 60) {
-                throw new IllegalArgumentException("Дубликат расхода найден в пределах 1 часа");
+    /**
+     * Выборка по запросу. Для хранилища в памяти процесса ({@link ExpenseDao#isInProcess()})
+     * запрос с поиском по тексту от трёх символов отбирается через {@link TrigramIndex},
+     * остальные условия применяются к найденным строкам. Базе данных запрос передаётся
+     * целиком: индекс потребовал бы загрузить всю таблицу и не видел бы чужих изменений.
+     */
+    public List<Expense> find(ExpenseQuery query) {
+        if (usesSearchIndex(query)) {
+            return query.apply(searchIndex().search(query.getText()));
+        }
+        return dao.findExpenses(query);
+    }
+
+    public long count(ExpenseQuery query) {
+        if (usesSearchIndex(query)) {
+            long count = 0;
+            for (Expense expense : searchIndex().search(query.getText())) {
+                if (query.matches(expense)) {
+                    count++;
+                }
             }
+            return count;
         }
+        return dao.countExpenses(query);
+    }
 
-        // Категоризация
-        if (expense.getCategory() == null || expense.getCategory().isEmpty()) {
-            String autoCategory = categoryManager.determineCategory(expense.getDescription(), expense.getAmount());
-            expense.setCategory(autoCategory);
+    /**
+     * Расходы, содержащие подстроку в описании, категории или сумме (без учёта регистра).
+     */
+    public List<Expense> search(String text) {
+        if (!dao.isInProcess()) {
+            return dao.findExpenses(new ExpenseQuery().text(text));
         }
+        return searchIndex().search(text);
+    }
 
+    public void add(Expense expense) {
+        // Проверка дубликатов
+        if (duplicateIndex().containsDuplicate(expense)) {
+            throw new IllegalArgumentException("Дубликат расхода найден в пределах 1 часа");
+        }
+
+        categorize(expense);
         dao.addExpense(expense);
     }
 
+    /**
+     * Добавляет пачку расходов: дубликаты (в том числе внутри самой пачки) пропускаются,
+     * остальное пишется одним вызовом {@link ExpenseDao#addExpenses(List)}.
+     *
+     * @return расходы, отброшенные как дубликаты
+     */
+    public List<Expense> addAll(List<Expense> expenses) {
+        DuplicateIndex index = duplicateIndex();
+        DuplicateIndex pending = new DuplicateIndex();
+        List<Expense> accepted = new ArrayList<>();
+        List<Expense> duplicates = new ArrayList<>();
+
+        for (Expense expense : expenses) {
+            if (index.containsDuplicate(expense) || pending.containsDuplicate(expense)) {
+                duplicates.add(expense);
+                continue;
+            }
+            categorize(expense);
+            accepted.add(expense);
+            pending.add(expense);
+        }
+
+        dao.addExpenses(accepted);
+        return duplicates;
+    }
+
+    /** Размер пачки для {@link #addAll(List)}, удобный хранилищу сервиса. */
+    public int preferredBatchSize() {
+        return dao.preferredBatchSize();
+    }
+
     public void update(Expense expense) {
         dao.updateExpense(expense);
     }
 
+    public void updateAll(List<Expense> expenses) {
+        dao.updateExpenses(expenses);
+    }
+
     public void delete(long id) {
         dao.deleteExpense(id);
     }
+
+    public void deleteAll(Collection<Long> ids) {
+        dao.deleteExpenses(ids);
+    }
+
+    /**
+     * Индекс строится один раз при первом обращении — при смене источника данных
+     * создаётся новый сервис, а вместе с ним и новый индекс. Пока индекс не построен,
+     * изменения его не касаются: при построении он прочитает их из хранилища.
+     */
+    private synchronized DuplicateIndex duplicateIndex() {
+        if (duplicateIndex == null) {
+            duplicateIndex = new DuplicateIndex(dao.getAllExpenses());
+        }
+        return duplicateIndex;
+    }
+
+    /**
+     * Помесячные суммы, поддерживаемые при каждом изменении хранилища.
+     */
+    public synchronized MonthlyAggregates getMonthlyAggregates() {
+        if (monthlyAggregates == null) {
+            monthlyAggregates = MonthlyAggregates.of(dao);
+        }
+        return monthlyAggregates;
+    }
+
+    /**
+     * Сводка по категориям и периодам за всю историю; строится заново при каждом вызове
+     * в общем пуле потоков.
+     */
+    public SpendingReport buildReport() {
+        return new SpendingReportEngine().build(dao);
+    }
+
+    /**
+     * Поисковый индекс строится при первом поиске; до этого изменения его не касаются.
+     */
+    private synchronized TrigramIndex searchIndex() {
+        if (searchIndex == null) {
+            searchIndex = new TrigramIndex(dao.getAllExpenses());
+        }
+        return searchIndex;
+    }
+
+    /** Переносит изменения хранилища в уже построенные индексы; стоимость — O(изменений). */
+    private void applyChanges(List<ExpenseChange> changes) {
+        DuplicateIndex duplicates;
+        MonthlyAggregates aggregates;
+        TrigramIndex trigrams;
+        synchronized (this) {
+            duplicates = duplicateIndex;
+            aggregates = monthlyAggregates;
+            trigrams = searchIndex;
+        }
+        for (ExpenseChange change : changes) {
+            Expense expense = change.getExpense();
+            switch (change.getType()) {
+                case ADDED -> {
+                    if (duplicates != null) duplicates.add(expense);
+                    if (aggregates != null) aggregates.add(expense);
+                    if (trigrams != null) trigrams.add(expense);
+                }
+                case UPDATED -> {
+                    if (duplicates != null) duplicates.update(expense);
+                    if (aggregates != null) aggregates.update(expense);
+                    if (trigrams != null) trigrams.update(expense);
+                }
+                case REMOVED -> {
+                    if (duplicates != null) duplicates.remove(change.getId());
+                    if (aggregates != null) aggregates.remove(change.getId());
+                    if (trigrams != null) trigrams.remove(change.getId());
+                }
+            }
+        }
+    }
+
+    private boolean usesSearchIndex(ExpenseQuery query) {
+        return query.getText() != null && query.getText().length() >= 3 && dao.isInProcess();
+    }
+
+    private void categorize(Expense expense) {
+        if (expense.getCategory() == null || expense.getCategory().isEmpty()) {
+            String autoCategory = categoryManager.determineCategory(expense.getDescription(), expense.getAmount());
+            expense.setCategory(autoCategory);
+        }
+    }
 }
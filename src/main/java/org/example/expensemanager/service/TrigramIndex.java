@@ -0,0 +1,224 @@
+package org.example.expensemanager.service;
+
+import org.example.expensemanager.business.model.Expense;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Индекс подстрочного поиска по расходам на триграммах.
+ * <p>
+ * Ищет то же, что и фильтр таблицы: подстроку без учёта регистра в описании, категории
+ * или строковом представлении суммы. Для каждого расхода хранится копия и строка поиска
+ * из этих трёх полей через разделитель, которого нет в запросах, а для каждой триграммы
+ * строки — список документов, где она встречается. Запрос длиной от трёх символов
+ * пересекает списки своих триграмм, начиная с самого короткого, и сверяет оставшихся
+ * кандидатов прямым поиском подстроки, поэтому время поиска зависит от числа
+ * кандидатов, а не от размера таблицы. Более короткие запросы проверяются перебором.
+ * <p>
+ * Документы нумеруются по порядку добавления, и списки остаются отсортированными.
+ * Изменение расхода добавляет новый документ, а старый помечается удалённым; когда
+ * удалённых становится больше живых, индекс перестраивается.
+ */
+public class TrigramIndex {
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final int MIN_REBUILD_DOCS = 1024;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Long, Integer> docById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private Expense[] docs = new Expense[1024];
+    private String[] texts = new String[1024];
+    private int docCount;
+
+    public TrigramIndex() {
+    }
+
+    public TrigramIndex(Iterable<Expense> expenses) {
+        for (Expense expense : expenses) {
+            add(expense);
+        }
+    }
+
+    public synchronized void add(Expense expense) {
+        Integer previous = docById.get(expense.getId());
+        if (previous != null) {
+            deleted.set(previous);
+        }
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docCount * 2);
+            texts = Arrays.copyOf(texts, docCount * 2);
+        }
+        int doc = docCount++;
+        String text = searchText(expense);
+        docs[doc] = new Expense(expense);
+        texts[doc] = text;
+        docById.put(expense.getId(), doc);
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            long trigram = trigram(text, i);
+            if (trigram >= 0) {
+                // Повтор триграммы в той же строке уже стоит последним в списке
+                postings.computeIfAbsent(trigram, t -> new Postings()).addIfLast(doc);
+            }
+        }
+        rebuildIfNeeded();
+    }
+
+    public synchronized void update(Expense expense) {
+        add(expense);
+    }
+
+    public synchronized void remove(long id) {
+        Integer doc = docById.remove(id);
+        if (doc != null) {
+            deleted.set(doc);
+            docs[doc] = null;
+            texts[doc] = null;
+            rebuildIfNeeded();
+        }
+    }
+
+    public synchronized int size() {
+        return docById.size();
+    }
+
+    /**
+     * Расходы, содержащие подстроку {@code text} (без учёта регистра) в описании,
+     * категории или сумме, в порядке добавления в индекс. Возвращаются копии.
+     */
+    public synchronized List<Expense> search(String text) {
+        String needle = text.toLowerCase();
+        List<Expense> result = new ArrayList<>();
+        if (needle.length() < 3) {
+            for (int doc = 0; doc < docCount; doc++) {
+                if (!deleted.get(doc) && texts[doc].contains(needle)) {
+                    result.add(new Expense(docs[doc]));
+                }
+            }
+            return result;
+        }
+
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            trigrams.add(trigram(needle, i));
+        }
+        List<Postings> lists = new ArrayList<>(trigrams.size());
+        for (long trigram : trigrams) {
+            Postings list = trigram < 0 ? null : postings.get(trigram);
+            if (list == null) {
+                return result;
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        Postings smallest = lists.get(0);
+        int[] cursors = new int[lists.size()];
+        candidates:
+        for (int i = 0; i < smallest.size; i++) {
+            int doc = smallest.docs[i];
+            if (deleted.get(doc)) {
+                continue;
+            }
+            for (int l = 1; l < lists.size(); l++) {
+                Postings other = lists.get(l);
+                cursors[l] = other.seek(doc, cursors[l]);
+                if (cursors[l] >= other.size) {
+                    break candidates;
+                }
+                if (other.docs[cursors[l]] != doc) {
+                    continue candidates;
+                }
+            }
+            // Триграммы совпали, но могли стоять не подряд — сверяем подстроку
+            if (texts[doc].contains(needle)) {
+                result.add(new Expense(docs[doc]));
+            }
+        }
+        return result;
+    }
+
+    private static String searchText(Expense expense) {
+        StringBuilder text = new StringBuilder();
+        if (expense.getDescription() != null) {
+            text.append(expense.getDescription().toLowerCase());
+        }
+        text.append(FIELD_SEPARATOR);
+        if (expense.getCategory() != null) {
+            text.append(expense.getCategory().toLowerCase());
+        }
+        text.append(FIELD_SEPARATOR).append(expense.getAmount());
+        return text.toString();
+    }
+
+    /** Триграмма как число или {@code -1}, если она пересекает границу полей. */
+    private static long trigram(String text, int start) {
+        char a = text.charAt(start);
+        char b = text.charAt(start + 1);
+        char c = text.charAt(start + 2);
+        if (a == FIELD_SEPARATOR || b == FIELD_SEPARATOR || c == FIELD_SEPARATOR) {
+            return -1;
+        }
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private void rebuildIfNeeded() {
+        int dead = docCount - docById.size();
+        if (dead < MIN_REBUILD_DOCS || dead <= docById.size()) {
+            return;
+        }
+        Expense[] live = new Expense[docById.size()];
+        int n = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (!deleted.get(doc)) {
+                live[n++] = docs[doc];
+            }
+        }
+        postings.clear();
+        docById.clear();
+        deleted.clear();
+        docs = new Expense[Math.max(1024, live.length * 2)];
+        texts = new String[docs.length];
+        docCount = 0;
+        for (Expense expense : live) {
+            add(expense);
+        }
+    }
+
+    /** Отсортированный список номеров документов. */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        void addIfLast(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        /** Первая позиция не раньше {@code from}, где номер не меньше {@code doc}: галопом, затем двоичным поиском. */
+        int seek(int doc, int from) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && docs[high] < doc) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            int i = Arrays.binarySearch(docs, low, high, doc);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+}
@@ -1,32 +1,53 @@
 package org.example.expensemanager.ui;
 
+import org.example.expensemanager.data.ExpenseChange;
 import org.example.expensemanager.data.ExpenseDao;
 import org.example.expensemanager.data.ExpenseDaoFactory;
+import org.example.expensemanager.data.ExpenseQuery;
 import org.example.expensemanager.business.model.Expense;
 import org.example.expensemanager.business.model.ExpenseStatus;
 import org.example.expensemanager.business.BudgetForecast;
 import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.example.expensemanager.importer.ExpenseImporter;
+import org.example.expensemanager.importer.ImportProgress;
+import org.example.expensemanager.metrics.MetricsRegistry;
+import org.example.expensemanager.service.AsyncExpenseService;
 import org.example.expensemanager.service.ExpenseService;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.collections.FXCollections;
+import javafx.scene.layout.HBox;
+import javafx.collections.ObservableList;
+import javafx.util.Duration;
+import javafx.stage.FileChooser;
 import javafx.util.StringConverter;
 
+import java.io.File;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static javafx.scene.control.Alert.AlertType;
 
 public class Controller {
+    private static final System.Logger LOG = System.getLogger(Controller.class.getName());
+    private static final Duration REFRESH_DEBOUNCE = Duration.millis(250);
+    private static final long DRAIN_TIMEOUT_MIN = 1;
 
     @FXML private TableView<Expense> expenseTable;
     @FXML private TextField amountField;
@@ -39,22 +60,49 @@ public class Controller {
     @FXML private ChoiceBox<String> sortChoiceBox;
     @FXML private LineChart<String, Number> forecastChart;
     @FXML private Spinner<LocalTime> timeSpinner;
+    @FXML private Button importButton;
+    @FXML private ProgressBar importProgressBar;
+    @FXML private HBox actionsBox;
 
     private ExpenseDao expenseDao;
+    // Источник, для которого открыто expenseDao (значение списка источников)
+    private String storageSource;
     private ExpenseDaoFactory daoFactory;
     private ExpenseCategoryManager categoryManager;
     private ExpenseService expenseService;
-
+    private AsyncExpenseService asyncService;
+    private MetricsRegistry metrics;
+    private BudgetForecast shownForecast;
+    private boolean busy;
+    // Идущий импорт выписки; кнопка импорта неактивна, пока он не закончится
+    private Task<ImportProgress> importTask;
+
+    // Выборка для таблицы выполняется в фоне; устаревшие запросы отменяются
+    private final ExecutorService tableRefreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "table-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Перезагрузка таблицы после ввода фильтра и после изменений, которые нельзя
+    // применить к загруженным строкам (например, пачек импорта)
+    private final PauseTransition refreshDebounce = new PauseTransition(REFRESH_DEBOUNCE);
+    private Task<ObservableList<Expense>> tableRefreshTask;
+    // Открытие хранилищ и загрузка правил категорий при запуске и смене источника
+    private final ExecutorService storageExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "storage-open");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Окно показывается сразу: правила категорий и хранилище загружаются параллельно
+     * в фоне, а до их готовности кнопки действий неактивны.
+     */
     @FXML
     public void initialize() {
         daoFactory = new ExpenseDaoFactory();
-        categoryManager = new ExpenseCategoryManager("categories.json");
-        expenseDao = daoFactory.createMemoryDao();
-        expenseService = new ExpenseService(expenseDao, categoryManager);
-
-        categoryChoiceBox.getItems().addAll(categoryManager.getAvailableCategories());
 
-        dataSourceChoiceBox.getItems().addAll("Память", "PostgreSQL", "JSON");
+        dataSourceChoiceBox.getItems().addAll("Память", "PostgreSQL", "JSON", "Двоичный файл");
         dataSourceChoiceBox.setValue("Память");
 
         sortChoiceBox.getItems().addAll("По дате (новые)", "По дате (старые)",
@@ -66,9 +114,180 @@ public class Controller {
         setupEventHandlers();
         datePicker.setValue(LocalDate.now());
 
+        setBusy(true);
+        expenseTable.setPlaceholder(new Label("Загрузка..."));
+        CompletableFuture<ExpenseCategoryManager> categories = CompletableFuture.supplyAsync(() -> {
+            ExpenseCategoryManager manager = new ExpenseCategoryManager("categories.json");
+            StartupTimeline.mark("правила категорий");
+            return manager;
+        }, storageExecutor);
+        String source = dataSourceChoiceBox.getValue();
+        CompletableFuture<ExpenseDao> storage = CompletableFuture.supplyAsync(() -> {
+            ExpenseDao dao = openStorage(source);
+            StartupTimeline.mark("хранилище");
+            return dao;
+        }, storageExecutor);
+        categories.thenAcceptBoth(storage, (manager, dao) -> Platform.runLater(() -> {
+            categoryManager = manager;
+            categoryChoiceBox.getItems().addAll(manager.getAvailableCategories());
+            useStorage(dao, source);
+            expenseTable.setPlaceholder(new Label("Нет расходов"));
+            setBusy(false);
+        })).exceptionally(error -> {
+            Platform.runLater(() -> showAlert(AlertType.ERROR, "Ошибка",
+                    "Не удалось запустить приложение: " + rootCause(error).getMessage()));
+            return null;
+        });
+    }
+
+    /** Создаёт хранилище для выбранного источника; вызывается не из потока JavaFX. */
+    private ExpenseDao openStorage(String source) {
+        ExpenseDao dao = switch (source) {
+            case "PostgreSQL" -> daoFactory.createPostgresDao();
+            case "JSON" -> daoFactory.createJsonDao();
+            case "Двоичный файл" -> daoFactory.createBinaryDao();
+            default -> daoFactory.createMemoryDao();
+        };
+        return metrics().instrument(dao);
+    }
+
+    private void useStorage(ExpenseDao dao, String source) {
+        expenseDao = dao;
+        storageSource = source;
+        ExpenseService service = metrics().createService(dao, categoryManager);
+        service.addChangeListener(changes -> Platform.runLater(() -> {
+            if (service == expenseService) {
+                applyChanges(changes);
+            }
+        }));
+        expenseService = service;
+        asyncService = new AsyncExpenseService(service, dao);
+        shownForecast = null;
+        forecastChart.getData().clear();
         updateTableView();
     }
 
+    /**
+     * Переключает таблицу и операции на хранилище {@code source}. Прежнее сначала
+     * закрывается в фоне, когда закончатся обращающиеся к нему импорт, фоновые операции
+     * и загрузка страниц таблицы, и только потом открывается новое: файловые хранилища
+     * держат в памяти следующий id и состояние файлов, и два открытых экземпляра над
+     * одними файлами затирали бы записи друг друга. Если новое хранилище не открылось,
+     * открывается прежний источник. Пока идёт переключение, окно занято.
+     */
+    private void switchStorage(String source) {
+        ExpenseDao oldDao = expenseDao;
+        String oldSource = storageSource;
+        AsyncExpenseService oldAsync = asyncService;
+        Task<ImportProgress> runningImport = importTask;
+        // Изменения прежнего сервиса больше не попадают в таблицу, новые выборки не запускаются
+        expenseService = null;
+        refreshDebounce.stop();
+        if (tableRefreshTask != null) {
+            tableRefreshTask.cancel(true);
+        }
+        if (expenseTable.getItems() instanceof PagedExpenseList) {
+            ((PagedExpenseList) expenseTable.getItems()).detach();
+        }
+        CompletableFuture.supplyAsync(() -> {
+            if (runningImport != null) {
+                try {
+                    runningImport.get();
+                } catch (Exception e) {
+                    // Ошибку импорта показывает его обработчик
+                }
+            }
+            oldAsync.close();
+            awaitDrain(oldAsync);
+            StorageSwitch result = new StorageSwitch();
+            result.closeError = closeDao(oldDao);
+            try {
+                result.dao = openStorage(source);
+                result.source = source;
+            } catch (RuntimeException e) {
+                result.openError = e;
+                result.dao = openStorage(oldSource);
+                result.source = oldSource;
+            }
+            return result;
+        }, storageExecutor).whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                // Не открылся и прежний источник: работать не с чем, можно выбрать другой.
+                // Прежнее хранилище уже закрыто
+                expenseDao = null;
+                selectDataSourceButton.setDisable(false);
+                showAlert(AlertType.ERROR, "Ошибка", "Не удалось открыть хранилище: " + rootCause(error).getMessage());
+                return;
+            }
+            dataSourceChoiceBox.setValue(result.source);
+            useStorage(result.dao, result.source);
+            setBusy(false);
+            if (result.closeError != null) {
+                showAlert(AlertType.WARNING, "Предупреждение",
+                        "Не удалось закрыть хранилище: " + result.closeError.getMessage());
+            }
+            if (result.openError != null) {
+                showAlert(AlertType.ERROR, "Ошибка", rootCause(result.openError).getMessage());
+            }
+        }));
+    }
+
+    /** Ждёт операций закрываемого сервиса и уже поставленных загрузок страниц таблицы. */
+    private void awaitDrain(AsyncExpenseService oldAsync) {
+        try {
+            if (!oldAsync.awaitTermination(DRAIN_TIMEOUT_MIN, TimeUnit.MINUTES)) {
+                LOG.log(System.Logger.Level.WARNING, "Операции прежнего хранилища не завершились за "
+                        + DRAIN_TIMEOUT_MIN + " мин, оно закрывается");
+            }
+            // Исполнитель таблицы однопоточный: пустая задача выполнится после всех поставленных
+            CompletableFuture.runAsync(() -> { }, tableRefreshExecutor)
+                    .get(DRAIN_TIMEOUT_MIN, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.log(System.Logger.Level.WARNING, "Не дождались загрузки таблицы из прежнего хранилища", e);
+        }
+    }
+
+    /**
+     * Переносит изменения хранилища в таблицу и прогноз без перечитывания данных.
+     * Если выборка для таблицы ещё идёт, она перезапускается, чтобы учесть изменения.
+     */
+    private void applyChanges(List<ExpenseChange> changes) {
+        if (tableRefreshTask != null && !tableRefreshTask.isDone()) {
+            updateTableView();
+        } else if (!(expenseTable.getItems() instanceof PagedExpenseList)
+                || !((PagedExpenseList) expenseTable.getItems()).applyChanges(changes)) {
+            refreshDebounce.playFromStart();
+        }
+        if (shownForecast != null) {
+            // Помесячные суммы сервис уже обновил
+            showForecast(shownForecast);
+        }
+    }
+
+    private synchronized MetricsRegistry metrics() {
+        if (metrics == null) {
+            metrics = MetricsRegistry.fromConfig();
+        }
+        return metrics;
+    }
+
+    private void setBusy(boolean busy) {
+        this.busy = busy;
+        selectDataSourceButton.setDisable(busy);
+        importButton.setDisable(busy || importTask != null);
+        actionsBox.setDisable(busy);
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
     private void setupTimeSpinner() {
         SpinnerValueFactory<LocalTime> valueFactory = new SpinnerValueFactory<>() {
             {
@@ -108,28 +327,32 @@ public class Controller {
 
         TableColumn<Expense, String> dateCol = new TableColumn<>("Дата и время");
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
-        dateCol.setCellValueFactory(cellData ->
-                new SimpleStringProperty(cellData.getValue().getDateTime().format(formatter)));
+        // Строка без значения — ещё не загруженная страница
+        dateCol.setCellValueFactory(cellData -> cellData.getValue() == null ? null
+                : new SimpleStringProperty(cellData.getValue().getDateTime().format(formatter)));
 
         TableColumn<Expense, String> statusCol = new TableColumn<>("Статус");
         statusCol.setCellValueFactory(cellData -> {
+            if (cellData.getValue() == null) {
+                return null;
+            }
             ExpenseStatus status = cellData.getValue().getStatus();
             return new SimpleStringProperty(status != null ? status.getDisplayName() : "Не указан");
         });
 
         expenseTable.getColumns().addAll(amountCol, descriptionCol, categoryCol, dateCol, statusCol);
+        // Строки подгружаются страницами, поэтому сортирует хранилище (список «Сортировка»),
+        // а не таблица
+        expenseTable.getColumns().forEach(column -> column.setSortable(false));
         expenseTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
     }
 
     private void setupEventHandlers() {
+        // Закрытие прежнего хранилища и подключение нового (для PostgreSQL — соединение
+        // и DDL) идут в фоне
         selectDataSourceButton.setOnAction(event -> {
-            switch (dataSourceChoiceBox.getValue()) {
-                case "Память" -> expenseDao = daoFactory.createMemoryDao();
-                case "PostgreSQL" -> expenseDao = daoFactory.createPostgresDao();
-                case "JSON" -> expenseDao = daoFactory.createJsonDao();
-            }
-            expenseService = new ExpenseService(expenseDao, categoryManager);
-            updateTableView();
+            setBusy(true);
+            switchStorage(dataSourceChoiceBox.getValue());
         });
 
         expenseTable.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
@@ -137,7 +360,8 @@ public class Controller {
         });
 
         sortChoiceBox.setOnAction(e -> updateTableView());
-        filterField.textProperty().addListener((obs, oldText, newText) -> updateTableView());
+        refreshDebounce.setOnFinished(e -> updateTableView());
+        filterField.textProperty().addListener((obs, oldText, newText) -> refreshDebounce.playFromStart());
     }
 
     @FXML
@@ -152,11 +376,13 @@ public class Controller {
 
             Expense expense = new Expense(amount, description, category, selectedDateTime);
 
-            expenseService.add(expense);
-            updateTableView();
-            clearFields();
-        } catch (IllegalArgumentException ex) {
-            showAlert(AlertType.WARNING, "Дубликат", ex.getMessage());
+            whenDone(asyncService.add(expense), error -> {
+                if (error instanceof IllegalArgumentException) {
+                    showAlert(AlertType.WARNING, "Дубликат", error.getMessage());
+                } else {
+                    showAlert(AlertType.ERROR, "Ошибка", "Не удалось добавить расход: " + error.getMessage());
+                }
+            });
         } catch (Exception e) {
             showAlert(AlertType.ERROR, "Ошибка", "Не удалось добавить расход: " + e.getMessage());
         }
@@ -173,14 +399,15 @@ public class Controller {
         try {
             if (!validateFields()) return;
 
-            selected.setAmount(Double.parseDouble(amountField.getText()));
-            selected.setDescription(descriptionField.getText());
-            selected.setCategory(categoryChoiceBox.getValue());
-            selected.setDateTime(LocalDateTime.of(datePicker.getValue(), timeSpinner.getValue()));
+            // Строку таблицы не трогаем: её заменят события хранилища после записи
+            Expense updated = new Expense(selected);
+            updated.setAmount(Double.parseDouble(amountField.getText()));
+            updated.setDescription(descriptionField.getText());
+            updated.setCategory(categoryChoiceBox.getValue());
+            updated.setDateTime(LocalDateTime.of(datePicker.getValue(), timeSpinner.getValue()));
 
-            expenseService.update(selected);
-            updateTableView();
-            clearFields();
+            whenDone(asyncService.update(updated), error ->
+                    showAlert(AlertType.ERROR, "Ошибка", "Не удалось обновить расход: " + error.getMessage()));
         } catch (Exception e) {
             showAlert(AlertType.ERROR, "Ошибка", "Не удалось обновить расход: " + e.getMessage());
         }
@@ -194,14 +421,92 @@ public class Controller {
             return;
         }
 
-        expenseService.delete(selected.getId());
-        updateTableView();
-        clearFields();
+        whenDone(asyncService.delete(selected.getId()), error ->
+                showAlert(AlertType.ERROR, "Ошибка", "Не удалось удалить расход: " + error.getMessage()));
+    }
+
+    /**
+     * По завершении фоновой операции в потоке JavaFX очищает форму либо передаёт ошибку
+     * обработчику. Таблицу обновляют события хранилища.
+     */
+    private void whenDone(CompletableFuture<?> operation, Consumer<Throwable> onError) {
+        operation.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                clearFields();
+            } else {
+                onError.accept(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+        }));
+    }
+
+    /**
+     * Импортирует выписку в текущее хранилище в фоне, показывая долю прочитанного файла.
+     */
+    @FXML
+    private void handleImportStatement() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Импорт банковской выписки");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Выписки (CSV, OFX)", "*.csv", "*.txt", "*.ofx", "*.qfx"),
+                new FileChooser.ExtensionFilter("Все файлы", "*.*"));
+        File file = chooser.showOpenDialog(expenseTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        ExpenseImporter importer = new ExpenseImporter(asyncService, categoryManager);
+        Task<ImportProgress> task = new Task<>() {
+            @Override
+            protected ImportProgress call() {
+                return importer.importFile(file.toPath(), progress -> {
+                    if (progress.getFraction() >= 0) {
+                        updateProgress(progress.getBytesRead(), progress.getTotalBytes());
+                    }
+                    updateMessage(progress.toString());
+                });
+            }
+        };
+        importTask = task;
+        importButton.setDisable(true);
+        importProgressBar.setVisible(true);
+        importProgressBar.progressProperty().bind(task.progressProperty());
+        task.setOnSucceeded(e -> {
+            finishImport();
+            updateTableView();
+            showAlert(AlertType.INFORMATION, "Импорт завершён", "Выписка загружена: " + task.getValue());
+        });
+        task.setOnFailed(e -> {
+            finishImport();
+            updateTableView();
+            showAlert(AlertType.ERROR, "Ошибка", "Не удалось импортировать выписку: " + task.getException().getMessage());
+        });
+
+        Thread thread = new Thread(task, "statement-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishImport() {
+        importProgressBar.progressProperty().unbind();
+        importProgressBar.setVisible(false);
+        importTask = null;
+        importButton.setDisable(busy);
     }
 
     @FXML
     private void handleBudgetForecast() {
-        BudgetForecast forecast = new BudgetForecast(expenseDao);
+        asyncService.getMonthlyAggregates().whenComplete((aggregates, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                showForecast(new BudgetForecast(aggregates));
+            } else {
+                showAlert(AlertType.ERROR, "Ошибка", "Не удалось построить прогноз: " + error.getMessage());
+            }
+        }));
+    }
+
+    private void showForecast(BudgetForecast forecast) {
+        shownForecast = forecast;
         double monthlyAverage = forecast.calculateMonthlyAverage();
         double predicted = forecast.predictNextMonthExpenses();
 
@@ -215,29 +520,62 @@ public class Controller {
         forecastChart.getData().add(series);
     }
 
+    /**
+     * Запускает фоновую выборку для таблицы. Предыдущая незавершённая выборка отменяется,
+     * а её результат, если он всё же придёт, игнорируется. В фоне считается число строк
+     * и загружается первая страница; остальные страницы {@link PagedExpenseList}
+     * подгружает при прокрутке.
+     */
     private void updateTableView() {
-        String filter = filterField.getText().toLowerCase();
-        String sort = sortChoiceBox.getValue();
-        List<Expense> all = expenseService.getAll();
-
-        List<Expense> filtered = new ArrayList<>();
-        for (Expense e : all) {
-            if (filter.isEmpty() ||
-                    e.getDescription().toLowerCase().contains(filter) ||
-                    e.getCategory().toLowerCase().contains(filter) ||
-                    String.valueOf(e.getAmount()).contains(filter)) {
-                filtered.add(e);
-            }
+        if (expenseService == null) {
+            // Хранилище ещё открывается; таблица заполнится, когда оно будет готово
+            return;
         }
-
-        switch (sort) {
-            case "По дате (новые)" -> filtered.sort((e1, e2) -> e2.getDateTime().compareTo(e1.getDateTime()));
-            case "По дате (старые)" -> filtered.sort((e1, e2) -> e1.getDateTime().compareTo(e2.getDateTime()));
-            case "По сумме (возрастание)" -> filtered.sort((e1, e2) -> Double.compare(e1.getAmount(), e2.getAmount()));
-            case "По сумме (убывание)" -> filtered.sort((e1, e2) -> Double.compare(e2.getAmount(), e1.getAmount()));
+        if (tableRefreshTask != null) {
+            tableRefreshTask.cancel(true);
         }
 
-        expenseTable.setItems(FXCollections.observableArrayList(filtered));
+        ExpenseService service = expenseService;
+        ExpenseQuery query = buildTableQuery();
+        Task<ObservableList<Expense>> task = new Task<>() {
+            @Override
+            protected ObservableList<Expense> call() {
+                long count = service.count(query);
+                if (isCancelled()) {
+                    return null;
+                }
+                List<Expense> firstPage = PagedExpenseList.loadFirstPage(service, query);
+                return isCancelled() ? null
+                        : new PagedExpenseList(service, query, count, firstPage, tableRefreshExecutor);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (task == tableRefreshTask) {
+                expenseTable.setItems(task.getValue());
+                StartupTimeline.mark(StartupTimeline.DATA_READY);
+            }
+        });
+        task.setOnFailed(e -> {
+            if (task == tableRefreshTask) {
+                showAlert(AlertType.ERROR, "Ошибка", "Не удалось загрузить расходы: " + task.getException().getMessage());
+            }
+        });
+
+        tableRefreshTask = task;
+        tableRefreshExecutor.execute(task);
+    }
+
+    private ExpenseQuery buildTableQuery() {
+        ExpenseQuery.SortOrder sortOrder = switch (sortChoiceBox.getValue()) {
+            case "По дате (новые)" -> ExpenseQuery.SortOrder.DATE_DESC;
+            case "По дате (старые)" -> ExpenseQuery.SortOrder.DATE_ASC;
+            case "По сумме (возрастание)" -> ExpenseQuery.SortOrder.AMOUNT_ASC;
+            case "По сумме (убывание)" -> ExpenseQuery.SortOrder.AMOUNT_DESC;
+            default -> ExpenseQuery.SortOrder.NONE;
+        };
+        return new ExpenseQuery()
+                .text(filterField.getText())
+                .sortBy(sortOrder);
     }
 
     private void fillFormWithSelectedExpense(Expense e) {
@@ -270,6 +608,22 @@ public class Controller {
         return true;
     }
 
+    /**
+     * Освобождает ресурсы прежнего хранилища (соединения, отображённые файлы); вызывается
+     * не из потока JavaFX. Возвращает ошибку закрытия или {@code null}.
+     */
+    private static Exception closeDao(ExpenseDao dao) {
+        if (dao instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dao).close();
+            } catch (Exception e) {
+                LOG.log(System.Logger.Level.WARNING, "Не удалось закрыть хранилище", e);
+                return e;
+            }
+        }
+        return null;
+    }
+
     private void showAlert(AlertType type, String title, String msg) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
@@ -277,4 +631,12 @@ public class Controller {
         alert.setContentText(msg);
         alert.showAndWait();
     }
+
+    /** Итог переключения хранилища, собранный в фоне для потока JavaFX. */
+    private static final class StorageSwitch {
+        ExpenseDao dao;
+        String source;
+        Exception closeError;
+        RuntimeException openError;
+    }
 }
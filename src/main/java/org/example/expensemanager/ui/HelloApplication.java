@@ -10,8 +10,18 @@ import java.io.IOException;
 public class HelloApplication extends Application {
     @Override
     public void start(Stage stage) throws IOException {
+        StartupTimeline.mark("запуск JavaFX");
         FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("hello-view.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 800, 600);
+        StartupTimeline.mark("разметка окна");
+        Runnable firstFrame = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                StartupTimeline.mark(StartupTimeline.FIRST_FRAME);
+            }
+        };
+        scene.addPostLayoutPulseListener(firstFrame);
         stage.setTitle("Менеджер личных расходов");
         stage.setScene(scene);
         stage.show();
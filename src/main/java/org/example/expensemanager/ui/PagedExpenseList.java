@@ -0,0 +1,365 @@
+package org.example.expensemanager.ui;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseChange;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.example.expensemanager.service.ExpenseService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+/**
+ * Строки таблицы, подгружаемые страницами по мере прокрутки.
+ * <p>
+ * Размер списка известен заранее, а сами строки запрашиваются у сервиса окнами по
+ * {@link #PAGE_SIZE}. {@link #get(int)} для ещё не загруженной страницы возвращает
+ * {@code null} (таблица показывает пустую строку) и ставит загрузку в фон; когда
+ * страница приходит, список сообщает о замене строк, и таблица перерисовывает их.
+ * Вместе с запрошенной страницей загружается следующая.
+ * <p>
+ * Если предыдущая страница в кэше, следующая читается курсором от её последней строки,
+ * иначе — по смещению. В памяти держится не больше {@link #CACHED_PAGES} страниц,
+ * поэтому расход памяти не зависит от общего числа строк.
+ * <p>
+ * Изменения хранилища применяются к загруженным страницам на месте
+ * ({@link #applyChanges(List)}): строки вставляются, заменяются и удаляются с
+ * уведомлением таблицы только о затронутых позициях.
+ * <p>
+ * Все методы вызываются из потока JavaFX.
+ */
+class PagedExpenseList extends ObservableListBase<Expense> {
+    static final int PAGE_SIZE = 100;
+    private static final int CACHED_PAGES = 8;
+
+    private static final System.Logger LOG = System.getLogger(PagedExpenseList.class.getName());
+
+    private final ExpenseService service;
+    private final ExpenseQuery query;
+    private final Comparator<Expense> order;
+    private int size;
+    private final Executor loader;
+    private final Map<Integer, List<Expense>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Expense>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    // Страницы, которым после удаления строки не хватает строк до полной
+    private final Set<Integer> stale = new HashSet<>();
+    // Меняется при сдвиге строк: страницы, запрошенные до сдвига, отбрасываются
+    private int generation;
+    // Хранилище списка закрывается: новые страницы не запрашиваются
+    private boolean detached;
+
+    /**
+     * @param query     условия выборки без смещения и лимита
+     * @param size      число строк, удовлетворяющих запросу
+     * @param firstPage первая страница, загруженная заранее
+     * @param loader    исполнитель для фоновой загрузки страниц
+     */
+    PagedExpenseList(ExpenseService service, ExpenseQuery query, long size, List<Expense> firstPage, Executor loader) {
+        this.service = service;
+        this.query = query;
+        this.order = query.comparator();
+        this.size = (int) Math.min(size, Integer.MAX_VALUE);
+        this.loader = loader;
+        pages.put(0, new ArrayList<>(firstPage));
+    }
+
+    /** Первая страница выборки; загружается до создания списка, чтобы таблица сразу была заполнена. */
+    static List<Expense> loadFirstPage(ExpenseService service, ExpenseQuery query) {
+        return service.find(query.copy().offset(0).limit(PAGE_SIZE));
+    }
+
+    @Override
+    public Expense get(int index) {
+        Objects.checkIndex(index, size);
+        int page = index / PAGE_SIZE;
+        List<Expense> rows = pages.get(page);
+        if (rows == null) {
+            request(page);
+            return null;
+        }
+        if ((page + 1) * PAGE_SIZE < size && !pages.containsKey(page + 1)) {
+            request(page + 1);
+        }
+        int offset = index % PAGE_SIZE;
+        if (offset < rows.size()) {
+            return rows.get(offset);
+        }
+        // Данные могли измениться после подсчёта размера; страница после удаления
+        // строки дочитывается
+        if (stale.contains(page)) {
+            request(page);
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Перестаёт подгружать страницы; уже загруженные строки остаются. Вызывается перед
+     * закрытием хранилища, из которого читает список.
+     */
+    void detach() {
+        detached = true;
+    }
+
+    private void request(int page) {
+        if (detached || !loading.add(page)) {
+            return;
+        }
+        ExpenseQuery pageQuery = pageQuery(page);
+        int requestedGeneration = generation;
+        loader.execute(() -> {
+            List<Expense> rows;
+            try {
+                rows = service.find(pageQuery);
+            } catch (RuntimeException e) {
+                LOG.log(System.Logger.Level.WARNING, "Не удалось загрузить страницу " + page, e);
+                Platform.runLater(() -> {
+                    if (requestedGeneration == generation) {
+                        loading.remove(page);
+                    }
+                });
+                return;
+            }
+            Platform.runLater(() -> {
+                if (requestedGeneration == generation) {
+                    pageLoaded(page, rows);
+                }
+            });
+        });
+    }
+
+    private ExpenseQuery pageQuery(int page) {
+        ExpenseQuery pageQuery = query.copy().limit(PAGE_SIZE);
+        List<Expense> previous = pages.get(page - 1);
+        if (query.getSortOrder() != ExpenseQuery.SortOrder.NONE
+                && previous != null && previous.size() == PAGE_SIZE) {
+            return pageQuery.offset(0).after(previous.get(PAGE_SIZE - 1));
+        }
+        return pageQuery.offset(page * PAGE_SIZE);
+    }
+
+    private void pageLoaded(int page, List<Expense> rows) {
+        loading.remove(page);
+        stale.remove(page);
+        pages.put(page, new ArrayList<>(rows));
+        int from = page * PAGE_SIZE;
+        int to = Math.min(from + PAGE_SIZE, size);
+        beginChange();
+        for (int index = from; index < to; index++) {
+            nextSet(index, null);
+        }
+        endChange();
+    }
+
+    /**
+     * Применяет изменения хранилища к загруженным страницам. Стоимость зависит от числа
+     * изменений и загруженных строк, но не от размера выборки.
+     *
+     * @return {@code false}, если место изменения нельзя определить по загруженным
+     * страницам (строка на незагруженной странице, выборка без сортировки, слишком
+     * большая пачка) — тогда список нужно построить заново
+     */
+    boolean applyChanges(List<ExpenseChange> changes) {
+        if (changes.size() > PAGE_SIZE || order == null) {
+            return false;
+        }
+        beginChange();
+        try {
+            for (ExpenseChange change : changes) {
+                if (!apply(change)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            endChange();
+        }
+    }
+
+    private boolean apply(ExpenseChange change) {
+        int index = indexOf(change.getId());
+        Expense expense = change.getExpense();
+        boolean matches = expense != null && query.matches(expense);
+        if (index < 0 && change.getType() != ExpenseChange.Type.ADDED && !allPagesLoaded()) {
+            // Прежняя версия может лежать на незагруженной странице
+            return false;
+        }
+        if (index >= 0 && matches && fitsAt(index, expense)) {
+            Expense old = rowAt(index);
+            rows(index).set(index % PAGE_SIZE, expense);
+            nextSet(index, old);
+            return true;
+        }
+        if (index >= 0) {
+            removeAt(index);
+        }
+        return !matches || insert(expense);
+    }
+
+    private boolean insert(Expense expense) {
+        int index = insertionPoint(expense);
+        if (index < 0) {
+            return false;
+        }
+        int page = index / PAGE_SIZE;
+        List<Expense> rows = pages.get(page);
+        if (rows == null && index == size) {
+            // Новая последняя страница
+            rows = new ArrayList<>();
+            pages.put(page, rows);
+        }
+        if (rows != null) {
+            rows.add(index % PAGE_SIZE, expense);
+        }
+        size++;
+        nextAdd(index, index + 1);
+        shiftPages(page);
+        return true;
+    }
+
+    private void removeAt(int index) {
+        int page = index / PAGE_SIZE;
+        Expense removed = pages.get(page).remove(index % PAGE_SIZE);
+        size--;
+        nextRemove(index, removed);
+        shiftPages(page);
+    }
+
+    /**
+     * Выравнивает страницы после вставки или удаления на странице {@code page}: строки
+     * перетекают между соседними загруженными страницами, а страницы за первой
+     * незагруженной отбрасываются — их содержимое сдвинулось на неизвестную величину.
+     * Страница, которой не хватило строки, остаётся на месте и перечитывается.
+     */
+    private void shiftPages(int page) {
+        generation++;
+        loading.clear();
+        int current = page;
+        while (pages.containsKey(current)) {
+            List<Expense> rows = pages.get(current);
+            List<Expense> next = pages.get(current + 1);
+            if (rows.size() > PAGE_SIZE) {
+                Expense spilled = rows.remove(rows.size() - 1);
+                if (next == null) {
+                    if (expectedRows(current + 1) == 1) {
+                        // Строка начинает новую последнюю страницу
+                        pages.put(current + 1, new ArrayList<>(List.of(spilled)));
+                    }
+                    break;
+                }
+                next.add(0, spilled);
+            } else if (rows.size() < expectedRows(current)) {
+                if (next == null || next.isEmpty()) {
+                    stale.add(current);
+                    request(current);
+                    break;
+                }
+                rows.add(next.remove(0));
+            } else {
+                break;
+            }
+            current++;
+        }
+        pages.keySet().removeIf(p -> p >= page && !isContiguous(page - 1, p));
+        pages.keySet().removeIf(p -> p * PAGE_SIZE >= Math.max(size, 1));
+        stale.retainAll(pages.keySet());
+    }
+
+    private boolean isContiguous(int from, int to) {
+        for (int p = from + 1; p <= to; p++) {
+            if (!pages.containsKey(p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Позиция новой строки по загруженным страницам или {@code -1}, если её нельзя
+     * определить. Строка после последней загруженной подряд страницы вставляется на
+     * границу: следующие строки всё равно неизвестны и будут загружены заново.
+     */
+    private int insertionPoint(Expense expense) {
+        for (int page : new TreeSet<>(pages.keySet())) {
+            List<Expense> rows = pages.get(page);
+            if (rows.size() != expectedRows(page)) {
+                continue;
+            }
+            int found = Collections.binarySearch(rows, expense, order);
+            int point = found >= 0 ? found : -found - 1;
+            int start = page * PAGE_SIZE;
+            if (point > 0 && point < rows.size()) {
+                return start + point;
+            }
+            if (point == 0 && (page == 0 || isBefore(pages.get(page - 1), expense))) {
+                return start;
+            }
+            if (point == rows.size() && (start + rows.size() == size || !pages.containsKey(page + 1))) {
+                return start + rows.size();
+            }
+        }
+        return -1;
+    }
+
+    private boolean isBefore(List<Expense> rows, Expense expense) {
+        return rows != null && !rows.isEmpty() && order.compare(rows.get(rows.size() - 1), expense) < 0;
+    }
+
+    /** Остаётся ли строка на месте {@code index} в порядке сортировки. */
+    private boolean fitsAt(int index, Expense expense) {
+        Expense previous = index > 0 ? rowAt(index - 1) : null;
+        Expense next = index + 1 < size ? rowAt(index + 1) : null;
+        return (previous == null ? index == 0 : order.compare(previous, expense) < 0)
+                && (next == null ? index + 1 == size : order.compare(expense, next) < 0);
+    }
+
+    private int indexOf(long id) {
+        for (Map.Entry<Integer, List<Expense>> entry : pages.entrySet()) {
+            List<Expense> rows = entry.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i).getId() == id) {
+                    return entry.getKey() * PAGE_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private List<Expense> rows(int index) {
+        return pages.get(index / PAGE_SIZE);
+    }
+
+    /** Строка, если её страница загружена, иначе {@code null}. */
+    private Expense rowAt(int index) {
+        List<Expense> rows = rows(index);
+        int offset = index % PAGE_SIZE;
+        return rows != null && offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    private int expectedRows(int page) {
+        return Math.max(0, Math.min(PAGE_SIZE, size - page * PAGE_SIZE));
+    }
+
+    private boolean allPagesLoaded() {
+        return isContiguous(-1, (Math.max(size, 1) - 1) / PAGE_SIZE);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.expensemanager.ui;
+
+import javafx.application.Platform;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Отметки этапов запуска в миллисекундах от старта JVM.
+ * <p>
+ * Этапы отмечаются из разных потоков; когда отмечены и первый кадр окна, и первая
+ * загрузка таблицы, сводка пишется в журнал одной строкой. С системным свойством
+ * {@code expensemanager.exitAfterStartup=true} приложение после этого завершается —
+ * так время запуска удобно замерять из скриптов.
+ */
+final class StartupTimeline {
+    static final String FIRST_FRAME = "первый кадр";
+    static final String DATA_READY = "таблица заполнена";
+
+    private static final System.Logger LOG = System.getLogger(StartupTimeline.class.getName());
+    private static final ConcurrentLinkedQueue<String> ORDER = new ConcurrentLinkedQueue<>();
+    private static final Map<String, Long> MARKS = new ConcurrentHashMap<>();
+    private static final AtomicBoolean REPORTED = new AtomicBoolean();
+
+    private StartupTimeline() {
+    }
+
+    /** Отмечает этап; повторная отметка того же этапа игнорируется. */
+    static void mark(String phase) {
+        long elapsed = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (MARKS.putIfAbsent(phase, elapsed) == null) {
+            ORDER.add(phase);
+        }
+        if (MARKS.containsKey(FIRST_FRAME) && MARKS.containsKey(DATA_READY) && REPORTED.compareAndSet(false, true)) {
+            report();
+            if (Boolean.getBoolean("expensemanager.exitAfterStartup")) {
+                Platform.runLater(Platform::exit);
+            }
+        }
+    }
+
+    private static void report() {
+        StringJoiner summary = new StringJoiner(", ", "Запуск (мс от старта JVM): ", "");
+        for (String phase : ORDER) {
+            summary.add(phase + " " + MARKS.get(phase));
+        }
+        LOG.log(System.Logger.Level.INFO, summary.toString());
+    }
+}
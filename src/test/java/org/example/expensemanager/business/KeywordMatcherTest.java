@@ -0,0 +1,84 @@
+package org.example.expensemanager.business;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Автомат ключевых слов сверяется с исходным перебором: категория — первая по порядку
+ * файла, у которой какое-либо ключевое слово входит в описание.
+ */
+class KeywordMatcherTest {
+    // Маленький алфавит, чтобы ключевые слова часто перекрывались и входили друг в друга
+    private static final String ALPHABET = "abcабв";
+
+    /** Правило до появления автомата. */
+    private static String bruteForce(Map<String, List<String>> categories, String description) {
+        String lower = description.toLowerCase();
+        for (Map.Entry<String, List<String>> entry : categories.entrySet()) {
+            for (String keyword : entry.getValue()) {
+                if (lower.contains(keyword.toLowerCase())) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String randomText(Random random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            text.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void matchesBruteForceOnRandomKeywords() {
+        Random random = new Random(6);
+        for (int round = 0; round < 200; round++) {
+            Map<String, List<String>> categories = new LinkedHashMap<>();
+            for (int c = 0; c < 5; c++) {
+                List<String> keywords = new ArrayList<>();
+                for (int k = 0; k < 4; k++) {
+                    // Изредка пустое ключевое слово: оно входит в любое описание
+                    keywords.add(randomText(random, random.nextInt(50) == 0 ? 0 : 1, 4));
+                }
+                categories.put("c" + c, keywords);
+            }
+            KeywordMatcher matcher = new KeywordMatcher(categories);
+            for (int i = 0; i < 500; i++) {
+                String description = randomText(random, 0, 15);
+                assertEquals(bruteForce(categories, description),
+                        matcher.findFirstCategory(description.toLowerCase()),
+                        () -> categories + " / " + description);
+            }
+        }
+    }
+
+    @Test
+    void categoryManagerUsesFileOrderThenAmount(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("categories.json");
+        // Менеджер читает файл в кодировке платформы, поэтому в файле только ASCII
+        Files.writeString(file, "{\"Food\": [\"Cafe\", \"groceries\"], \"Transport\": [\"taxi\", \"cafe-bar\"]}");
+        ExpenseCategoryManager manager = new ExpenseCategoryManager(file.toString());
+
+        // «cafe-bar» содержит «cafe», поэтому побеждает категория, идущая в файле раньше
+        assertEquals("Food", manager.determineCategory("Ужин CAFE-BAR", 10));
+        assertEquals("Transport", manager.determineCategory("Taxi до дома", 10));
+        assertEquals("Крупные покупки", manager.determineCategory("Ноутбук", 5000.01));
+        assertEquals("Другое", manager.determineCategory("Ноутбук", 5000));
+    }
+}
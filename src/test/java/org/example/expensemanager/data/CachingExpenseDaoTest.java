@@ -0,0 +1,124 @@
+package org.example.expensemanager.data;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Кэш чтения сверяется с хранилищем под ним: после любых изменений через кэш
+ * выборки, подсчёты и чтение по id совпадают с прямыми.
+ */
+class CachingExpenseDaoTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void readsMatchDelegateUnderRandomChanges() {
+        ExpenseMemoryDao raw = new ExpenseMemoryDao();
+        CachingExpenseDao cache = new CachingExpenseDao(raw, 50, 20, 5000, 0);
+        Random random = new Random(2);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Expense expense = new Expense(random.nextInt(1000), "d" + random.nextInt(30), "c" + random.nextInt(3),
+                    BASE.plusHours(random.nextInt(9000)));
+            cache.addExpense(expense);
+            ids.add(expense.getId());
+        }
+
+        ExpenseQuery.SortOrder[] orders = ExpenseQuery.SortOrder.values();
+        for (int step = 0; step < 20_000; step++) {
+            int operation = random.nextInt(20);
+            if (operation == 0) {
+                Expense expense = new Expense(random.nextInt(1000), "n", "c0", BASE.plusHours(random.nextInt(9000)));
+                cache.addExpense(expense);
+                ids.add(expense.getId());
+            } else if (operation == 1) {
+                Expense expense = raw.findExpenseById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+                expense.setAmount(random.nextInt(1000));
+                cache.updateExpense(expense);
+            } else if (operation == 2) {
+                cache.deleteExpense(ids.remove(random.nextInt(ids.size())));
+            } else if (operation < 8) {
+                // Чтения сосредоточены на первых id, чтобы кэш попадал
+                long id = ids.get(random.nextInt(Math.min(ids.size(), 80)));
+                Optional<Expense> cached = cache.findExpenseById(id);
+                assertTrue(cached.isPresent(), "шаг " + step);
+                assertEquals(raw.findExpenseById(id).orElseThrow().getAmount(), cached.get().getAmount(), "шаг " + step);
+                // Изменение полученного объекта не должно попасть в кэш
+                cached.get().setAmount(-1);
+            } else {
+                ExpenseQuery query = new ExpenseQuery().sortBy(orders[1 + random.nextInt(orders.length - 1)])
+                        .category("c" + random.nextInt(3)).offset(random.nextInt(3) * 10).limit(10);
+                if (random.nextInt(3) == 0) {
+                    List<Expense> previous = raw.findExpenses(query.copy());
+                    if (!previous.isEmpty()) {
+                        query.offset(0).after(previous.get(previous.size() - 1));
+                    }
+                }
+                List<Expense> cached = cache.findExpenses(query);
+                List<Expense> expected = raw.findExpenses(query);
+                assertEquals(expected.size(), cached.size(), "шаг " + step);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getId(), cached.get(i).getId(), "шаг " + step);
+                    assertEquals(expected.get(i).getAmount(), cached.get(i).getAmount(), "шаг " + step);
+                }
+                cached.forEach(expense -> expense.setAmount(-1));
+                assertEquals(raw.countExpenses(query), cache.countExpenses(query), "шаг " + step);
+            }
+        }
+
+        CachingExpenseDao.Stats stats = cache.getStats();
+        assertTrue(stats.getIdHits() > 0 && stats.getQueryHits() > 0, stats.toString());
+        assertTrue(stats.getCachedExpenses() <= 50 && stats.getCachedQueries() <= 20, stats.toString());
+    }
+
+    @Test
+    void updateIsReadBackFromStore() {
+        // Хранилище, которое молча пропускает отсутствующий id и хранит описание обрезанным
+        ExpenseMemoryDao raw = new ExpenseMemoryDao() {
+            @Override
+            public void updateExpense(Expense expense) {
+                if (findExpenseById(expense.getId()).isPresent()) {
+                    Expense stored = new Expense(expense);
+                    stored.setDescription(expense.getDescription().substring(0, 3));
+                    super.updateExpense(stored);
+                }
+            }
+        };
+        CachingExpenseDao cache = new CachingExpenseDao(raw, 10, 10, 1000, 0);
+        Expense kept = new Expense(1, "исходный", "c", BASE);
+        cache.addExpense(kept);
+
+        Expense missing = new Expense(kept);
+        missing.setId(kept.getId() + 100);
+        cache.updateExpense(missing);
+        assertTrue(cache.findExpenseById(missing.getId()).isEmpty());
+
+        Expense changed = new Expense(kept);
+        changed.setDescription("изменённый");
+        cache.updateExpense(changed);
+        assertEquals("изм", cache.findExpenseById(kept.getId()).orElseThrow().getDescription());
+    }
+
+    @Test
+    void writeBypassingCacheBecomesVisibleAfterTtl() throws InterruptedException {
+        ExpenseMemoryDao raw = new ExpenseMemoryDao();
+        CachingExpenseDao cache = new CachingExpenseDao(raw, 10, 10, 1000, 300);
+        ExpenseQuery query = new ExpenseQuery().category("zz");
+        assertEquals(0, cache.countExpenses(query));
+
+        raw.addExpense(new Expense(1, "x", "zz", BASE));
+        // До истечения срока кэш отвечает прежним результатом
+        assertEquals(0, cache.countExpenses(query));
+        Thread.sleep(400);
+        assertEquals(1, cache.countExpenses(query));
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.expensemanager.data;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * События обёртки соответствуют изменениям хранилища: обновление отсутствующего id
+ * отклоняется и события не даёт.
+ */
+class ObservableExpenseDaoTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void updateOfMissingIdPublishesNothing() {
+        ExpenseMemoryDao raw = new ExpenseMemoryDao();
+        ObservableExpenseDao dao = new ObservableExpenseDao(raw);
+        Expense kept = new Expense(10, "есть", "c", BASE);
+        dao.addExpense(kept);
+        List<ExpenseChange> published = new ArrayList<>();
+        dao.addChangeListener(published::addAll);
+
+        Expense missing = new Expense(20, "нет", "c", BASE);
+        missing.setId(kept.getId() + 100);
+        assertThrows(RuntimeException.class, () -> dao.updateExpense(missing));
+        Expense changed = new Expense(kept);
+        changed.setDescription("изменён");
+        assertThrows(RuntimeException.class, () -> dao.updateExpenses(List.of(changed, missing)));
+
+        assertEquals(List.of(), published);
+        // Пачка отклонена целиком: существующая строка не изменилась
+        assertEquals("есть", raw.findExpenseById(kept.getId()).orElseThrow().getDescription());
+        assertEquals(1, raw.getAllExpenses().size());
+
+        dao.updateExpense(changed);
+        assertEquals("[UPDATED #" + kept.getId() + "]", published.toString());
+    }
+}
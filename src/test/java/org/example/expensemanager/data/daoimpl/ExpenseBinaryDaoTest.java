@@ -0,0 +1,346 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Двоичное хранилище: сверка с моделью в памяти при изменениях, росте файла,
+ * свёртке и переоткрытии; откат неудавшейся перезаписи и подмены файла; запись, оборванная
+ * до обновления числа записей в заголовке.
+ */
+class ExpenseBinaryDaoTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+    // Смещения заголовка из описания формата в ExpenseBinaryDao
+    private static final int HEADER_SIZE = 64;
+    private static final int H_RECORD_COUNT = 16;
+    private static final int H_LIVE_COUNT = 24;
+    private static final int H_NEXT_ID = 32;
+    private static final int RECORD_SIZE = 40;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(11);
+    private final TreeMap<Long, Expense> model = new TreeMap<>();
+
+    private Path file() {
+        return dir.resolve("expenses.bin");
+    }
+
+    private ExpenseBinaryDao open() {
+        return new ExpenseBinaryDao(file().toString());
+    }
+
+    @Test
+    void matchesModelAcrossGrowthCompactionAndReopen() {
+        ExpenseBinaryDao dao = open();
+        for (int step = 0; step < 1500; step++) {
+            String label = "шаг " + step;
+            int operation = random.nextInt(20);
+            if (operation < 6 || model.isEmpty()) {
+                // Пачки перерастают начальную ёмкость области записей и кучи
+                List<Expense> batch = new ArrayList<>();
+                for (int i = 0, n = 1 + random.nextInt(operation == 0 ? 200 : 3); i < n; i++) {
+                    batch.add(randomExpense());
+                }
+                dao.addExpenses(batch);
+                batch.forEach(expense -> model.put(expense.getId(), new Expense(expense)));
+            } else if (operation < 10) {
+                Expense expense = new Expense(randomExisting());
+                expense.setAmount(random.nextInt(100_000) / 100.0);
+                if (random.nextBoolean()) {
+                    // Новое описание уходит в кучу, прежнее становится мусором
+                    expense.setDescription(description());
+                }
+                if (random.nextInt(4) == 0) {
+                    expense.setCategory(random.nextInt(5) == 0 ? null : "c" + random.nextInt(6));
+                }
+                dao.updateExpense(expense);
+                model.put(expense.getId(), new Expense(expense));
+            } else if (operation < 14) {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0, n = 1 + random.nextInt(operation == 10 ? 100 : 2); i < n && i < model.size(); i++) {
+                    ids.add(randomExisting().getId());
+                }
+                ids.add(-1L);
+                dao.deleteExpenses(ids);
+                ids.forEach(model::remove);
+            } else if (operation < 18) {
+                ExpenseQuery query = randomQuery();
+                boolean unordered = query.getSortOrder() == ExpenseQuery.SortOrder.NONE;
+                assertEquals(keys(query.copy().apply(new ArrayList<>(model.values())), unordered),
+                        keys(dao.findExpenses(query.copy()), unordered), label);
+                ExpenseQuery countQuery = query.copy().offset(0).limit(-1);
+                assertEquals(model.values().stream().filter(countQuery::matches).count(),
+                        dao.countExpenses(countQuery), label);
+            } else if (operation < 19) {
+                long id = random.nextBoolean() ? model.lastKey() + 1 : randomExisting().getId();
+                Expense expected = model.get(id);
+                assertEquals(expected == null ? null : key(expected),
+                        dao.findExpenseById(id).map(ExpenseBinaryDaoTest::key).orElse(null), label);
+            } else {
+                if (random.nextBoolean()) {
+                    dao.compact();
+                }
+                dao.close();
+                dao = open();
+                assertEquals(keys(model.values(), true), keys(dao.getAllExpenses(), true), label);
+            }
+        }
+        dao.close();
+
+        ExpenseBinaryDao reopened = open();
+        assertEquals(keys(model.values(), true), keys(reopened.getAllExpenses(), true));
+        Expense added = randomExpense();
+        reopened.addExpense(added);
+        assertTrue(added.getId() > model.lastKey(), "id не должен повторяться: " + added.getId());
+        reopened.close();
+    }
+
+    @Test
+    void changesSurviveWithoutClose() {
+        ExpenseBinaryDao dao = open();
+        for (int i = 0; i < 300; i++) {
+            Expense expense = randomExpense();
+            dao.addExpense(expense);
+            model.put(expense.getId(), new Expense(expense));
+        }
+        Expense updated = new Expense(randomExisting());
+        updated.setDescription("после правки");
+        dao.updateExpense(updated);
+        model.put(updated.getId(), new Expense(updated));
+        long deleted = randomExisting().getId();
+        dao.deleteExpense(deleted);
+        model.remove(deleted);
+
+        // Процесс «упал» без закрытия: файл читается другим экземпляром через страничный кэш
+        ExpenseBinaryDao other = open();
+        assertEquals(keys(model.values(), true), keys(other.getAllExpenses(), true));
+        other.close();
+        dao.close();
+    }
+
+    @Test
+    void failedRewriteRollsBackToOldFile() throws IOException {
+        ExpenseBinaryDao dao = open();
+        fill(dao);
+        long lastId = model.lastKey();
+
+        // Временный файл не создаётся: на его месте непустой каталог
+        Path blocker = dir.resolve("expenses.bin.tmp");
+        Files.createDirectory(blocker);
+        Files.writeString(blocker.resolve("x"), "x");
+        assertThrows(RuntimeException.class, dao::compact);
+        // Область записей заполнена: добавление требует перезаписи и тоже откатывается
+        assertThrows(RuntimeException.class, () -> dao.addExpense(randomExpense()));
+        assertEquals(keys(model.values(), true), keys(dao.getAllExpenses(), true));
+        Files.delete(blocker.resolve("x"));
+        Files.delete(blocker);
+
+        changeAfterRollback(dao);
+        Expense added = randomExpense();
+        dao.addExpense(added);
+        model.put(added.getId(), new Expense(added));
+        // Неудавшиеся попытки не расходуют id
+        assertEquals(lastId + 1, added.getId());
+        dao.close();
+
+        ExpenseBinaryDao reopened = open();
+        assertEquals(keys(model.values(), true), keys(reopened.getAllExpenses(), true));
+        reopened.close();
+    }
+
+    @Test
+    void failedReplaceKeepsWritingOldFile() throws IOException {
+        ExpenseBinaryDao dao = open();
+        fill(dao);
+
+        // Новый файл записан полностью, но подменить основной нельзя: на его месте
+        // непустой каталог. Старый файл остаётся доступен по жёсткой ссылке
+        Path kept = dir.resolve("kept.bin");
+        Files.createLink(kept, file());
+        Files.delete(file());
+        Files.createDirectory(file());
+        Files.writeString(file().resolve("x"), "x");
+        assertThrows(RuntimeException.class, dao::compact);
+        assertThrows(RuntimeException.class, () -> dao.addExpense(randomExpense()));
+
+        // После отката изменения идут в старый файл, а не во временный
+        changeAfterRollback(dao);
+        dao.close();
+        Files.delete(file().resolve("x"));
+        Files.delete(file());
+        Files.move(kept, file());
+
+        ExpenseBinaryDao reopened = open();
+        assertEquals(keys(model.values(), true), keys(reopened.getAllExpenses(), true));
+        reopened.close();
+    }
+
+    /** Заполняет область записей начального файла целиком. */
+    private void fill(ExpenseBinaryDao dao) {
+        List<Expense> batch = new ArrayList<>();
+        for (int i = 0; i < 1024; i++) {
+            batch.add(randomExpense());
+        }
+        dao.addExpenses(batch);
+        batch.forEach(expense -> model.put(expense.getId(), new Expense(expense)));
+    }
+
+    private void changeAfterRollback(ExpenseBinaryDao dao) {
+        Expense updated = new Expense(randomExisting());
+        updated.setAmount(1.25);
+        updated.setDescription("после отката");
+        dao.updateExpense(updated);
+        model.put(updated.getId(), new Expense(updated));
+        long deleted = randomExisting().getId();
+        dao.deleteExpense(deleted);
+        model.remove(deleted);
+        assertEquals(keys(model.values(), true), keys(dao.getAllExpenses(), true));
+    }
+
+    @Test
+    void appendCutBeforeRecordCountIsInvisible() throws IOException {
+        ExpenseBinaryDao dao = open();
+        for (int i = 0; i < 10; i++) {
+            Expense expense = randomExpense();
+            dao.addExpense(expense);
+            model.put(expense.getId(), new Expense(expense));
+        }
+        dao.close();
+
+        // Сбой посреди добавления: запись и остальные поля заголовка уже в файле,
+        // число записей, которое пишется последним, — ещё нет
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long records = readLong(channel, H_RECORD_COUNT);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+            record.putLong(0, 777).putLong(8, 123_45).putLong(16, 0).putInt(24, -1).putInt(28, -1).putInt(32, 0);
+            channel.write(record, HEADER_SIZE + records * RECORD_SIZE);
+            writeLong(channel, H_LIVE_COUNT, readLong(channel, H_LIVE_COUNT) + 1);
+            writeLong(channel, H_NEXT_ID, readLong(channel, H_NEXT_ID) + 1);
+        }
+
+        ExpenseBinaryDao reopened = open();
+        assertEquals(keys(model.values(), true), keys(reopened.getAllExpenses(), true));
+        // Следующее добавление занимает место оборванной записи
+        Expense added = randomExpense();
+        reopened.addExpense(added);
+        model.put(added.getId(), new Expense(added));
+        reopened.close();
+
+        ExpenseBinaryDao again = open();
+        assertEquals(keys(model.values(), true), keys(again.getAllExpenses(), true));
+        again.close();
+    }
+
+    @Test
+    void foreignFileIsRejected() throws IOException {
+        Files.writeString(file(), "{\"not\": \"binary\"} ".repeat(10));
+        assertThrows(RuntimeException.class, this::open);
+    }
+
+    @Test
+    void closedFileRejectsAccess() {
+        ExpenseBinaryDao dao = open();
+        dao.addExpense(randomExpense());
+        dao.close();
+        dao.close();
+        assertThrows(IllegalStateException.class, dao::getAllExpenses);
+        assertThrows(IllegalStateException.class, () -> dao.addExpense(randomExpense()));
+    }
+
+    private Expense randomExpense() {
+        LocalDateTime dateTime = random.nextInt(25) == 0 ? null : BASE.plusMinutes(random.nextInt(500_000));
+        String category = random.nextInt(10) == 0 ? null : "c" + random.nextInt(6);
+        return new Expense(random.nextInt(100_000) / 100.0, description(), category, dateTime);
+    }
+
+    private String description() {
+        int kind = random.nextInt(20);
+        if (kind == 0) {
+            return null;
+        }
+        // Длинные описания быстрее заполняют кучу
+        return kind == 1 ? "длинное описание ".repeat(1 + random.nextInt(40)) : "расход " + random.nextInt(100);
+    }
+
+    private Expense randomExisting() {
+        List<Long> ids = new ArrayList<>(model.keySet());
+        return model.get(ids.get(random.nextInt(ids.size())));
+    }
+
+    private ExpenseQuery randomQuery() {
+        ExpenseQuery query = new ExpenseQuery();
+        if (random.nextBoolean()) {
+            LocalDateTime from = BASE.plusMinutes(random.nextInt(500_000));
+            query.from(from).to(from.plusDays(random.nextInt(120)));
+        }
+        if (random.nextInt(3) == 0) {
+            query.category("c" + random.nextInt(7));
+        }
+        if (random.nextInt(4) == 0) {
+            query.minAmount(random.nextInt(100_000) / 100.0);
+        }
+        if (random.nextInt(5) == 0) {
+            query.text("расход " + random.nextInt(10));
+        }
+        ExpenseQuery.SortOrder order = ExpenseQuery.SortOrder.values()[random.nextInt(ExpenseQuery.SortOrder.values().length)];
+        query.sortBy(order);
+        if ((order == ExpenseQuery.SortOrder.DATE_ASC || order == ExpenseQuery.SortOrder.DATE_DESC)
+                && query.getFrom() == null) {
+            // Порядок расходов без даты в сортировке по дате не задан; отсекаем их периодом
+            query.from(BASE.minusYears(1));
+        }
+        if (order != ExpenseQuery.SortOrder.NONE && random.nextBoolean()) {
+            query.limit(random.nextInt(50)).offset(random.nextInt(20));
+        }
+        return query;
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(Long.BYTES);
+        channel.read(value, position);
+        return value.getLong(0);
+    }
+
+    private static void writeLong(FileChannel channel, long position, long value) throws IOException {
+        channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, value), position);
+    }
+
+    private static String key(Expense expense) {
+        return expense.getId() + "|" + expense.getAmount() + "|" + expense.getDescription() + "|"
+                + expense.getCategory() + "|" + expense.getDateTime();
+    }
+
+    private static List<String> keys(Collection<Expense> expenses, boolean sort) {
+        List<String> keys = new ArrayList<>();
+        for (Expense expense : expenses) {
+            keys.add(key(expense));
+        }
+        if (sort) {
+            Collections.sort(keys);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочная проверка потокобезопасности колоночного хранилища: читатели и писатели
+ * работают одновременно при 1–32 потоках, и ни одно чтение не должно увидеть
+ * строку или пачку, записанную наполовину.
+ */
+class ExpenseColumnStoreConcurrencyTest {
+    private static final int ROWS = 20_000;
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+    private static final long RUN_MS = 200;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    /**
+     * Версия {@code version} строки {@code id}: сумма и описание кодируют одну и ту же
+     * версию, поэтому смешение полей двух записей сразу видно.
+     */
+    private static Expense version(long id, int version) {
+        Expense expense = new Expense(id + version * 1_000_000.0, "d" + id + "-" + version,
+                "c" + id % 7, BASE.plusMinutes(id));
+        expense.setId(id);
+        return expense;
+    }
+
+    private static boolean consistent(Expense expense) {
+        long id = expense.getId();
+        long version = Math.round((expense.getAmount() - id) / 1_000_000);
+        return expense.getDescription().equals("d" + id + "-" + version)
+                && expense.getCategory().equals("c" + id % 7)
+                && expense.getDateTime().equals(BASE.plusMinutes(id));
+    }
+
+    @Test
+    void readsByIdNeverSeeTornRows() throws Exception {
+        for (int threads : THREADS) {
+            ExpenseMemoryDao dao = new ExpenseMemoryDao();
+            List<Expense> initial = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                initial.add(new Expense(0, "", null, null));
+            }
+            dao.addExpenses(initial);
+            for (long id = 1; id <= ROWS; id++) {
+                dao.updateExpense(version(id, 0));
+            }
+
+            AtomicLong torn = new AtomicLong();
+            AtomicLong reads = new AtomicLong();
+            runConcurrently(threads, random -> {
+                int operation = random.nextInt(1000);
+                long id = 1 + random.nextInt(ROWS);
+                if (operation < 900) {
+                    Optional<Expense> expense = dao.findExpenseById(id);
+                    assertTrue(expense.isPresent(), "строка " + id + " пропала");
+                    if (!consistent(expense.get())) {
+                        torn.incrementAndGet();
+                    }
+                    reads.incrementAndGet();
+                } else if (operation < 990) {
+                    dao.updateExpense(version(id, random.nextInt(100)));
+                } else if (operation < 998) {
+                    dao.sumAmount(null, null);
+                } else {
+                    for (Expense expense : dao.findExpenses(new ExpenseQuery().category("c3").limit(10))) {
+                        if (!consistent(expense)) {
+                            torn.incrementAndGet();
+                        }
+                    }
+                }
+            });
+
+            assertEquals(0, torn.get(), "разорванные чтения при " + threads + " потоках");
+            assertTrue(reads.get() > 0);
+        }
+    }
+
+    @Test
+    void aggregatesNeverSeeHalfOfBatch() throws Exception {
+        for (int threads : THREADS) {
+            ExpenseColumnStore store = new ExpenseColumnStore();
+            List<Expense> initial = new ArrayList<>();
+            for (long id = 1; id <= ROWS; id++) {
+                Expense expense = new Expense(100.0, "d" + id, "c" + id % 7, BASE.plusMinutes(id));
+                expense.setId(id);
+                initial.add(expense);
+            }
+            store.insertAll(initial);
+            long total = store.sumCents((cents, epochSecond, category) -> true);
+
+            AtomicLong mismatches = new AtomicLong();
+            Object writers = new Object();
+            runConcurrently(threads, random -> {
+                if (random.nextInt(4) == 0) {
+                    // Перенос суммы между двумя строками одной пачкой не меняет итог
+                    long first = 1 + random.nextInt(ROWS);
+                    long second = 1 + (first + random.nextInt(ROWS - 1)) % ROWS;
+                    long delta = random.nextInt(100);
+                    // Писатели переносят по очереди, чтобы не затирать чужой перенос; читатели не ждут
+                    synchronized (writers) {
+                        Expense from = store.get(first);
+                        Expense to = store.get(second);
+                        from.setAmount((ExpenseColumnStore.toCents(from.getAmount()) - delta) / 100.0);
+                        to.setAmount((ExpenseColumnStore.toCents(to.getAmount()) + delta) / 100.0);
+                        store.updateAll(List.of(from, to));
+                    }
+                } else if (store.sumCents((cents, epochSecond, category) -> true) != total) {
+                    mismatches.incrementAndGet();
+                }
+            });
+
+            assertEquals(0, mismatches.get(), "сумма видела половину пачки при " + threads + " потоках");
+            assertEquals(total, store.sumCents((cents, epochSecond, category) -> true));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run(ThreadLocalRandom random);
+    }
+
+    private static void runConcurrently(int threads, Step step) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (!stop.get()) {
+                        step.run(random);
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(RUN_MS);
+            stop.set(true);
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JSON-хранилище с журналом: восстановление из снимка и журнала после закрытия
+ * и без него, обрезка оборванной строки, ротация журнала при свёртке, повтор
+ * прерванной свёртки и закрытие.
+ */
+class ExpenseJournalDaoTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    private Path snapshot;
+    private Path log;
+    private Path compactingLog;
+    private final Random random = new Random(3);
+    private final TreeMap<Long, Expense> model = new TreeMap<>();
+
+    private void paths() {
+        snapshot = dir.resolve("expenses.json");
+        log = dir.resolve("expenses.json.log");
+        compactingLog = dir.resolve("expenses.json.log.compacting");
+    }
+
+    private ExpenseJournalDao open(long threshold) {
+        paths();
+        return new ExpenseJournalDao(snapshot.toString(), threshold, false);
+    }
+
+    @Test
+    void reopenRestoresStateAfterCloseAndWithoutIt() {
+        ExpenseJournalDao dao = open(Long.MAX_VALUE);
+        randomChanges(dao, 500);
+        dao.close();
+        // Свёртки не было: всё состояние в журнале
+        assertFalse(Files.exists(snapshot));
+        assertState(open(Long.MAX_VALUE));
+
+        // Без закрытия: каждое изменение сброшено в журнал до возврата из метода
+        ExpenseJournalDao live = open(Long.MAX_VALUE);
+        randomChanges(live, 200);
+        assertState(open(Long.MAX_VALUE));
+        live.close();
+    }
+
+    @Test
+    void tornLastLineIsDroppedBeforeAppending() throws IOException {
+        ExpenseJournalDao dao = open(Long.MAX_VALUE);
+        randomChanges(dao, 100);
+        dao.close();
+        // Процесс упал посреди строки журнала
+        Files.writeString(log, "{\"op\":\"ADD\",\"id\":99999,\"expense\":{\"amo", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        ExpenseJournalDao reopened = open(Long.MAX_VALUE);
+        assertState(reopened);
+        // Дописанное после оборванной строки читается при следующем открытии
+        Expense added = new Expense(5, "после сбоя", "c", BASE);
+        reopened.addExpense(added);
+        model.put(added.getId(), new Expense(added));
+        reopened.close();
+        assertState(open(Long.MAX_VALUE));
+    }
+
+    @Test
+    void compactionRotatesLogIntoSnapshot() {
+        // Порог в несколько записей: свёртка запускается по ходу изменений много раз
+        ExpenseJournalDao dao = open(4096);
+        for (int round = 0; round < 5; round++) {
+            randomChanges(dao, 300);
+            assertState(dao);
+        }
+        dao.close();
+        // Закрытие дожидается свёртки, повёрнутый журнал удалён
+        assertTrue(Files.exists(snapshot));
+        assertFalse(Files.exists(compactingLog));
+        assertState(open(4096));
+    }
+
+    @Test
+    void explicitCompactionLeavesOnlySnapshot() throws IOException {
+        ExpenseJournalDao dao = open(Long.MAX_VALUE);
+        randomChanges(dao, 300);
+        dao.compact();
+        dao.close();
+        assertFalse(Files.exists(compactingLog));
+        assertEquals(0, Files.size(log));
+
+        Files.delete(log);
+        assertState(open(Long.MAX_VALUE));
+    }
+
+    @Test
+    void interruptedCompactionIsFinishedOnOpen() throws IOException {
+        ExpenseJournalDao dao = open(Long.MAX_VALUE);
+        randomChanges(dao, 200);
+        dao.compact();
+        dao.close();
+        byte[] compacted = Files.readAllBytes(snapshot);
+        dao = open(Long.MAX_VALUE);
+        randomChanges(dao, 200);
+        dao.close();
+        // Сбой после ротации, до записи снимка: снимок прежний, изменения в повёрнутом журнале
+        Files.move(log, compactingLog);
+        Files.write(snapshot, compacted);
+        Files.writeString(log, "");
+
+        ExpenseJournalDao reopened = open(Long.MAX_VALUE);
+        assertState(reopened);
+        reopened.close();
+        assertFalse(Files.exists(compactingLog));
+        assertState(open(Long.MAX_VALUE));
+    }
+
+    @Test
+    void replayOverNewerSnapshotIsIdempotent() throws IOException {
+        ExpenseJournalDao dao = open(Long.MAX_VALUE);
+        randomChanges(dao, 300);
+        byte[] rotated = Files.readAllBytes(log);
+        dao.compact();
+        dao.close();
+        // Сбой после записи снимка, до удаления повёрнутого журнала: журнал применяется повторно
+        Files.write(compactingLog, rotated);
+
+        assertState(open(Long.MAX_VALUE));
+    }
+
+    @Test
+    void closedJournalRejectsWrites() {
+        ExpenseJournalDao dao = open(Long.MAX_VALUE);
+        dao.addExpense(new Expense(1, "до закрытия", "c", BASE));
+        dao.close();
+        dao.close();
+        assertThrows(IllegalStateException.class, () -> dao.addExpense(new Expense(2, "после", "c", BASE)));
+        assertThrows(IllegalStateException.class, () -> dao.deleteExpense(1));
+        assertEquals(1, dao.getAllExpenses().size());
+    }
+
+    @Test
+    void updateOfMissingIdIsRejectedBeforeLogging() throws IOException {
+        ExpenseJournalDao dao = open(Long.MAX_VALUE);
+        Expense kept = new Expense(1, "есть", "c", BASE);
+        dao.addExpense(kept);
+        long size = Files.size(log);
+        Expense missing = new Expense(2, "нет", "c", BASE);
+        missing.setId(kept.getId() + 100);
+        assertThrows(RuntimeException.class, () -> dao.updateExpenses(List.of(new Expense(kept), missing)));
+        // Пачка отклонена целиком: в журнал ничего не дописано
+        assertEquals(size, Files.size(log));
+        dao.close();
+    }
+
+    private void randomChanges(ExpenseJournalDao dao, int steps) {
+        for (int step = 0; step < steps; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 4 || model.isEmpty()) {
+                List<Expense> batch = new ArrayList<>();
+                for (int i = 0, n = 1 + random.nextInt(operation == 0 ? 20 : 1); i < n; i++) {
+                    batch.add(new Expense(random.nextInt(100_000) / 100.0, "расход " + random.nextInt(50),
+                            "c" + random.nextInt(4), BASE.plusMinutes(random.nextInt(500_000))));
+                }
+                if (batch.size() == 1) {
+                    dao.addExpense(batch.get(0));
+                } else {
+                    dao.addExpenses(batch);
+                }
+                batch.forEach(expense -> model.put(expense.getId(), new Expense(expense)));
+            } else if (operation < 7) {
+                Expense expense = new Expense(randomExisting());
+                expense.setAmount(random.nextInt(100_000) / 100.0);
+                expense.setDescription("изм " + step);
+                dao.updateExpense(expense);
+                model.put(expense.getId(), new Expense(expense));
+            } else if (operation < 9) {
+                long id = randomExisting().getId();
+                dao.deleteExpense(id);
+                model.remove(id);
+            } else {
+                List<Long> ids = List.of(randomExisting().getId(), randomExisting().getId(), -1L);
+                dao.deleteExpenses(ids);
+                ids.forEach(model::remove);
+            }
+        }
+    }
+
+    private Expense randomExisting() {
+        List<Long> ids = new ArrayList<>(model.keySet());
+        return model.get(ids.get(random.nextInt(ids.size())));
+    }
+
+    private void assertState(ExpenseJournalDao dao) {
+        assertEquals(keys(model.values()), keys(dao.getAllExpenses()));
+    }
+
+    private static List<String> keys(Collection<Expense> expenses) {
+        List<String> keys = new ArrayList<>();
+        for (Expense expense : expenses) {
+            keys.add(expense.getId() + "|" + expense.getAmount() + "|" + expense.getDescription() + "|"
+                    + expense.getCategory() + "|" + expense.getDateTime());
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+}
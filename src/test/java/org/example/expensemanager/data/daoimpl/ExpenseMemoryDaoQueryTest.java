@@ -0,0 +1,158 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Выборки хранилища в памяти по упорядоченным индексам даты и суммы сверяются
+ * с {@link ExpenseQuery#apply} по всем строкам: после каждого случайного добавления,
+ * удаления или обновления — страница выборки с фильтрами, сортировкой и курсором,
+ * число строк по тем же условиям, а также суммы и средние за период.
+ */
+class ExpenseMemoryDaoQueryTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 1, 1, 0, 0);
+    private static final int SPAN_SECONDS = 3 * 365 * 86_400;
+    private static final String[] CATEGORIES = {"A", "B", "C", null};
+
+    private final Random random = new Random(7);
+
+    private Expense randomExpense() {
+        // Частые одинаковые суммы и плотный первый отрезок времени дают много равных ключей
+        double amount = random.nextInt(5) == 0 ? 100.0 : (random.nextInt(200_000) + 1) / 100.0;
+        LocalDateTime dateTime = random.nextInt(30) == 0 ? null
+                : BASE.plusSeconds(random.nextInt(random.nextBoolean() ? 1000 : SPAN_SECONDS));
+        return new Expense(amount, "d" + random.nextInt(50), CATEGORIES[random.nextInt(4)], dateTime);
+    }
+
+    @Test
+    void rangeQueriesMatchFullScan() {
+        ExpenseMemoryDao dao = new ExpenseMemoryDao();
+        List<Long> ids = new ArrayList<>();
+        List<Expense> initial = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            initial.add(randomExpense());
+        }
+        dao.addExpenses(initial);
+        initial.forEach(expense -> ids.add(expense.getId()));
+
+        for (int step = 0; step < 2000; step++) {
+            int operation = random.nextInt(10);
+            if (operation == 0) {
+                Expense expense = randomExpense();
+                dao.addExpense(expense);
+                ids.add(expense.getId());
+            } else if (operation == 1 && !ids.isEmpty()) {
+                dao.deleteExpense(ids.remove(random.nextInt(ids.size())));
+            } else if (operation == 2 && !ids.isEmpty()) {
+                Expense expense = randomExpense();
+                expense.setId(ids.get(random.nextInt(ids.size())));
+                dao.updateExpense(expense);
+            }
+
+            ExpenseQuery query = randomQuery();
+            List<Expense> all = dao.getAllExpenses();
+            if (query.getSortOrder() == ExpenseQuery.SortOrder.DATE_ASC
+                    || query.getSortOrder() == ExpenseQuery.SortOrder.DATE_DESC) {
+                // Порядок строк без даты в сортировке по дате не задан; сверяем без них
+                all.removeIf(expense -> expense.getDateTime() == null);
+                if (query.getFrom() == null && query.getTo() == null) {
+                    query.from(LocalDateTime.of(2000, 1, 1, 0, 0));
+                }
+            }
+            if (query.getSortOrder() != ExpenseQuery.SortOrder.NONE && random.nextBoolean() && !all.isEmpty()) {
+                query.after(new Expense(all.get(random.nextInt(all.size()))));
+            }
+
+            String label = "шаг " + step + ", " + query.getSortOrder();
+            List<Long> expected = idsOf(query.copy().apply(all));
+            List<Long> actual = idsOf(dao.findExpenses(query.copy()));
+            if (query.getSortOrder() != ExpenseQuery.SortOrder.NONE) {
+                assertEquals(expected, actual, label);
+            } else if (query.hasLimit() || query.getOffset() > 0) {
+                // Без сортировки порядок не задан: у страницы сверяем только размер
+                assertEquals(expected.size(), actual.size(), label);
+            } else {
+                assertEquals(new HashSet<>(expected), new HashSet<>(actual), label);
+            }
+
+            ExpenseQuery countQuery = query.copy().offset(0).limit(-1);
+            assertEquals(all.stream().filter(countQuery::matches).count(), dao.countExpenses(countQuery), label);
+        }
+    }
+
+    @Test
+    void periodAggregatesMatchFullScan() {
+        ExpenseMemoryDao dao = new ExpenseMemoryDao();
+        List<Expense> initial = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            initial.add(randomExpense());
+        }
+        dao.addExpenses(initial);
+
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime from = BASE.plusSeconds(random.nextInt(SPAN_SECONDS));
+            LocalDateTime to = from.plusSeconds(random.nextInt(SPAN_SECONDS / 4));
+            long cents = 0;
+            int count = 0;
+            for (Expense expense : dao.getAllExpenses()) {
+                LocalDateTime dateTime = expense.getDateTime();
+                if (dateTime != null && !dateTime.isBefore(from) && dateTime.isBefore(to)) {
+                    cents += Math.round(expense.getAmount() * 100);
+                    count++;
+                }
+            }
+            assertEquals(cents, Math.round(dao.sumAmount(from, to) * 100));
+            if (count > 0) {
+                assertEquals(cents / 100.0 / count, dao.averageAmount(from, to), 1e-6);
+            }
+        }
+    }
+
+    private ExpenseQuery randomQuery() {
+        ExpenseQuery query = new ExpenseQuery();
+        if (random.nextBoolean()) {
+            // Иногда граница не на целой секунде, а хранилище хранит время до секунд
+            query.from(BASE.plusSeconds(random.nextInt(SPAN_SECONDS)).plusNanos(random.nextInt(3) == 0 ? 500 : 0));
+        }
+        if (random.nextBoolean()) {
+            query.to(BASE.plusSeconds(random.nextInt(SPAN_SECONDS)));
+        }
+        if (random.nextInt(3) == 0) {
+            query.category(CATEGORIES[random.nextInt(3)]);
+        }
+        if (random.nextInt(4) == 0) {
+            query.minAmount(random.nextInt(200_000) / 100.0 + (random.nextBoolean() ? 0.005 : 0));
+        }
+        if (random.nextInt(4) == 0) {
+            query.maxAmount(random.nextInt(200_000) / 100.0);
+        }
+        if (random.nextInt(5) == 0) {
+            query.text("d" + random.nextInt(10));
+        }
+        query.sortBy(ExpenseQuery.SortOrder.values()[random.nextInt(ExpenseQuery.SortOrder.values().length)]);
+        if (random.nextBoolean()) {
+            query.limit(random.nextInt(300));
+        }
+        if (random.nextInt(3) == 0) {
+            query.offset(random.nextInt(100));
+        }
+        return query;
+    }
+
+    private static List<Long> idsOf(List<Expense> expenses) {
+        List<Long> ids = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,274 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JSON-хранилище по месяцам сверяется с моделью в памяти при изменениях,
+ * переоткрытиях, потере манифеста и смене режима сжатия; прерванная запись
+ * с переносом расхода в другой месяц восстанавливается без дублей.
+ */
+class ExpenseSegmentedJsonDaoTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2022, 1, 1, 0, 0);
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2024, 1, 10, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(7);
+
+    private LocalDateTime randomDate() {
+        return random.nextInt(20) == 0 ? null : BASE.plusMinutes(random.nextInt(3 * 365 * 24 * 60));
+    }
+
+    private Expense randomExpense() {
+        return new Expense(random.nextInt(50_000) / 100.0, "d" + random.nextInt(30), "c" + random.nextInt(5),
+                randomDate());
+    }
+
+    @Test
+    void matchesModelAcrossReopens() throws IOException {
+        boolean compress = false;
+        ExpenseSegmentedJsonDao dao = new ExpenseSegmentedJsonDao(dir.toString(), compress, false);
+        TreeMap<Long, Expense> model = new TreeMap<>();
+        for (int step = 0; step < 1000; step++) {
+            String label = "шаг " + step;
+            int operation = random.nextInt(12);
+            if (operation < 3 || model.isEmpty()) {
+                List<Expense> batch = new ArrayList<>();
+                for (int i = 0, n = 1 + random.nextInt(20); i < n; i++) {
+                    batch.add(randomExpense());
+                }
+                dao.addExpenses(batch);
+                batch.forEach(expense -> model.put(expense.getId(), new Expense(expense)));
+            } else if (operation < 5) {
+                List<Long> ids = new ArrayList<>(model.keySet());
+                Set<Long> used = new HashSet<>();
+                List<Expense> batch = new ArrayList<>();
+                for (int i = 0, n = 1 + random.nextInt(5); i < n; i++) {
+                    long id = ids.get(random.nextInt(ids.size()));
+                    if (!used.add(id)) {
+                        continue;
+                    }
+                    Expense expense = new Expense(model.get(id));
+                    expense.setAmount(random.nextInt(50_000) / 100.0);
+                    if (random.nextBoolean()) {
+                        // Смена даты переносит расход в другой сегмент
+                        expense.setDateTime(randomDate());
+                    }
+                    batch.add(expense);
+                }
+                dao.updateExpenses(batch);
+                batch.forEach(expense -> model.put(expense.getId(), new Expense(expense)));
+            } else if (operation < 6) {
+                List<Long> ids = new ArrayList<>(model.keySet());
+                List<Long> deleted = new ArrayList<>();
+                for (int i = 0, n = 1 + random.nextInt(5); i < n; i++) {
+                    deleted.add(ids.get(random.nextInt(ids.size())));
+                }
+                // Несуществующий id пропускается
+                deleted.add(999_999L);
+                dao.deleteExpenses(deleted);
+                deleted.forEach(model::remove);
+            } else if (operation < 9) {
+                ExpenseQuery query = randomQuery();
+                boolean unordered = query.getSortOrder() == ExpenseQuery.SortOrder.NONE;
+                List<Expense> expected = query.copy().apply(new ArrayList<>(model.values()));
+                assertEquals(keys(expected, unordered), keys(dao.findExpenses(query.copy()), unordered), label);
+                ExpenseQuery countQuery = new ExpenseQuery().from(query.getFrom()).to(query.getTo())
+                        .category(query.getCategory());
+                assertEquals(model.values().stream().filter(countQuery::matches).count(),
+                        dao.countExpenses(countQuery), label);
+            } else if (operation < 10) {
+                long id = random.nextBoolean() ? model.lastKey() + 5
+                        : new ArrayList<>(model.keySet()).get(random.nextInt(model.size()));
+                Optional<Expense> found = dao.findExpenseById(id);
+                Expense expected = model.get(id);
+                assertEquals(expected == null ? null : key(expected), found.map(ExpenseSegmentedJsonDaoTest::key).orElse(null),
+                        label);
+            } else if (operation < 11) {
+                assertEquals(keys(model.values(), true), keys(dao.getAllExpenses(), true), label);
+            } else {
+                if (random.nextInt(3) == 0) {
+                    // Без манифеста хранилище собирает его заново по сегментам
+                    Files.deleteIfExists(dir.resolve("manifest.json"));
+                }
+                if (random.nextInt(4) == 0) {
+                    compress = !compress;
+                }
+                dao = new ExpenseSegmentedJsonDao(dir.toString(), compress, false);
+            }
+        }
+
+        dao = new ExpenseSegmentedJsonDao(dir.toString(), compress, false);
+        assertEquals(keys(model.values(), true), keys(dao.getAllExpenses(), true));
+        Expense added = randomExpense();
+        dao.addExpense(added);
+        assertTrue(added.getId() > model.lastKey(), "id не должен повторяться: " + added.getId());
+    }
+
+    @Test
+    void interruptedMoveKeepsTargetCopy() throws IOException {
+        Expense moved = new Expense(10, "перенос", "c", JANUARY);
+        long id = write(moved);
+        writeManifestMark(id, "2024-02");
+        // Отметка о переносе важнее времени изменения: январский сегмент делаем новее
+        Files.setLastModifiedTime(dir.resolve("2024-01.json"), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        assertSingleCopy(id, 2);
+    }
+
+    @Test
+    void duplicateWithoutMarkKeepsNewerSegment() throws IOException {
+        Expense moved = new Expense(10, "перенос", "c", JANUARY);
+        long id = write(moved);
+        // Манифест потерян: остаётся копия в сегменте, изменённом последним
+        Files.delete(dir.resolve("manifest.json"));
+        Files.setLastModifiedTime(dir.resolve("2024-01.json"), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        assertSingleCopy(id, 2);
+    }
+
+    @Test
+    void importIsRecordedEvenWhenEverythingIsDeleted() throws IOException {
+        ExpenseSegmentedJsonDao dao = new ExpenseSegmentedJsonDao(dir.toString(), false, false);
+        assertFalse(dao.isImported());
+        Expense legacy = new Expense(10, "из файла", "c", JANUARY);
+        legacy.setId(41);
+        dao.importExpenses(List.of(legacy));
+        dao.deleteExpense(41);
+
+        // Сегментов не осталось, но перенос повторять нельзя
+        ExpenseSegmentedJsonDao reopened = new ExpenseSegmentedJsonDao(dir.toString(), false, false);
+        assertTrue(reopened.isImported());
+        assertTrue(reopened.getAllExpenses().isEmpty());
+        Expense added = new Expense(1, "новый", "c", JANUARY);
+        reopened.addExpense(added);
+        assertTrue(added.getId() > 41, "id не должен повторяться: " + added.getId());
+    }
+
+    @Test
+    void importStateWithoutMarkInManifest() throws IOException {
+        Path manifest = dir.resolve("manifest.json");
+        ExpenseSegmentedJsonDao dao = new ExpenseSegmentedJsonDao(dir.toString(), false, false);
+        dao.addExpense(new Expense(10, "есть", "c", JANUARY));
+
+        // Манифест потерян, сегменты есть: хранилищем уже пользовались
+        Files.delete(manifest);
+        assertTrue(new ExpenseSegmentedJsonDao(dir.toString(), false, false).isImported());
+
+        // Манифест прежней версии без поля: перенос выполнялся при создании каталога
+        String text = Files.readString(manifest);
+        Files.writeString(manifest, text.replaceAll("\"imported\":(true|false),", ""));
+        assertFalse(Files.readString(manifest).contains("imported"));
+        assertTrue(new ExpenseSegmentedJsonDao(dir.toString(), false, false).isImported());
+    }
+
+    /**
+     * Записывает расход в январь, переносит его в февраль и возвращает январский
+     * сегмент к состоянию до переноса: так выглядит запись, прерванная после
+     * сегмента назначения.
+     */
+    private long write(Expense expense) throws IOException {
+        ExpenseSegmentedJsonDao dao = new ExpenseSegmentedJsonDao(dir.toString(), false, false);
+        dao.addExpense(expense);
+        dao.addExpense(new Expense(20, "остаётся", "c", JANUARY.plusDays(1)));
+        Path january = dir.resolve("2024-01.json");
+        byte[] before = Files.readAllBytes(january);
+
+        Expense changed = new Expense(expense);
+        changed.setDateTime(JANUARY.plusMonths(1));
+        dao.updateExpense(changed);
+        Files.write(january, before);
+        return expense.getId();
+    }
+
+    /** Возвращает в манифест отметку о начатой записи с переносом {@code id} в {@code month}. */
+    private void writeManifestMark(long id, String month) throws IOException {
+        Path manifest = dir.resolve("manifest.json");
+        String text = Files.readString(manifest);
+        assertTrue(text.contains("\"segments\""), text);
+        Files.writeString(manifest, text.replace("\"segments\"",
+                "\"writing\":true,\"moves\":[[" + id + ",\"" + month + "\"]],\"segments\""));
+    }
+
+    private void assertSingleCopy(long id, int month) {
+        ExpenseSegmentedJsonDao dao = new ExpenseSegmentedJsonDao(dir.toString(), false, false);
+        List<Expense> all = dao.getAllExpenses();
+        assertEquals(2, all.size(), keys(all, true).toString());
+        Expense survivor = dao.findExpenseById(id).orElseThrow();
+        assertEquals(month, survivor.getDateTime().getMonthValue());
+        assertEquals(1, dao.countExpenses(new ExpenseQuery()
+                .from(JANUARY.withDayOfMonth(1)).to(JANUARY.withDayOfMonth(1).plusMonths(1))));
+
+        // Дубль убран из файла, а не только при чтении
+        ExpenseSegmentedJsonDao reopened = new ExpenseSegmentedJsonDao(dir.toString(), false, false);
+        assertEquals(2, reopened.getAllExpenses().size());
+        Expense added = new Expense(1, "новый", "c", JANUARY);
+        reopened.addExpense(added);
+        assertTrue(added.getId() > id, "id не должен повторяться: " + added.getId());
+    }
+
+    private ExpenseQuery randomQuery() {
+        ExpenseQuery query = new ExpenseQuery();
+        if (random.nextBoolean()) {
+            LocalDateTime from = BASE.plusDays(random.nextInt(1100));
+            query.from(from);
+            if (random.nextBoolean()) {
+                query.to(from.plusDays(random.nextInt(90)));
+            }
+        } else if (random.nextBoolean()) {
+            query.to(LocalDateTime.of(2023, 3, 1, 0, 0));
+        }
+        if (random.nextInt(3) == 0) {
+            query.category("c" + random.nextInt(5));
+        }
+        ExpenseQuery.SortOrder order = ExpenseQuery.SortOrder.values()[random.nextInt(ExpenseQuery.SortOrder.values().length)];
+        query.sortBy(order);
+        if ((order == ExpenseQuery.SortOrder.DATE_ASC || order == ExpenseQuery.SortOrder.DATE_DESC)
+                && query.getFrom() == null) {
+            // Порядок расходов без даты в сортировке по дате не задан; отсекаем их периодом
+            query.from(LocalDateTime.of(2021, 1, 1, 0, 0));
+        }
+        if (order != ExpenseQuery.SortOrder.NONE && random.nextBoolean()) {
+            query.limit(random.nextInt(30)).offset(random.nextInt(10));
+        }
+        return query;
+    }
+
+    private static String key(Expense expense) {
+        return expense.getId() + "|" + expense.getAmount() + "|" + expense.getDescription() + "|"
+                + expense.getCategory() + "|" + expense.getDateTime();
+    }
+
+    private static List<String> keys(Iterable<Expense> expenses, boolean sort) {
+        List<String> keys = new ArrayList<>();
+        for (Expense expense : expenses) {
+            keys.add(key(expense));
+        }
+        if (sort) {
+            Collections.sort(keys);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пул соединений на H2 в режиме PostgreSQL: параллельная работа в пределах размера
+ * пула и восстановление после обрыва соединения.
+ */
+class JdbcConnectionPoolTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final String url = "jdbc:h2:mem:pool" + DATABASES.incrementAndGet()
+            + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+    private final List<JdbcConnectionPool> pools = new ArrayList<>();
+
+    @AfterEach
+    void closePools() {
+        pools.forEach(JdbcConnectionPool::close);
+    }
+
+    private JdbcConnectionPool pool(int size, long validationIntervalMillis) {
+        JdbcConnectionPool pool = new JdbcConnectionPool(url, "sa", "", size, validationIntervalMillis);
+        pools.add(pool);
+        return pool;
+    }
+
+    private static Expense expense(int n) {
+        return new Expense(n + 0.5, "Расход " + n, "Прочее", LocalDateTime.of(2024, 3, 1, 12, 0).plusMinutes(n));
+    }
+
+    @Test
+    void concurrentInsertsStayWithinPoolSize() throws Exception {
+        JdbcConnectionPool pool = pool(4, JdbcConnectionPool.DEFAULT_VALIDATION_INTERVAL_MILLIS);
+        ExpensePostgresDao dao = new ExpensePostgresDao(pool);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Expense>> inserts = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int n = i;
+                inserts.add(executor.submit(() -> {
+                    // Занимаем соединение вместе со вставкой, чтобы увидеть, сколько выдано одновременно
+                    pool.execute(connection -> {
+                        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        active.decrementAndGet();
+                        return null;
+                    }, true);
+                    Expense expense = expense(n);
+                    dao.addExpense(expense);
+                    return expense;
+                }));
+            }
+            Set<Long> ids = new HashSet<>();
+            for (Future<Expense> insert : inserts) {
+                ids.add(insert.get().getId());
+            }
+            assertEquals(200, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(200, dao.getAllExpenses().size());
+        assertTrue(maxActive.get() <= 4, "выдано соединений: " + maxActive.get());
+    }
+
+    @Test
+    void retryableWorkSurvivesConnectionClosedUnderneath() throws Exception {
+        // Без проверки перед выдачей: сломанное соединение обнаружится только при работе
+        JdbcConnectionPool pool = pool(1, Long.MAX_VALUE);
+        ExpensePostgresDao dao = new ExpensePostgresDao(pool);
+        Expense expense = expense(1);
+        dao.addExpense(expense);
+
+        closeIdleConnection(pool);
+
+        assertEquals(expense.getDescription(), dao.findExpenseById(expense.getId()).orElseThrow().getDescription());
+        // Заменённое соединение снова работает и для неповторяемых операций
+        dao.addExpense(expense(2));
+        assertEquals(2, dao.getAllExpenses().size());
+    }
+
+    @Test
+    void insertIsNotRetriedOnBrokenConnection() throws Exception {
+        JdbcConnectionPool pool = pool(1, Long.MAX_VALUE);
+        ExpensePostgresDao dao = new ExpensePostgresDao(pool);
+        closeIdleConnection(pool);
+
+        // Повтор вставки после обрыва мог бы создать дубль, поэтому ошибка доходит до вызывающего
+        assertThrows(RuntimeException.class, () -> dao.addExpense(expense(1)));
+        assertTrue(dao.getAllExpenses().isEmpty());
+        dao.addExpense(expense(2));
+        assertEquals(1, dao.getAllExpenses().size());
+    }
+
+    @Test
+    void updateOfMissingIdIsRejected() {
+        ExpensePostgresDao dao = new ExpensePostgresDao(pool(1, 0));
+        Expense kept = expense(1);
+        dao.addExpense(kept);
+        Expense missing = expense(2);
+        missing.setId(kept.getId() + 100);
+
+        assertThrows(RuntimeException.class, () -> dao.updateExpense(missing));
+        Expense changed = new Expense(kept);
+        changed.setDescription("изменён");
+        // Пачка с отсутствующим id откатывается целиком
+        assertThrows(RuntimeException.class, () -> dao.updateExpenses(List.of(changed, missing)));
+        assertEquals(kept.getDescription(), dao.findExpenseById(kept.getId()).orElseThrow().getDescription());
+    }
+
+    @Test
+    void brokenConnectionIsNotReturnedAfterValidation() throws Exception {
+        JdbcConnectionPool pool = pool(1, 0);
+        new ExpensePostgresDao(pool);
+        closeIdleConnection(pool);
+
+        JdbcConnectionPool.PooledConnection connection = pool.acquire();
+        try {
+            assertFalse(connection.getConnection().isClosed());
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Test
+    void closedPoolRejectsWork() {
+        JdbcConnectionPool pool = pool(1, 0);
+        pool.close();
+        SQLException error = assertThrows(SQLException.class, pool::acquire);
+        assertEquals("08003", error.getSQLState());
+    }
+
+    /** Закрывает свободное соединение пула в обход пула, как при обрыве связи. */
+    private static void closeIdleConnection(JdbcConnectionPool pool) throws SQLException {
+        JdbcConnectionPool.PooledConnection connection = pool.acquire();
+        connection.getConnection().close();
+        pool.release(connection);
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseDao;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Постраничное чтение таблицы на всех хранилищах: страницы по курсору
+ * ({@link ExpenseQuery#after(Expense)}) и по смещению складываются в ту же
+ * последовательность, что и полная выборка, а подсчёт совпадает с её размером.
+ */
+class KeysetPagingTest {
+    private static final int ROWS = 3000;
+    private static final int PAGE = 97;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] CATEGORIES = {"Еда", "Транспорт", "Прочее"};
+
+    @TempDir
+    Path dir;
+
+    @TestFactory
+    Stream<DynamicTest> pagesMatchFullSortedResult() {
+        Map<String, Supplier<ExpenseDao>> backends = Map.of(
+                "память", ExpenseMemoryDao::new,
+                "JSON", () -> new ExpenseJsonDao(dir.resolve("expenses.json").toString()),
+                "журнал", () -> new ExpenseJournalDao(dir.resolve("journal").toString()),
+                "двоичный файл", () -> new ExpenseBinaryDao(dir.resolve("expenses.bin").toString()),
+                "JSON по месяцам", () -> new ExpenseSegmentedJsonDao(dir.resolve("segments").toString(), false, false),
+                "PostgreSQL (H2)", () -> new ExpensePostgresDao(new JdbcConnectionPool(
+                        "jdbc:h2:mem:keyset;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "", 2)));
+        return backends.entrySet().stream().map(backend -> DynamicTest.dynamicTest(backend.getKey(), () -> {
+            ExpenseDao dao = backend.getValue().get();
+            try {
+                check(dao);
+            } finally {
+                if (dao instanceof AutoCloseable) {
+                    ((AutoCloseable) dao).close();
+                }
+            }
+        }));
+    }
+
+    private static void check(ExpenseDao dao) {
+        Random random = new Random(5);
+        List<Expense> data = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            // Много одинаковых сумм и дат: порядок внутри них задаёт id
+            data.add(new Expense(random.nextInt(300) / 4.0, "опис " + random.nextInt(100),
+                    CATEGORIES[random.nextInt(3)], BASE.plusHours(random.nextInt(500))));
+        }
+        dao.addExpenses(data);
+
+        ExpenseQuery.SortOrder[] orders = {ExpenseQuery.SortOrder.DATE_DESC, ExpenseQuery.SortOrder.DATE_ASC,
+                ExpenseQuery.SortOrder.AMOUNT_ASC, ExpenseQuery.SortOrder.AMOUNT_DESC};
+        for (ExpenseQuery.SortOrder order : orders) {
+            for (String text : new String[]{null, "опис 1"}) {
+                for (String category : new String[]{null, "Еда"}) {
+                    ExpenseQuery query = new ExpenseQuery().sortBy(order).text(text).category(category);
+                    String label = order + " text=" + text + " category=" + category;
+
+                    List<Long> full = ids(dao.findExpenses(query.copy()));
+                    assertEquals(full.size(), dao.countExpenses(query.copy()), label);
+
+                    List<Long> paged = new ArrayList<>();
+                    Expense cursor = null;
+                    List<Expense> page;
+                    do {
+                        page = dao.findExpenses(query.copy().limit(PAGE).after(cursor));
+                        paged.addAll(ids(page));
+                        if (!page.isEmpty()) {
+                            cursor = page.get(page.size() - 1);
+                        }
+                    } while (page.size() == PAGE);
+                    assertEquals(full, paged, "по курсору: " + label);
+
+                    List<Long> byOffset = ids(dao.findExpenses(query.copy().offset(50).limit(20)));
+                    assertEquals(full.subList(Math.min(50, full.size()), Math.min(70, full.size())), byOffset,
+                            "по смещению: " + label);
+                }
+            }
+        }
+    }
+
+    private static List<Long> ids(List<Expense> expenses) {
+        List<Long> ids = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,329 @@
+package org.example.expensemanager.data.daoimpl;
+
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Отложенная запись поверх H2 в режиме PostgreSQL: чтение сразу видит свои изменения,
+ * временные ошибки сброса повторяются, отвергнутая базой пачка не повторяется.
+ */
+class WriteBehindExpenseDaoTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] DESCRIPTIONS = {"кофе", "такси", "кино", "корм"};
+
+    private String url;
+    private H2ExpenseDao database;
+    private WriteBehindExpenseDao dao;
+
+    /**
+     * H2 не знает {@code ON CONFLICT ... DO UPDATE} и функций последовательностей
+     * PostgreSQL, поэтому резервирование id и применение пачки заменены равнозначными
+     * для H2. Сброс можно заставить упасть.
+     */
+    static class H2ExpenseDao extends ExpensePostgresDao {
+        private final JdbcConnectionPool pool;
+        private final Random random = new Random(7);
+        volatile double transientFailureRate;
+        // Следующий сброс применяется, но ответ базы «теряется»
+        volatile boolean loseNextAck;
+        volatile String rejectWithState;
+        final AtomicInteger commits = new AtomicInteger();
+
+        H2ExpenseDao(JdbcConnectionPool pool) throws SQLException {
+            super(pool);
+            this.pool = pool;
+            pool.execute(connection -> {
+                try (Statement stmt = connection.getConnection().createStatement()) {
+                    stmt.execute("CREATE SEQUENCE IF NOT EXISTS ids START WITH 1000000");
+                }
+                return null;
+            }, true);
+        }
+
+        @Override
+        long[] reserveIds(int count) {
+            try {
+                return pool.execute(connection -> {
+                    long[] ids = new long[count];
+                    try (Statement stmt = connection.getConnection().createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT NEXT VALUE FOR ids FROM SYSTEM_RANGE(1, " + count + ")")) {
+                        for (int i = 0; i < count && rs.next(); i++) {
+                            ids[i] = rs.getLong(1);
+                        }
+                    }
+                    return ids;
+                }, true);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void applyChanges(List<Expense> inserts, List<Expense> updates, Collection<Long> deletes) throws SQLException {
+            String state = rejectWithState;
+            if (state != null) {
+                throw new SQLException("отвергнуто базой", state);
+            }
+            if (random.nextDouble() < transientFailureRate) {
+                throw new SQLException("временная ошибка", "40001");
+            }
+            merge(inserts, updates, deletes);
+            if (loseNextAck) {
+                loseNextAck = false;
+                throw new SQLException("связь потеряна после коммита", "08006");
+            }
+            commits.incrementAndGet();
+        }
+
+        private void merge(List<Expense> inserts, List<Expense> updates, Collection<Long> deletes) throws SQLException {
+            pool.execute(pooled -> {
+                Connection connection = pooled.getConnection();
+                connection.setAutoCommit(false);
+                try {
+                    PreparedStatement delete = pooled.prepare("DELETE FROM expenses WHERE id = ?");
+                    for (long id : deletes) {
+                        delete.setLong(1, id);
+                        delete.executeUpdate();
+                    }
+                    PreparedStatement merge = pooled.prepare("MERGE INTO expenses"
+                            + " (id, amount, description, category, date_time) KEY (id) VALUES (?, ?, ?, ?, ?)");
+                    List<Expense> rows = new ArrayList<>(inserts);
+                    rows.addAll(updates);
+                    for (Expense expense : rows) {
+                        merge.setLong(1, expense.getId());
+                        merge.setDouble(2, expense.getAmount());
+                        merge.setString(3, expense.getDescription());
+                        merge.setString(4, expense.getCategory());
+                        merge.setTimestamp(5, Timestamp.valueOf(expense.getDateTime()));
+                        merge.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return null;
+            }, true);
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:h2:mem:writebehind" + DATABASES.incrementAndGet() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+        database = new H2ExpenseDao(new JdbcConnectionPool(url, "sa", "", 2));
+        dao = new WriteBehindExpenseDao(database, 50, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.transientFailureRate = 0;
+        database.rejectWithState = null;
+        dao.close();
+        database.close();
+    }
+
+    private static Expense expense(Random random) {
+        return new Expense(random.nextInt(100_000) / 100.0, DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)],
+                "Еда", BASE.plusMinutes(random.nextInt(100_000)));
+    }
+
+    @Test
+    void readsMatchModelWhileFlushesFail() throws Exception {
+        database.transientFailureRate = 0.2;
+        Random random = new Random(1);
+        Map<Long, Expense> model = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        ExpenseQuery.SortOrder[] orders = ExpenseQuery.SortOrder.values();
+
+        for (int step = 0; step < 3000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 4 || ids.isEmpty()) {
+                Expense expense = expense(random);
+                dao.addExpense(expense);
+                model.put(expense.getId(), new Expense(expense));
+                ids.add(expense.getId());
+            } else if (operation < 6) {
+                Expense updated = new Expense(model.get(ids.get(random.nextInt(ids.size()))));
+                updated.setAmount(random.nextInt(100_000) / 100.0);
+                updated.setDescription(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+                dao.updateExpense(updated);
+                model.put(updated.getId(), new Expense(updated));
+            } else if (operation < 7) {
+                long id = ids.remove(random.nextInt(ids.size()));
+                dao.deleteExpense(id);
+                model.remove(id);
+            } else {
+                ExpenseQuery query = new ExpenseQuery().sortBy(orders[1 + random.nextInt(orders.length - 1)]);
+                if (random.nextBoolean()) {
+                    query.text("ко");
+                }
+                if (random.nextBoolean()) {
+                    query.minAmount(300.0);
+                }
+                query.offset(random.nextInt(20)).limit(1 + random.nextInt(30));
+                assertEquals(idsOf(query.apply(model.values())), idsOf(dao.findExpenses(query)), "шаг " + step);
+
+                ExpenseQuery countQuery = query.copy().offset(0).limit(-1);
+                assertEquals(model.values().stream().filter(countQuery::matches).count(),
+                        dao.countExpenses(countQuery), "шаг " + step);
+
+                long id = ids.get(random.nextInt(ids.size()));
+                Optional<Expense> found = dao.findExpenseById(id);
+                assertTrue(found.isPresent(), "шаг " + step);
+                assertEquals(model.get(id).getAmount(), found.get().getAmount(), "шаг " + step);
+            }
+        }
+
+        database.transientFailureRate = 0;
+        dao.whenDurable().get(30, TimeUnit.SECONDS);
+        assertEquals(0, dao.pendingChanges());
+
+        Map<Long, Expense> stored = new HashMap<>();
+        for (Expense expense : database.getAllExpenses()) {
+            stored.put(expense.getId(), expense);
+        }
+        assertEquals(model.keySet(), stored.keySet());
+        for (Expense expected : model.values()) {
+            Expense actual = stored.get(expected.getId());
+            assertEquals(expected.getAmount(), actual.getAmount(), 1e-9);
+            assertEquals(expected.getDescription(), actual.getDescription());
+        }
+    }
+
+    @Test
+    void repeatedChangesOfOneExpenseCollapse() throws Exception {
+        for (int i = 0; i < 5000; i++) {
+            Expense expense = new Expense(1, "x", "y", BASE.plusMinutes(i));
+            dao.addExpense(expense);
+            expense.setAmount(2);
+            dao.updateExpense(expense);
+            dao.updateExpense(expense);
+            if (i % 2 == 0) {
+                dao.deleteExpense(expense.getId());
+            }
+        }
+        dao.whenDurable().get(30, TimeUnit.SECONDS);
+
+        assertEquals(2500, database.getAllExpenses().size());
+        // 20 тысяч изменений сводятся к нескольким десяткам транзакций
+        assertTrue(database.commits.get() <= 100, "транзакций: " + database.commits.get());
+    }
+
+    @Test
+    void batchIsRetriedWhenCommitAckIsLost() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        dao.setFlushListener(listener(events));
+        database.loseNextAck = true;
+
+        for (int i = 0; i < 10; i++) {
+            dao.addExpense(new Expense(i + 1, "d", "c", BASE.plusMinutes(i)));
+        }
+        dao.whenDurable().get(10, TimeUnit.SECONDS);
+
+        // Повтор уже применённой пачки не создаёт дублей
+        assertEquals(10, database.getAllExpenses().size());
+        awaitEvent(events);
+        assertTrue(events.contains("failed 08006"), events.toString());
+    }
+
+    @Test
+    void rejectedBatchFailsOnceAndIsDropped() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        dao.setFlushListener(listener(events));
+        database.rejectWithState = "23505";
+
+        dao.addExpense(new Expense(5, "e", "c", BASE));
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> dao.whenDurable().get(10, TimeUnit.SECONDS));
+        assertEquals("23505", ((SQLException) error.getCause()).getSQLState());
+        assertEquals(0, dao.pendingChanges());
+        awaitEvent(events);
+        assertEquals(List.of("failed 23505"), events);
+
+        database.rejectWithState = null;
+        dao.addExpense(new Expense(6, "f", "c", BASE));
+        dao.whenDurable().get(10, TimeUnit.SECONDS);
+        assertEquals(1, database.getAllExpenses().size());
+    }
+
+    @Test
+    void classifiesErrorsBySqlState() {
+        assertTrue(WriteBehindExpenseDao.isPermanent(new RuntimeException(new SQLException("x", "23505"))));
+        assertTrue(WriteBehindExpenseDao.isPermanent(new SQLException("x", "22001")));
+        assertTrue(WriteBehindExpenseDao.isPermanent(new SQLException("x", "42P01")));
+        assertFalse(WriteBehindExpenseDao.isPermanent(new SQLException("x", "08006")));
+        assertFalse(WriteBehindExpenseDao.isPermanent(new SQLException("x", "40001")));
+        assertFalse(WriteBehindExpenseDao.isPermanent(new SQLException("x")));
+    }
+
+    @Test
+    void closeFlushesQueue() throws SQLException {
+        for (int i = 0; i < 10; i++) {
+            dao.addExpense(new Expense(3, "close", "y", BASE.plusMinutes(i)));
+        }
+        // Закрытие сбрасывает очередь и закрывает пул хранилища; читаем через новое
+        dao.close();
+        try (ExpensePostgresDao reopened = new ExpensePostgresDao(new JdbcConnectionPool(url, "sa", "", 1))) {
+            assertEquals(10, reopened.findExpenses(new ExpenseQuery().text("close")).size());
+        }
+    }
+
+    private static WriteBehindExpenseDao.FlushListener listener(List<String> events) {
+        return new WriteBehindExpenseDao.FlushListener() {
+            @Override
+            public void flushed(int changes) {
+            }
+
+            @Override
+            public void failed(int changes, Throwable error) {
+                events.add("failed " + (error instanceof SQLException ? ((SQLException) error).getSQLState() : error));
+            }
+        };
+    }
+
+    /** Слушатель вызывается после завершения {@link WriteBehindExpenseDao#whenDurable()}. */
+    private static void awaitEvent(List<String> events) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (events.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static List<Long> idsOf(List<Expense> expenses) {
+        List<Long> ids = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.expensemanager.service;
+
+import org.example.expensemanager.business.model.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Индекс дубликатов сверяется с исходным правилом — перебором всех расходов.
+ */
+class DuplicateIndexTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 0, 0);
+    // Регистр, нелатинские буквы и символы, у которых свёртка регистра неочевидна
+    private static final String[] DESCRIPTIONS = {
+            "Coffee", "coffee", "COFFEE", "Taxi", "İstanbul", "istanbul", "ß", "SS", "Кофе", "КОФЕ", "𐐀"};
+
+    /** Правило до появления индекса. */
+    private static boolean bruteForce(List<Expense> known, Expense expense) {
+        for (Expense existing : known) {
+            boolean sameAmount = existing.getAmount() == expense.getAmount();
+            boolean sameDesc = existing.getDescription().equalsIgnoreCase(expense.getDescription());
+            long minutes = ChronoUnit.MINUTES.between(existing.getDateTime(), expense.getDateTime());
+            if (sameAmount && sameDesc && Math.abs(minutes) <= 60) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Expense random(Random random) {
+        return new Expense(random.nextInt(3) * 10.0, DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)], "Прочее",
+                BASE.plusSeconds(random.nextInt(86_400 * 3)));
+    }
+
+    @Test
+    void matchesBruteForceUnderRandomChanges() {
+        Random random = new Random(5);
+        List<Expense> known = new ArrayList<>();
+        DuplicateIndex index = new DuplicateIndex();
+        long nextId = 1;
+        int duplicates = 0;
+        for (int step = 0; step < 20_000; step++) {
+            Expense expense = random(random);
+            boolean expected = bruteForce(known, expense);
+            assertEquals(expected, index.containsDuplicate(expense), "шаг " + step + ": " + expense.getDescription());
+            if (expected) {
+                duplicates++;
+            }
+
+            int operation = random.nextInt(10);
+            if (operation < 3) {
+                expense.setId(nextId++);
+                known.add(expense);
+                index.add(expense);
+            } else if (operation == 3 && !known.isEmpty()) {
+                Expense removed = known.remove(random.nextInt(known.size()));
+                index.remove(removed.getId());
+            } else if (operation == 4 && !known.isEmpty()) {
+                int position = random.nextInt(known.size());
+                Expense updated = random(random);
+                updated.setId(known.get(position).getId());
+                known.set(position, updated);
+                index.update(updated);
+            }
+        }
+        // Проверка осмысленна, только если дубликаты действительно встречались
+        assertTrue(duplicates > 1000, "дубликатов: " + duplicates);
+    }
+
+    @Test
+    void windowIsSixtyWholeMinutes() {
+        Expense existing = new Expense(10.0, "Такси", "Транспорт", BASE);
+        existing.setId(1);
+        DuplicateIndex index = new DuplicateIndex(List.of(existing));
+
+        assertTrue(index.containsDuplicate(new Expense(10.0, "такси", "Транспорт", BASE.plusMinutes(60).plusSeconds(59))));
+        assertFalse(index.containsDuplicate(new Expense(10.0, "такси", "Транспорт", BASE.plusMinutes(61))));
+        assertTrue(index.containsDuplicate(new Expense(10.0, "ТАКСИ", "Транспорт", BASE.minusMinutes(60))));
+        assertFalse(index.containsDuplicate(new Expense(10.01, "Такси", "Транспорт", BASE)));
+
+        index.remove(1);
+        assertFalse(index.containsDuplicate(new Expense(10.0, "Такси", "Транспорт", BASE)));
+    }
+}
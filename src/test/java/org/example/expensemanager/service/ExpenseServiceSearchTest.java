@@ -0,0 +1,115 @@
+package org.example.expensemanager.service;
+
+import org.example.expensemanager.business.ExpenseCategoryManager;
+import org.example.expensemanager.business.model.Expense;
+import org.example.expensemanager.data.ExpenseQuery;
+import org.example.expensemanager.data.daoimpl.ExpenseMemoryDao;
+import org.example.expensemanager.data.daoimpl.ExpensePostgresDao;
+import org.example.expensemanager.data.daoimpl.JdbcConnectionPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Текстовый поиск сервиса: через триграммный индекс для хранилищ в памяти процесса
+ * и через запрос к хранилищу для базы данных.
+ */
+class ExpenseServiceSearchTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] WORDS = {"хлеб", "такси", "кофе", "Книга", "АПТЕКА", "ремонт", "кино"};
+    // Короче триграммы, через границу слов, по сумме, без совпадений
+    private static final String[] SEARCHES = {
+            "хле", "такси", "кни", "апт", "12.", "0.5", "ремонт ки", "еда", "ко", "а", "офе", "xyz"};
+
+    private ExpenseCategoryManager categories;
+
+    @BeforeEach
+    void setUp(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("categories.json");
+        Files.writeString(file, "{}");
+        categories = new ExpenseCategoryManager(file.toString());
+    }
+
+    @Test
+    void indexMatchesQueryFilterUnderRandomChanges() {
+        Random random = new Random(9);
+        ExpenseMemoryDao dao = new ExpenseMemoryDao();
+        ExpenseService service = new ExpenseService(dao, categories);
+        List<Long> ids = new ArrayList<>();
+        for (int step = 0; step < 20_000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || ids.isEmpty()) {
+                Expense expense = new Expense(random.nextInt(20_000) / 100.0,
+                        WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                                + " " + random.nextInt(100),
+                        null, BASE.plusMinutes(random.nextInt(10_000_000)));
+                try {
+                    service.add(expense);
+                    ids.add(expense.getId());
+                } catch (IllegalArgumentException duplicate) {
+                    // Дубликаты сервис отклоняет; индекс при этом не меняется
+                }
+            } else if (operation < 8) {
+                Expense expense = dao.findExpenseById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+                expense.setDescription(WORDS[random.nextInt(WORDS.length)] + " изм");
+                expense.setAmount(random.nextInt(1000) / 10.0);
+                service.update(expense);
+            } else {
+                service.delete(ids.remove(random.nextInt(ids.size())));
+            }
+
+            if (step % 500 == 0) {
+                for (String text : SEARCHES) {
+                    ExpenseQuery query = new ExpenseQuery().text(text).sortBy(ExpenseQuery.SortOrder.AMOUNT_ASC);
+                    List<Expense> expected = query.copy().apply(dao.getAllExpenses());
+                    assertEquals(ids(expected), ids(service.find(query.copy())), "шаг " + step + ", «" + text + "»");
+                    assertEquals(expected.size(), service.count(query.copy()), "шаг " + step + ", «" + text + "»");
+                }
+            }
+        }
+    }
+
+    @Test
+    void databaseSearchDoesNotLoadWholeTable() {
+        JdbcConnectionPool pool = new JdbcConnectionPool(
+                "jdbc:h2:mem:search;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "", 1);
+        ExpensePostgresDao dao = new ExpensePostgresDao(pool) {
+            @Override
+            public List<Expense> getAllExpenses() {
+                throw new AssertionError("поиск по базе не должен читать всю таблицу");
+            }
+        };
+        try {
+            // Пишем в обход сервиса: проверке дубликатов при добавлении нужна вся таблица
+            dao.addExpense(new Expense(100, "Кофе у дома", "Еда", BASE));
+            dao.addExpense(new Expense(200, "кофейня", "Еда", BASE.plusDays(1)));
+            dao.addExpense(new Expense(300, "Такси", "Транспорт", BASE.plusDays(2)));
+            ExpenseService service = new ExpenseService(dao, categories);
+
+            ExpenseQuery query = new ExpenseQuery().text("коф").sortBy(ExpenseQuery.SortOrder.AMOUNT_ASC);
+            assertEquals(2, service.find(query.copy()).size());
+            assertEquals(2, service.count(query.copy()));
+            assertEquals(1, service.search("такси").size());
+        } finally {
+            dao.close();
+        }
+    }
+
+    private static List<Long> ids(List<Expense> expenses) {
+        List<Long> ids = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        return ids;
+    }
+}